@@ -0,0 +1,79 @@
+package benchmark;
+
+import layering.Employee;
+import org.openjdk.jmh.annotations.*;
+import raf.thesis.Session;
+import raf.thesis.query.QueryBuilder;
+import util.HrScheme;
+
+import java.sql.Connection;
+import java.sql.Date;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Mapping of a large employee result on an in-memory H2 database with 1, 4 and 16 fork/join workers.
+ * Run with {@code mvn -Pbenchmark test-compile exec:exec}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ParallelMappingBenchmark {
+    private static final String URL = "jdbc:h2:mem:benchmark;DB_CLOSE_DELAY=-1";
+
+    @Param({"1", "4", "16"})
+    private int cores;
+
+    @Param("100000")
+    private int rows;
+
+    //kept open so the in-memory database lives until tear down
+    private Connection keepAlive;
+    private Session session;
+
+    @Setup(Level.Trial)
+    public void setUp() throws SQLException {
+        keepAlive = DriverManager.getConnection(URL, "sa", "");
+        try (Statement stmt = keepAlive.createStatement()) {
+            stmt.execute(HrScheme.H2SCRIPT);
+        }
+        try (PreparedStatement ps = keepAlive.prepareStatement(
+                "INSERT INTO employees (employee_id, first_name, last_name, hire_date, manager_id, department_id) VALUES (?, ?, ?, ?, 100, 10)")) {
+            for (int i = 0; i < rows; i++) {
+                ps.setInt(1, 1000 + i);
+                ps.setString(2, "First" + i);
+                ps.setString(3, "Last" + i);
+                ps.setDate(4, Date.valueOf(LocalDate.of(2000, 1, 1).plusDays(i % 9000)));
+                ps.addBatch();
+                if (i % 1000 == 999)
+                    ps.executeBatch();
+            }
+            ps.executeBatch();
+        }
+        session = new Session(() -> DriverManager.getConnection(URL, "sa", ""), "layering");
+        session.useParallelMapping(cores);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws SQLException {
+        //shuts down the pool of the parallel mapper
+        session.useSequentialMapping();
+        try (Statement stmt = keepAlive.createStatement()) {
+            stmt.execute("DROP ALL OBJECTS");
+        }
+        keepAlive.close();
+    }
+
+    @Benchmark
+    public List<Employee> selectEmployees() throws SQLException {
+        return session.executeSelect(QueryBuilder.select(Employee.class), Employee.class);
+    }
+}
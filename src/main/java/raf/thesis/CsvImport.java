@@ -0,0 +1,269 @@
+package raf.thesis;
+
+import raf.thesis.mapper.CsvFile;
+import raf.thesis.mapper.CsvImportOptions;
+import raf.thesis.mapper.CsvImportResult.RejectedRow;
+import raf.thesis.metadata.ColumnMetadata;
+import raf.thesis.metadata.EntityMetadata;
+import raf.thesis.metadata.RelationMetadata;
+import raf.thesis.metadata.RelationType;
+import raf.thesis.metadata.storage.MetadataStorage;
+import raf.thesis.query.DBUpdateSolver;
+import raf.thesis.query.PreparedStatementQuery;
+import raf.thesis.query.dialect.Dialect;
+import raf.thesis.query.exceptions.EntityObjectRequiredException;
+import raf.thesis.query.tree.Literal;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Savepoint;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Import of a single CSV file into the table of an entity. Chunks of the file are parsed and inserted
+ * independently, rows that can't be converted or inserted are collected as rejected.
+ */
+class CsvImport {
+    private static final Map<Class<?>, Class<?>> primitiveTypes = Map.of(
+            boolean.class, Boolean.class,
+            byte.class, Byte.class,
+            short.class, Short.class,
+            int.class, Integer.class,
+            long.class, Long.class,
+            float.class, Float.class,
+            double.class, Double.class);
+
+    private final CsvFile file;
+    private final CsvImportOptions options;
+    private final String insertQuery;
+    //target type for every file column, null for skipped columns
+    private final Class<?>[] types;
+    private final AtomicLong imported = new AtomicLong();
+    private final List<RejectedRow> rejected = new ArrayList<>();
+
+    //column of the entity table a file column is written to
+    private record Target(String column, Class<?> type) {
+    }
+
+    CsvImport(CsvFile file, Class<?> entityClass, CsvImportOptions options, Dialect dialect) {
+        EntityMetadata metadata = MetadataStorage.get(entityClass);
+        if (metadata == null)
+            throw new EntityObjectRequiredException("Class " + entityClass.getName() + " is not an entity");
+        List<String> mapping = options.getColumns() != null ? options.getColumns() : file.header();
+        if (mapping == null)
+            throw new IllegalArgumentException("Columns have to be given for files without header");
+        this.file = file;
+        this.options = options;
+        this.types = new Class<?>[mapping.size()];
+        List<String> columns = new ArrayList<>();
+        for (int i = 0; i < mapping.size(); i++) {
+            if (mapping.get(i) == null)
+                continue;
+            Target target = resolve(metadata, mapping.get(i));
+            columns.add(target.column());
+            types[i] = target.type();
+        }
+        if (columns.isEmpty())
+            throw new IllegalArgumentException("No file column is mapped to the entity");
+        this.insertQuery = dialect.generateInsertQuery(columns, metadata.getTableName());
+    }
+
+    //file columns are matched to column names, field names or single column foreign keys by relation name
+    private static Target resolve(EntityMetadata metadata, String name) {
+        for (ColumnMetadata column : metadata.getColumns().values()) {
+            if (column.getColumnName().equalsIgnoreCase(name) || column.getField().getName().equals(name))
+                return new Target(column.getColumnName(), supported(column.getField().getType(), name));
+        }
+        for (RelationMetadata relation : metadata.getRelations()) {
+            boolean ownsKey = relation.getRelationType() == RelationType.MANY_TO_ONE
+                    || relation.getRelationType() == RelationType.ONE_TO_ONE && Boolean.TRUE.equals(relation.getMySideKey());
+            if (!ownsKey || relation.getForeignKeyNames().size() != 1)
+                continue;
+            String foreignKey = relation.getForeignKeyNames().getFirst();
+            if (relation.getRelationName().equals(name) || foreignKey.equalsIgnoreCase(name)) {
+                Class<?> keyType = MetadataStorage.get(relation.getForeignClass()).getIdFields().getFirst().getType();
+                return new Target(foreignKey, supported(keyType, name));
+            }
+        }
+        throw new IllegalArgumentException("Column " + name + " can't be mapped to entity " + metadata.getEntityClass().getSimpleName());
+    }
+
+    private static Class<?> supported(Class<?> type, String name) {
+        Class<?> boxed = primitiveTypes.getOrDefault(type, type);
+        if (Number.class.isAssignableFrom(boxed) && boxed.getPackageName().equals("java.lang") || boxed == BigDecimal.class
+                || boxed == Boolean.class || boxed == String.class || boxed.isEnum() || boxed == LocalDate.class || boxed == LocalDateTime.class || boxed == LocalTime.class)
+            return boxed;
+        throw new IllegalArgumentException("Column " + name + " has unsupported type " + type.getSimpleName());
+    }
+
+    List<CsvFile.Chunk> chunks() throws IOException {
+        return file.split(options.getParallelism());
+    }
+
+    long imported() {
+        return imported.get();
+    }
+
+    List<RejectedRow> rejected() {
+        List<RejectedRow> sorted = new ArrayList<>(rejected);
+        sorted.sort((r1, r2) -> Long.compare(r1.line(), r2.line()));
+        return sorted;
+    }
+
+    //batches run in a transaction so a failed batch can be rolled back and inserted row by row,
+    //without an active transaction every flushed batch is committed
+    void importChunk(Connection conn, CsvFile.Chunk chunk) throws SQLException, IOException {
+        CsvFile.Cursor cursor = file.cursor(chunk);
+        List<Literal[]> batch = new ArrayList<>(options.getBatchSize());
+        List<Long> lines = new ArrayList<>(options.getBatchSize());
+        List<String> contents = new ArrayList<>(options.getBatchSize());
+        boolean autoCommit = conn.getAutoCommit();
+        if (autoCommit)
+            conn.setAutoCommit(false);
+        try (PreparedStatement ps = conn.prepareStatement(insertQuery)) {
+            while (true) {
+                try {
+                    if (!cursor.next())
+                        break;
+                } catch (IllegalStateException e) {
+                    //unterminated quote runs to the end of the chunk, nothing after it can be read
+                    reject(cursor.line(), cursor.raw(), e.getMessage());
+                    break;
+                }
+                //blank lines are skipped
+                if (cursor.size() == 1 && cursor.field(0) == null)
+                    continue;
+                Literal[] row;
+                try {
+                    row = convert(cursor);
+                } catch (RuntimeException e) {
+                    reject(cursor.line(), cursor.raw(), e.getMessage());
+                    continue;
+                }
+                batch.add(row);
+                lines.add(cursor.line());
+                contents.add(cursor.raw());
+                if (batch.size() == options.getBatchSize())
+                    flush(conn, ps, batch, lines, contents, autoCommit);
+            }
+            if (!batch.isEmpty())
+                flush(conn, ps, batch, lines, contents, autoCommit);
+        } catch (SQLException | IOException | RuntimeException e) {
+            if (autoCommit)
+                conn.rollback();
+            throw e;
+        } finally {
+            if (autoCommit)
+                conn.setAutoCommit(true);
+        }
+    }
+
+    private Literal[] convert(CsvFile.Cursor cursor) {
+        if (cursor.size() != types.length)
+            throw new IllegalArgumentException("Expected " + types.length + " fields, found " + cursor.size());
+        List<Literal> row = new ArrayList<>(types.length);
+        for (int i = 0; i < types.length; i++) {
+            if (types[i] != null)
+                row.add(DBUpdateSolver.makeLiteral(convert(cursor.field(i), types[i])));
+        }
+        return row.toArray(Literal[]::new);
+    }
+
+    private static Object convert(String text, Class<?> type) {
+        if (text == null)
+            return null;
+        if (type == String.class)
+            return text;
+        String value = text.trim();
+        if (type == Integer.class) return Integer.valueOf(value);
+        if (type == Long.class) return Long.valueOf(value);
+        if (type == Short.class) return Short.valueOf(value);
+        if (type == Byte.class) return Byte.valueOf(value);
+        if (type == Double.class) return Double.valueOf(value);
+        if (type == Float.class) return Float.valueOf(value);
+        if (type == BigDecimal.class) return new BigDecimal(value);
+        if (type == LocalDate.class) return LocalDate.parse(value);
+        if (type == LocalDateTime.class) return LocalDateTime.parse(value.replace(' ', 'T'));
+        if (type == LocalTime.class) return LocalTime.parse(value);
+        if (type == Boolean.class) {
+            if (value.equalsIgnoreCase("true") || value.equals("1")) return true;
+            if (value.equalsIgnoreCase("false") || value.equals("0")) return false;
+            throw new IllegalArgumentException("Value " + value + " is not a boolean");
+        }
+        return enumValue(type, value);
+    }
+
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    private static Object enumValue(Class<?> type, String value) {
+        return Enum.valueOf((Class<? extends Enum>) type, value);
+    }
+
+    //a failed batch is rolled back to its savepoint and run again row by row, update counts of a failed batch
+    //can't be trusted as some databases roll back the whole batch and others abort the transaction.
+    //Every row gets its own savepoint, so a failed row doesn't abort the transaction for the rows after it
+    private void flush(Connection conn, PreparedStatement ps, List<Literal[]> batch, List<Long> lines, List<String> contents,
+                       boolean commit) throws SQLException {
+        for (Literal[] row : batch) {
+            bind(ps, row);
+            ps.addBatch();
+        }
+        Savepoint batchStart = conn.setSavepoint();
+        try {
+            ps.executeBatch();
+            release(conn, batchStart);
+            inserted(batch.size());
+        } catch (SQLException e) {
+            ps.clearBatch();
+            conn.rollback(batchStart);
+            int rows = 0;
+            for (int i = 0; i < batch.size(); i++) {
+                bind(ps, batch.get(i));
+                Savepoint rowStart = conn.setSavepoint();
+                try {
+                    ps.executeUpdate();
+                    release(conn, rowStart);
+                    rows++;
+                } catch (SQLException rowError) {
+                    conn.rollback(rowStart);
+                    reject(lines.get(i), contents.get(i), rowError.getMessage());
+                }
+            }
+            inserted(rows);
+        }
+        if (commit)
+            conn.commit();
+        batch.clear();
+        lines.clear();
+        contents.clear();
+    }
+
+    private static void bind(PreparedStatement ps, Literal[] row) throws SQLException {
+        for (int i = 0; i < row.length; i++)
+            PreparedStatementQuery.bindLiteral(ps, i + 1, row[i]);
+    }
+
+    //not every driver can release savepoints, they are dropped with the transaction anyway
+    private static void release(Connection conn, Savepoint savepoint) {
+        try {
+            conn.releaseSavepoint(savepoint);
+        } catch (SQLException ignored) {
+        }
+    }
+
+    private void inserted(int rows) {
+        options.getProgress().accept(imported.addAndGet(rows));
+    }
+
+    private synchronized void reject(long line, String content, String reason) {
+        rejected.add(new RejectedRow(line, content, reason));
+    }
+}
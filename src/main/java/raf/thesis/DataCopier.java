@@ -0,0 +1,439 @@
+package raf.thesis;
+
+import raf.thesis.metadata.ColumnMetadata;
+import raf.thesis.metadata.EntityMetadata;
+import raf.thesis.metadata.RelationType;
+import raf.thesis.metadata.storage.MetadataStorage;
+import raf.thesis.query.dialect.Dialect;
+import raf.thesis.query.exceptions.EntityObjectRequiredException;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.math.BigInteger;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.Duration;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Copies rows of an entity table from one database to another without mapping them to objects.
+ * <p>
+ * Table, columns and primary key come from entity metadata, which a session has to discover first. Every
+ * primary key range is read over its own source connection and written by a separate thread over its own
+ * target connection, which commits after every batch. Splitting into ranges and checkpoints need a single
+ * integral primary key, tables with other keys are copied as one range. Related tables aren't copied, so
+ * parents have to be copied first when the target checks foreign keys.
+ * <p>
+ * Database generated keys are copied as they are, the key generator of the target is moved past the largest
+ * copied key afterwards. A resumed plain insert copy skips rows of a range that are already in the target, so
+ * a batch committed right before a crash isn't inserted twice. This expects that rows of the copied key ranges
+ * in the target were written by the copy, upserts write the rest of every range again instead.
+ */
+public final class DataCopier {
+    private static final Set<Class<?>> INTEGRAL_TYPES = Set.of(int.class, Integer.class, long.class, Long.class, short.class, Short.class);
+    //marks the end of a range in the buffer
+    private static final List<Object[]> END = Collections.unmodifiableList(new ArrayList<>());
+
+    private DataCopier() {
+    }
+
+    private enum Kind {OBJECT, BYTES, TEXT}
+
+    //copied columns in select order, with the position of the single integral key or -1 and the database generated key or null
+    private record Table(String name, List<String> columns, List<Kind> kinds, List<String> keys, int integralKey, String identity) {
+    }
+
+    //statement writing a row, with statements around the writes of a connection or null
+    private record Write(String sql, String start, String end) {
+    }
+
+    //lower bound is exclusive and upper inclusive, null bounds are open
+    private record Range(int index, Long lower, Long upper) {
+    }
+
+    public static <T> DataCopyResult copy(Class<T> entityClass, ConnectionSupplier from, ConnectionSupplier to) throws SQLException, IOException {
+        return copy(entityClass, from, to, DataCopyOptions.defaults());
+    }
+
+    public static <T> DataCopyResult copy(Class<T> entityClass, ConnectionSupplier from, ConnectionSupplier to, DataCopyOptions options) throws SQLException, IOException {
+        long start = System.nanoTime();
+        Table table = table(entityClass);
+        if (table.integralKey() == -1 && (options.getParallelism() > 1 || options.getCheckpoint() != null))
+            throw new IllegalArgumentException("Parallel copy and checkpoints need a single integral primary key");
+
+        Dialect dialect;
+        String writeSql;
+        try (Connection conn = to.getConnection()) {
+            dialect = Session.detectDialect(conn);
+            if (!options.isUpsert())
+                writeSql = dialect.generateInsertQuery(table.columns(), table.name());
+            else if (dialect instanceof Dialect.SupportsUpsert upsertDialect)
+                writeSql = upsertDialect.generateUpsertQuery(table.columns(), table.name(), table.keys());
+            else
+                throw new IllegalArgumentException("Target database doesn't support upserts");
+        }
+        Write write = table.identity() != null && dialect instanceof Dialect.SupportsIdentityCopy identityDialect
+                ? new Write(writeSql, identityDialect.generateIdentityInsertStart(table.name()), identityDialect.generateIdentityInsertEnd(table.name()))
+                : new Write(writeSql, null, null);
+
+        Checkpoint checkpoint = null;
+        List<Range> ranges;
+        if (options.getCheckpoint() != null && Files.exists(options.getCheckpoint())) {
+            checkpoint = Checkpoint.load(options.getCheckpoint());
+            ranges = checkpoint.remaining();
+            if (!options.isUpsert())
+                ranges = skipWritten(table, ranges, to);
+        } else {
+            ranges = table.integralKey() == -1 ? List.of(new Range(0, null, null)) : split(table, from, options.getParallelism());
+            if (options.getCheckpoint() != null)
+                checkpoint = Checkpoint.create(options.getCheckpoint(), ranges);
+        }
+
+        AtomicLong copied = new AtomicLong();
+        if (!ranges.isEmpty()) {
+            //every range needs a reader and a writer thread
+            ExecutorService executor = Executors.newFixedThreadPool(ranges.size() * 2);
+            try {
+                List<Future<Long>> readers = new ArrayList<>();
+                for (Range range : ranges) {
+                    Checkpoint rangeCheckpoint = checkpoint;
+                    readers.add(executor.submit(() -> copyRange(table, range, from, to, write, options, rangeCheckpoint, copied, executor)));
+                }
+                for (Future<Long> reader : readers)
+                    await(reader);
+            } finally {
+                executor.shutdownNow();
+            }
+        }
+        if (table.identity() != null && dialect instanceof Dialect.SupportsIdentityCopy identityDialect)
+            restartIdentity(table, to, identityDialect);
+        return new DataCopyResult(copied.get(), ranges.size(), Duration.ofNanos(System.nanoTime() - start));
+    }
+
+    private static Table table(Class<?> entityClass) {
+        EntityMetadata meta = MetadataStorage.get(entityClass);
+        if (meta == null)
+            throw new EntityObjectRequiredException("Class " + entityClass.getName() + " is not an entity");
+        List<String> columns = new ArrayList<>();
+        List<Kind> kinds = new ArrayList<>();
+        List<String> keys = new ArrayList<>();
+        int integralKey = -1;
+        String identity = null;
+        for (ColumnMetadata column : meta.getColumns().values()) {
+            Class<?> type = column.getField().getType();
+            columns.add(column.getColumnName());
+            //large objects are read whole, driver specific LOB handles can't be passed to another connection
+            kinds.add(!column.isLob() ? Kind.OBJECT : type == byte[].class || type == InputStream.class ? Kind.BYTES : Kind.TEXT);
+            int idIndex = meta.getIdFields().indexOf(column.getField());
+            if (idIndex != -1) {
+                keys.add(column.getColumnName());
+                integralKey = INTEGRAL_TYPES.contains(type) ? columns.size() - 1 : -1;
+                if (idIndex < meta.getGeneratedId().size() && meta.getGeneratedId().get(idIndex))
+                    identity = column.getColumnName();
+            }
+        }
+        if (keys.size() != 1)
+            integralKey = -1;
+        for (var relation : meta.getRelations()) {
+            boolean ownsKey = relation.getRelationType() == RelationType.MANY_TO_ONE
+                    || (relation.getRelationType() == RelationType.ONE_TO_ONE && relation.getMySideKey());
+            if (!ownsKey)
+                continue;
+            for (String foreignKey : relation.getForeignKeyNames()) {
+                if (!columns.contains(foreignKey)) {
+                    columns.add(foreignKey);
+                    kinds.add(Kind.OBJECT);
+                }
+            }
+        }
+        return new Table(meta.getTableName(), columns, kinds, keys, integralKey, identity);
+    }
+
+    //a batch can be committed without its checkpoint when the copy stops in between, ranges continue after their
+    //largest key in the target instead of writing it again
+    private static List<Range> skipWritten(Table table, List<Range> ranges, ConnectionSupplier to) throws SQLException {
+        String key = table.keys().getFirst();
+        List<Range> remaining = new ArrayList<>();
+        try (Connection conn = to.getConnection()) {
+            for (Range range : ranges) {
+                List<String> conditions = new ArrayList<>();
+                if (range.lower() != null)
+                    conditions.add(key + " > ?");
+                if (range.upper() != null)
+                    conditions.add(key + " <= ?");
+                String sql = "SELECT MAX(%s) FROM %s%s".formatted(key, table.name(),
+                        conditions.isEmpty() ? "" : " WHERE " + String.join(" AND ", conditions));
+                try (PreparedStatement ps = conn.prepareStatement(sql)) {
+                    int idx = 1;
+                    if (range.lower() != null)
+                        ps.setLong(idx++, range.lower());
+                    if (range.upper() != null)
+                        ps.setLong(idx, range.upper());
+                    try (ResultSet rs = ps.executeQuery()) {
+                        rs.next();
+                        long written = rs.getLong(1);
+                        remaining.add(rs.wasNull() ? range : new Range(range.index(), written, range.upper()));
+                    }
+                }
+            }
+        }
+        return remaining;
+    }
+
+    //moves the key generator of the target past the copied keys
+    private static void restartIdentity(Table table, ConnectionSupplier to, Dialect.SupportsIdentityCopy dialect) throws SQLException {
+        try (Connection conn = to.getConnection(); Statement stmt = conn.createStatement()) {
+            long max;
+            try (ResultSet rs = stmt.executeQuery("SELECT MAX(%s) FROM %s".formatted(table.identity(), table.name()))) {
+                rs.next();
+                max = rs.getLong(1);
+                if (rs.wasNull())
+                    return;
+            }
+            String restart = dialect.generateIdentityRestartQuery(table.name(), table.identity(), max + 1);
+            if (restart != null)
+                stmt.execute(restart);
+        }
+    }
+
+    //splits key range of the source in equal parts, there can't be more parts than key values
+    private static List<Range> split(Table table, ConnectionSupplier from, int parallelism) throws SQLException {
+        String key = table.keys().getFirst();
+        long min, max;
+        try (Connection conn = from.getConnection();
+             Statement stmt = conn.createStatement();
+             ResultSet rs = stmt.executeQuery("SELECT MIN(%s), MAX(%s) FROM %s".formatted(key, key, table.name()))) {
+            rs.next();
+            min = rs.getLong(1);
+            if (rs.wasNull())
+                return List.of();
+            max = rs.getLong(2);
+        }
+        BigInteger span = BigInteger.valueOf(max).subtract(BigInteger.valueOf(min)).add(BigInteger.ONE);
+        int parts = span.min(BigInteger.valueOf(parallelism)).intValue();
+        List<Range> ranges = new ArrayList<>();
+        Long lower = null;
+        for (int i = 0; i < parts; i++) {
+            Long upper = i == parts - 1 ? null : BigInteger.valueOf(min).subtract(BigInteger.ONE)
+                    .add(span.multiply(BigInteger.valueOf(i + 1)).divide(BigInteger.valueOf(parts))).longValue();
+            ranges.add(new Range(i, lower, upper));
+            lower = upper;
+        }
+        return ranges;
+    }
+
+    private static long copyRange(Table table, Range range, ConnectionSupplier from, ConnectionSupplier to, Write write,
+                                  DataCopyOptions options, Checkpoint checkpoint, AtomicLong copied, ExecutorService executor) throws Exception {
+        BlockingQueue<List<Object[]>> buffer = new ArrayBlockingQueue<>(options.getBufferSize());
+        Future<Long> writer = executor.submit(() -> writeRange(table, range, to, write, buffer, options, checkpoint, copied));
+        try (Connection conn = from.getConnection()) {
+            //some drivers stream with fetch size only inside a transaction
+            boolean autoCommit = conn.getAutoCommit();
+            if (autoCommit)
+                conn.setAutoCommit(false);
+            try (PreparedStatement ps = conn.prepareStatement(selectQuery(table, range))) {
+                ps.setFetchSize(options.getFetchSize());
+                int idx = 1;
+                if (range.lower() != null)
+                    ps.setLong(idx++, range.lower());
+                if (range.upper() != null)
+                    ps.setLong(idx, range.upper());
+                try (ResultSet rs = ps.executeQuery()) {
+                    List<Object[]> batch = new ArrayList<>(options.getBatchSize());
+                    while (rs.next()) {
+                        batch.add(readRow(rs, table));
+                        if (batch.size() == options.getBatchSize()) {
+                            hand(buffer, batch, writer);
+                            batch = new ArrayList<>(options.getBatchSize());
+                        }
+                    }
+                    if (!batch.isEmpty())
+                        hand(buffer, batch, writer);
+                    hand(buffer, END, writer);
+                }
+            } finally {
+                if (autoCommit) {
+                    conn.rollback();
+                    conn.setAutoCommit(true);
+                }
+            }
+        } catch (Exception e) {
+            writer.cancel(true);
+            throw e;
+        }
+        return await(writer);
+    }
+
+    private static String selectQuery(Table table, Range range) {
+        String key = table.keys().getFirst();
+        List<String> conditions = new ArrayList<>();
+        if (range.lower() != null)
+            conditions.add(key + " > ?");
+        if (range.upper() != null)
+            conditions.add(key + " <= ?");
+        return "SELECT %s FROM %s%s ORDER BY %s".formatted(String.join(", ", table.columns()), table.name(),
+                conditions.isEmpty() ? "" : " WHERE " + String.join(" AND ", conditions), String.join(", ", table.keys()));
+    }
+
+    private static Object[] readRow(ResultSet rs, Table table) throws SQLException {
+        Object[] row = new Object[table.columns().size()];
+        for (int i = 0; i < row.length; i++) {
+            row[i] = switch (table.kinds().get(i)) {
+                case OBJECT -> rs.getObject(i + 1);
+                case BYTES -> rs.getBytes(i + 1);
+                case TEXT -> rs.getString(i + 1);
+            };
+        }
+        return row;
+    }
+
+    //waits for space in the buffer as long as the writer is running
+    private static void hand(BlockingQueue<List<Object[]>> buffer, List<Object[]> batch, Future<Long> writer) throws Exception {
+        while (!buffer.offer(batch, 100, TimeUnit.MILLISECONDS)) {
+            if (writer.isDone()) {
+                await(writer);
+                throw new IllegalStateException("Writer stopped before the end of the range");
+            }
+        }
+    }
+
+    private static long writeRange(Table table, Range range, ConnectionSupplier to, Write write, BlockingQueue<List<Object[]>> buffer,
+                                   DataCopyOptions options, Checkpoint checkpoint, AtomicLong copied) throws Exception {
+        try (Connection conn = to.getConnection()) {
+            execute(conn, write.start());
+            boolean autoCommit = conn.getAutoCommit();
+            conn.setAutoCommit(false);
+            try (PreparedStatement ps = conn.prepareStatement(write.sql())) {
+                long written = 0;
+                for (List<Object[]> batch = buffer.take(); batch != END; batch = buffer.take()) {
+                    for (Object[] row : batch) {
+                        for (int i = 0; i < row.length; i++) {
+                            if (row[i] == null)
+                                ps.setNull(i + 1, java.sql.Types.NULL);
+                            else
+                                ps.setObject(i + 1, row[i]);
+                        }
+                        ps.addBatch();
+                    }
+                    ps.executeBatch();
+                    conn.commit();
+                    written += batch.size();
+                    //saved only after commit, so restart never skips uncommitted rows
+                    if (checkpoint != null)
+                        checkpoint.save(range.index(), ((Number) batch.getLast()[table.integralKey()]).longValue());
+                    options.getProgress().accept(copied.addAndGet(batch.size()));
+                }
+                if (checkpoint != null)
+                    checkpoint.finish(range.index());
+                return written;
+            } catch (Exception e) {
+                conn.rollback();
+                throw e;
+            } finally {
+                conn.setAutoCommit(autoCommit);
+                //pooled connections are handed out again, so the setting of the session is undone
+                execute(conn, write.end());
+            }
+        }
+    }
+
+    private static void execute(Connection conn, String sql) throws SQLException {
+        if (sql == null)
+            return;
+        try (Statement stmt = conn.createStatement()) {
+            stmt.execute(sql);
+        }
+    }
+
+    private static long await(Future<Long> future) throws SQLException, IOException {
+        try {
+            return future.get();
+        } catch (ExecutionException e) {
+            switch (e.getCause()) {
+                case SQLException sqlException -> throw sqlException;
+                case IOException ioException -> throw ioException;
+                case RuntimeException runtimeException -> throw runtimeException;
+                default -> throw new IllegalStateException(e.getCause());
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * Progress of every range stored as properties: its bounds, last written key and whether it is finished.
+     * The file is replaced atomically after every committed batch.
+     */
+    private static final class Checkpoint {
+        private final Path file;
+        private final Properties properties;
+
+        private Checkpoint(Path file, Properties properties) {
+            this.file = file;
+            this.properties = properties;
+        }
+
+        static Checkpoint create(Path file, List<Range> ranges) throws IOException {
+            Checkpoint checkpoint = new Checkpoint(file, new Properties());
+            checkpoint.properties.setProperty("ranges", String.valueOf(ranges.size()));
+            for (Range range : ranges) {
+                if (range.lower() != null)
+                    checkpoint.properties.setProperty("range." + range.index() + ".lower", range.lower().toString());
+                if (range.upper() != null)
+                    checkpoint.properties.setProperty("range." + range.index() + ".upper", range.upper().toString());
+            }
+            checkpoint.store();
+            return checkpoint;
+        }
+
+        static Checkpoint load(Path file) throws IOException {
+            Properties properties = new Properties();
+            try (InputStream in = Files.newInputStream(file)) {
+                properties.load(in);
+            }
+            return new Checkpoint(file, properties);
+        }
+
+        //unfinished ranges continuing after their last written key
+        List<Range> remaining() {
+            List<Range> ranges = new ArrayList<>();
+            int count = Integer.parseInt(properties.getProperty("ranges"));
+            for (int i = 0; i < count; i++) {
+                if (Boolean.parseBoolean(properties.getProperty("range." + i + ".done")))
+                    continue;
+                String lower = properties.getProperty("range." + i + ".last", properties.getProperty("range." + i + ".lower"));
+                String upper = properties.getProperty("range." + i + ".upper");
+                ranges.add(new Range(i, lower == null ? null : Long.valueOf(lower), upper == null ? null : Long.valueOf(upper)));
+            }
+            return ranges;
+        }
+
+        synchronized void save(int range, long lastKey) throws IOException {
+            properties.setProperty("range." + range + ".last", String.valueOf(lastKey));
+            store();
+        }
+
+        synchronized void finish(int range) throws IOException {
+            properties.setProperty("range." + range + ".done", "true");
+            store();
+        }
+
+        private void store() throws IOException {
+            Path temp = file.resolveSibling(file.getFileName() + ".tmp");
+            try (OutputStream out = Files.newOutputStream(temp)) {
+                properties.store(out, null);
+            }
+            Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        }
+    }
+}
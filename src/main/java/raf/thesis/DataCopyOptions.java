@@ -0,0 +1,72 @@
+package raf.thesis;
+
+import lombok.Getter;
+
+import java.nio.file.Path;
+import java.util.function.LongConsumer;
+
+/**
+ * Settings of table copy. By default rows are read 10000 at a time, written as plain inserts in batches of 1000
+ * with at most 4 batches waiting for the writer, over a single key range and without checkpoints.
+ */
+@Getter
+public class DataCopyOptions {
+    private int fetchSize = 10_000;
+    private int batchSize = 1000;
+    //batches read but not yet written, reader waits when the buffer is full
+    private int bufferSize = 4;
+    //number of primary key ranges copied at the same time, each over its own pair of connections
+    private int parallelism = 1;
+    private boolean upsert = false;
+    //file with progress of every range, existing one is continued instead of starting over
+    private Path checkpoint;
+    //receives the number of copied rows after every batch, possibly from several threads
+    private LongConsumer progress = _ -> {};
+
+    public static DataCopyOptions defaults() {
+        return new DataCopyOptions();
+    }
+
+    public DataCopyOptions fetchSize(int fetchSize) {
+        if (fetchSize < 1)
+            throw new IllegalArgumentException("Fetch size must be positive");
+        this.fetchSize = fetchSize;
+        return this;
+    }
+
+    public DataCopyOptions batchSize(int batchSize) {
+        if (batchSize < 1)
+            throw new IllegalArgumentException("Batch size must be positive");
+        this.batchSize = batchSize;
+        return this;
+    }
+
+    public DataCopyOptions bufferSize(int bufferSize) {
+        if (bufferSize < 1)
+            throw new IllegalArgumentException("Buffer size must be positive");
+        this.bufferSize = bufferSize;
+        return this;
+    }
+
+    public DataCopyOptions parallelism(int parallelism) {
+        if (parallelism < 1)
+            throw new IllegalArgumentException("Parallelism must be positive");
+        this.parallelism = parallelism;
+        return this;
+    }
+
+    public DataCopyOptions upsert(boolean upsert) {
+        this.upsert = upsert;
+        return this;
+    }
+
+    public DataCopyOptions checkpoint(Path checkpoint) {
+        this.checkpoint = checkpoint;
+        return this;
+    }
+
+    public DataCopyOptions progress(LongConsumer progress) {
+        this.progress = progress;
+        return this;
+    }
+}
@@ -0,0 +1,13 @@
+package raf.thesis;
+
+import java.time.Duration;
+
+/**
+ * Summary of finished table copy, rows copied before a restart from checkpoint aren't counted.
+ */
+public record DataCopyResult(long rows, int ranges, Duration elapsed) {
+    public double rowsPerSecond() {
+        long nanos = elapsed.toNanos();
+        return nanos == 0 ? rows : rows * 1_000_000_000.0 / nanos;
+    }
+}
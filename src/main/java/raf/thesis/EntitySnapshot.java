@@ -0,0 +1,50 @@
+package raf.thesis;
+
+import raf.thesis.metadata.ColumnMetadata;
+import raf.thesis.metadata.EntityMetadata;
+import raf.thesis.metadata.storage.MetadataStorage;
+import raf.thesis.query.DBUpdateSolver;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * Column values of an entity copied when it started being tracked, in column order of its metadata.
+ * Relations aren't part of the snapshot, like they aren't part of an update.
+ */
+final class EntitySnapshot {
+    private final Object[] values;
+
+    private EntitySnapshot(Object[] values) {
+        this.values = values;
+    }
+
+    static EntitySnapshot of(Object entity) {
+        EntityMetadata meta = MetadataStorage.get(entity.getClass());
+        Object[] values = new Object[meta.getColumns().size()];
+        int i = 0;
+        for (ColumnMetadata column : meta.getColumns().values())
+            values[i++] = copy(DBUpdateSolver.extractFieldValue(column.getField(), entity));
+        return new EntitySnapshot(values);
+    }
+
+    //non key columns with values different from the snapshot, streams are compared by reference
+    List<ColumnMetadata> changedColumns(Object entity) {
+        EntityMetadata meta = MetadataStorage.get(entity.getClass());
+        List<ColumnMetadata> changed = new ArrayList<>();
+        int i = 0;
+        for (ColumnMetadata column : meta.getColumns().values()) {
+            Object current = DBUpdateSolver.extractFieldValue(column.getField(), entity);
+            if (!meta.getIdFields().contains(column.getField()) && !Objects.deepEquals(values[i], current))
+                changed.add(column);
+            i++;
+        }
+        return changed;
+    }
+
+    //arrays are the only mutable column values
+    private static Object copy(Object value) {
+        return value instanceof byte[] bytes ? bytes.clone() : value;
+    }
+}
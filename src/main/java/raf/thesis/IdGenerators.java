@@ -0,0 +1,192 @@
+package raf.thesis;
+
+import org.apache.commons.beanutils.PropertyUtils;
+import raf.thesis.metadata.ColumnMetadata;
+import raf.thesis.metadata.EntityMetadata;
+import raf.thesis.metadata.IdGeneration;
+import raf.thesis.metadata.exception.UnsupportedIdStrategyException;
+import raf.thesis.metadata.storage.MetadataStorage;
+import raf.thesis.query.dialect.Dialect;
+
+import java.lang.reflect.InvocationTargetException;
+import java.security.SecureRandom;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Client side primary key assignment for id columns with a {@link raf.thesis.metadata.annotations.IdStrategy}.
+ * Numeric strategies hand out keys from blocks reserved with a single database call, blocks are shared by
+ * all threads of a session.
+ */
+class IdGenerators {
+    private final Dialect dialect;
+    private final ConnectionSupplier connectionSupplier;
+    private final Map<IdGeneration, Block> blocks = new ConcurrentHashMap<>();
+    private final UuidV7 uuids = new UuidV7();
+
+    //reserves the next block of keys, returns its first key
+    private interface Reservation {
+        long reserve() throws SQLException;
+    }
+
+    //keys of the current block, [next, end)
+    private static class Block {
+        private long next;
+        private long end;
+
+        synchronized long next(Reservation reservation, int size) throws SQLException {
+            if (next == end) {
+                next = reservation.reserve();
+                end = next + size;
+            }
+            return next++;
+        }
+    }
+
+    IdGenerators(Dialect dialect, ConnectionSupplier connectionSupplier) {
+        this.dialect = dialect;
+        this.connectionSupplier = connectionSupplier;
+    }
+
+    //null, or zero for numeric keys, primitive or boxed, marks a key that isn't assigned yet
+    static boolean isEmptyKey(Object key) {
+        return key == null || key instanceof Number number && number.longValue() == 0;
+    }
+
+    //sets keys of id fields that are still empty
+    void assign(Connection conn, Object obj) throws SQLException {
+        EntityMetadata meta = MetadataStorage.get(obj.getClass());
+        if (meta == null)
+            return;
+        for (ColumnMetadata column : meta.getColumns().values()) {
+            IdGeneration generation = column.getIdGeneration();
+            if (generation == null)
+                continue;
+            Class<?> type = column.getField().getType();
+            Object current = getProperty(obj, column.getField().getName());
+            if (!isEmptyKey(current))
+                continue;
+            Object key = switch (generation.strategy()) {
+                case UUID_V7 -> uuids.next();
+                case SEQUENCE -> toFieldType(type, next(generation, () -> nextSequenceValue(conn, generation)));
+                case TABLE -> toFieldType(type, next(generation, () -> reserveFromTable(generation)));
+                case NONE -> null;
+            };
+            setProperty(obj, column.getField().getName(), key);
+        }
+    }
+
+    private long next(IdGeneration generation, Reservation reservation) throws SQLException {
+        return blocks.computeIfAbsent(generation, _ -> new Block()).next(reservation, generation.allocationSize());
+    }
+
+    //pooled sequence, incremented by allocation size, every value starts a block
+    private long nextSequenceValue(Connection conn, IdGeneration generation) throws SQLException {
+        if (!(dialect instanceof Dialect.SupportsSequences sequences))
+            throw new UnsupportedIdStrategyException("Dialect " + dialect.getClass().getSimpleName() + " doesn't support sequences");
+        try (Statement stmt = conn.createStatement();
+             ResultSet rs = stmt.executeQuery(sequences.generateNextSequenceValueQuery(generation.generator()))) {
+            rs.next();
+            return rs.getLong(1);
+        }
+    }
+
+    //table hi/lo, reserved in its own transaction so the generator row isn't locked until the caller commits
+    private long reserveFromTable(IdGeneration generation) throws SQLException {
+        String table = generation.generatorTable();
+        try (Connection conn = connectionSupplier.getConnection()) {
+            conn.setAutoCommit(false);
+            try {
+                for (int attempt = 0; ; attempt++) {
+                    try (PreparedStatement update = conn.prepareStatement(
+                            "UPDATE %s SET next_value = next_value + ? WHERE generator_name = ?".formatted(table))) {
+                        update.setLong(1, generation.allocationSize());
+                        update.setString(2, generation.generator());
+                        if (update.executeUpdate() == 1) {
+                            try (PreparedStatement select = conn.prepareStatement(
+                                    "SELECT next_value FROM %s WHERE generator_name = ?".formatted(table))) {
+                                select.setString(1, generation.generator());
+                                try (ResultSet rs = select.executeQuery()) {
+                                    rs.next();
+                                    long first = rs.getLong(1) - generation.allocationSize();
+                                    conn.commit();
+                                    return first;
+                                }
+                            }
+                        }
+                    }
+                    //first use of the generator, concurrent creation of the same row makes the update run again
+                    try (PreparedStatement insert = conn.prepareStatement(
+                            "INSERT INTO %s (generator_name, next_value) VALUES (?, ?)".formatted(table))) {
+                        insert.setString(1, generation.generator());
+                        insert.setLong(2, 1L + generation.allocationSize());
+                        insert.executeUpdate();
+                        conn.commit();
+                        return 1;
+                    } catch (SQLException e) {
+                        conn.rollback();
+                        if (attempt > 0)
+                            throw e;
+                    }
+                }
+            } catch (SQLException | RuntimeException e) {
+                conn.rollback();
+                throw e;
+            }
+        }
+    }
+
+    private static Object toFieldType(Class<?> type, long key) {
+        if (type == int.class || type == Integer.class)
+            return Math.toIntExact(key);
+        return key;
+    }
+
+    private static Object getProperty(Object obj, String name) {
+        try {
+            return PropertyUtils.getProperty(obj, name);
+        } catch (IllegalAccessException | InvocationTargetException | NoSuchMethodException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    private static void setProperty(Object obj, String name, Object value) {
+        try {
+            PropertyUtils.setProperty(obj, name, value);
+        } catch (IllegalAccessException | InvocationTargetException | NoSuchMethodException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    /**
+     * RFC 9562 version 7 UUIDs: 48 bit unix millisecond timestamp followed by random bits. The 12 bits after
+     * the version hold a counter, so UUIDs made in the same millisecond still increase.
+     */
+    private static class UuidV7 {
+        private final SecureRandom random = new SecureRandom();
+        private long lastMillis;
+        private int counter;
+
+        synchronized String next() {
+            long now = System.currentTimeMillis();
+            if (now > lastMillis) {
+                lastMillis = now;
+                //random start leaves half of the counter range for UUIDs in the same millisecond
+                counter = random.nextInt(0x800);
+            } else if (++counter > 0xFFF) {
+                //counter overflow borrows the next millisecond
+                lastMillis++;
+                counter = 0;
+            }
+            long msb = lastMillis << 16 | 0x7000 | counter;
+            long lsb = random.nextLong() & 0x3FFFFFFFFFFFFFFFL | 0x8000000000000000L;
+            return new UUID(msb, lsb).toString();
+        }
+    }
+}
@@ -0,0 +1,44 @@
+package raf.thesis;
+
+import raf.thesis.metadata.RelationMetadata;
+import raf.thesis.query.exceptions.LazyInitializationException;
+
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Lazy lists of one relation from one query result, initialized together with a single query.
+ */
+class LazyBatch {
+    private final Session session;
+    private final Class<?> ownerClass;
+    private final RelationMetadata relation;
+    private final List<LazyList<?>> members = new ArrayList<>();
+
+    LazyBatch(Session session, Class<?> ownerClass, RelationMetadata relation) {
+        this.session = session;
+        this.ownerClass = ownerClass;
+        this.relation = relation;
+    }
+
+    LazyList<?> newList(Object owner) {
+        LazyList<?> list = new LazyList<>(this, owner);
+        members.add(list);
+        return list;
+    }
+
+    synchronized void load() {
+        List<LazyList<?>> pending = members.stream().filter(list -> !list.isInitialized()).toList();
+        if (pending.isEmpty())
+            return;
+        try {
+            Map<List<Object>, List<Object>> loaded = session.fetchRelation(ownerClass, relation, pending.stream().map(LazyList::getOwner).toList());
+            for (var list : pending)
+                list.initialize(loaded.getOrDefault(Session.primaryKey(list.getOwner()), List.of()));
+        } catch (SQLException e) {
+            throw new LazyInitializationException("Failed to load relation " + relation.getRelationName() + " of " + ownerClass.getSimpleName(), e);
+        }
+    }
+}
@@ -0,0 +1,73 @@
+package raf.thesis;
+
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * List injected into lazy {@code @OneToMany} and {@code @ManyToMany} fields by the {@link Session}.
+ * Contents are loaded on first access, together with all uninitialized siblings from the same query.
+ *
+ * @param <E> type of related objects
+ */
+public class LazyList<E> extends AbstractList<E> {
+    private final LazyBatch batch;
+    private final Object owner;
+    private List<E> elements;
+
+    LazyList(LazyBatch batch, Object owner) {
+        this.batch = batch;
+        this.owner = owner;
+    }
+
+    /**
+     * Checks if the related objects are already loaded, without loading them.
+     *
+     * @return {@code true} if the list contents are loaded
+     */
+    public boolean isInitialized() {
+        return elements != null;
+    }
+
+    Object getOwner() {
+        return owner;
+    }
+
+    @SuppressWarnings("unchecked")
+    void initialize(List<?> loaded) {
+        elements = new ArrayList<>((List<E>) loaded);
+    }
+
+    private List<E> elements() {
+        if (elements == null)
+            batch.load();
+        return elements;
+    }
+
+    @Override
+    public E get(int index) {
+        return elements().get(index);
+    }
+
+    @Override
+    public int size() {
+        return elements().size();
+    }
+
+    @Override
+    public E set(int index, E element) {
+        return elements().set(index, element);
+    }
+
+    @Override
+    public void add(int index, E element) {
+        elements().add(index, element);
+        modCount++;
+    }
+
+    @Override
+    public E remove(int index) {
+        modCount++;
+        return elements().remove(index);
+    }
+}
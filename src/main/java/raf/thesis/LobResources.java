@@ -0,0 +1,67 @@
+package raf.thesis;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+import java.io.FilterInputStream;
+import java.io.FilterReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.Reader;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+/**
+ * Keeps the JDBC resources of a streamed large object open until the stream is closed.
+ */
+@AllArgsConstructor
+class LobResources implements AutoCloseable {
+    //null if the stream uses the session's active connection
+    private final Connection ownedConnection;
+    private final Statement statement;
+    @Getter
+    private final ResultSet resultSet;
+
+    InputStream wrap(InputStream stream) {
+        return new FilterInputStream(stream) {
+            @Override
+            public void close() throws IOException {
+                try {
+                    super.close();
+                } finally {
+                    closeResources();
+                }
+            }
+        };
+    }
+
+    Reader wrap(Reader reader) {
+        return new FilterReader(reader) {
+            @Override
+            public void close() throws IOException {
+                try {
+                    super.close();
+                } finally {
+                    closeResources();
+                }
+            }
+        };
+    }
+
+    private void closeResources() throws IOException {
+        try {
+            close();
+        } catch (SQLException e) {
+            throw new IOException(e);
+        }
+    }
+
+    @Override
+    public void close() throws SQLException {
+        //closed in reverse order: result set, statement, connection
+        try (ownedConnection; statement; resultSet) {
+        }
+    }
+}
@@ -0,0 +1,192 @@
+package raf.thesis;
+
+import raf.thesis.mapper.exceptions.ResultSetAccessException;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * Streams the partitions of a parallel scan. Every partition is read on its own connection by a producer thread
+ * that hands mapped objects over through a bounded queue, so a partition never holds more than the queue capacity
+ * of mapped objects. Partitions are interleaved as objects arrive, or merged lazily in the given order.
+ * Closing the stream stops the producers and closes their connections.
+ */
+class ParallelScan<T> {
+    private static final Object END = new Object();
+
+    private record Failure(Throwable cause) {
+    }
+
+    //reads one partition over the given connection, handing mapped objects to the sink
+    interface Partition<T> {
+        void read(Connection conn, Consumer<T> sink) throws SQLException;
+    }
+
+    private final ConnectionSupplier connectionSupplier;
+    private final int queueCapacity;
+    private final ExecutorService executor;
+    private final Set<Connection> connections = ConcurrentHashMap.newKeySet();
+
+    ParallelScan(ConnectionSupplier connectionSupplier, int partitions, int queueCapacity) {
+        this.connectionSupplier = connectionSupplier;
+        this.queueCapacity = queueCapacity;
+        this.executor = Executors.newFixedThreadPool(partitions);
+    }
+
+    Stream<T> stream(List<Partition<T>> partitions, Comparator<? super T> order) {
+        Iterator<T> iterator;
+        if (order == null) {
+            BlockingQueue<Object> shared = new ArrayBlockingQueue<>(queueCapacity * partitions.size());
+            partitions.forEach(partition -> executor.submit(() -> produce(partition, shared)));
+            iterator = new QueueIterator<>(shared, partitions.size());
+        } else {
+            List<Iterator<T>> iterators = new ArrayList<>();
+            for (var partition : partitions) {
+                BlockingQueue<Object> queue = new ArrayBlockingQueue<>(queueCapacity);
+                executor.submit(() -> produce(partition, queue));
+                iterators.add(new QueueIterator<>(queue, 1));
+            }
+            iterator = new MergeIterator<>(iterators, order);
+        }
+        executor.shutdown();
+        return StreamSupport.stream(Spliterators.spliteratorUnknownSize(iterator, Spliterator.ORDERED), false)
+                .onClose(this::close);
+    }
+
+    private void produce(Partition<T> partition, BlockingQueue<Object> queue) {
+        Connection conn = null;
+        try {
+            conn = connectionSupplier.getConnection();
+            connections.add(conn);
+            partition.read(conn, item -> put(queue, item));
+            queue.put(END);
+        } catch (InterruptedException | CancellationException e) {
+            //stream was closed, nobody is waiting for the rest
+        } catch (Throwable e) {
+            try {
+                queue.put(new Failure(e));
+            } catch (InterruptedException ignored) {
+            }
+        } finally {
+            if (conn != null) {
+                connections.remove(conn);
+                try {
+                    conn.close();
+                } catch (SQLException ignored) {
+                }
+            }
+        }
+    }
+
+    //producers wait when the queue is full, closing the stream interrupts them
+    private static void put(BlockingQueue<Object> queue, Object item) {
+        try {
+            queue.put(item);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new CancellationException();
+        }
+    }
+
+    private void close() {
+        executor.shutdownNow();
+        //producers blocked in the driver don't see the interrupt, closing the connection aborts them
+        for (Connection conn : connections) {
+            try {
+                conn.close();
+            } catch (SQLException ignored) {
+            }
+        }
+    }
+
+    //objects of queues fed by the given number of producers, ends once every producer is done
+    private static class QueueIterator<T> implements Iterator<T> {
+        private final BlockingQueue<Object> queue;
+        private int producers;
+        private Object next;
+
+        QueueIterator(BlockingQueue<Object> queue, int producers) {
+            this.queue = queue;
+            this.producers = producers;
+        }
+
+        @Override
+        public boolean hasNext() {
+            while (next == null && producers > 0) {
+                Object item = take();
+                switch (item) {
+                    case Failure failure when failure.cause() instanceof RuntimeException runtime -> throw runtime;
+                    case Failure failure -> throw new ResultSetAccessException(failure.cause());
+                    default -> {
+                        if (item == END)
+                            producers--;
+                        else
+                            next = item;
+                    }
+                }
+            }
+            return next != null;
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public T next() {
+            if (!hasNext())
+                throw new NoSuchElementException();
+            T item = (T) next;
+            next = null;
+            return item;
+        }
+
+        private Object take() {
+            try {
+                return queue.take();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new ResultSetAccessException(e);
+            }
+        }
+    }
+
+    //k-way merge of partitions already sorted in the given order, heads are read only when needed
+    private static class MergeIterator<T> implements Iterator<T> {
+        private final List<Iterator<T>> iterators;
+        private final PriorityQueue<Map.Entry<T, Integer>> heads;
+        private boolean started;
+
+        MergeIterator(List<Iterator<T>> iterators, Comparator<? super T> order) {
+            this.iterators = iterators;
+            this.heads = new PriorityQueue<>((a, b) -> order.compare(a.getKey(), b.getKey()));
+        }
+
+        @Override
+        public boolean hasNext() {
+            if (!started) {
+                started = true;
+                for (int i = 0; i < iterators.size(); i++)
+                    advance(i);
+            }
+            return !heads.isEmpty();
+        }
+
+        @Override
+        public T next() {
+            if (!hasNext())
+                throw new NoSuchElementException();
+            var head = heads.poll();
+            advance(head.getValue());
+            return head.getKey();
+        }
+
+        private void advance(int partition) {
+            Iterator<T> iterator = iterators.get(partition);
+            if (iterator.hasNext())
+                heads.add(new AbstractMap.SimpleEntry<>(iterator.next(), partition));
+        }
+    }
+}
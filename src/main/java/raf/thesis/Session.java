@@ -1,35 +1,81 @@
 package raf.thesis;
 
+import raf.thesis.mapper.ColumnarResult;
+import raf.thesis.mapper.CsvExportOptions;
+import raf.thesis.mapper.CsvExportResult;
+import raf.thesis.mapper.CsvFile;
+import raf.thesis.mapper.CsvImportOptions;
+import raf.thesis.mapper.CsvImportResult;
+import raf.thesis.mapper.CsvResultWriter;
 import raf.thesis.mapper.DefaultMapperImplementation;
+import raf.thesis.mapper.JsonResultWriter;
+import raf.thesis.mapper.LobSource;
+import raf.thesis.mapper.ParallelMapper;
+import raf.thesis.mapper.PipelinedMapper;
 import raf.thesis.mapper.RowMapper;
+import raf.thesis.mapper.exceptions.ResultSetAccessException;
+import raf.thesis.metadata.ColumnMetadata;
 import raf.thesis.metadata.EntityMetadata;
+import raf.thesis.metadata.RelationMetadata;
+import raf.thesis.metadata.RelationType;
 import raf.thesis.metadata.scan.MetadataScanner;
 import raf.thesis.metadata.storage.MetadataStorage;
 import raf.thesis.query.DBUpdateSolver;
+import raf.thesis.query.Page;
 import raf.thesis.query.PreparedStatementQuery;
 import raf.thesis.query.QueryBuilder;
+import raf.thesis.query.bulk.BatchBulkLoader;
+import raf.thesis.query.bulk.BulkLoader;
 import raf.thesis.query.dialect.ANSISQLDialect;
 import raf.thesis.query.dialect.Dialect;
 import raf.thesis.query.dialect.MSSQLServerDialect;
 import raf.thesis.query.dialect.MariaDBDialect;
+import raf.thesis.query.dialect.PostgreSQLDialect;
 import raf.thesis.query.exceptions.ConnectionUnavailableException;
 import raf.thesis.query.exceptions.EntityObjectRequiredException;
+import raf.thesis.query.exceptions.InvalidRelationPathException;
+import raf.thesis.query.exceptions.LazyInitializationException;
 import raf.thesis.query.transaction.SQLTransactionBody;
 import raf.thesis.query.transaction.SQLValuedTransactionBody;
+import raf.thesis.query.transaction.UnitOfWorkBody;
 import raf.thesis.query.tree.Literal;
 
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.Reader;
+import java.lang.reflect.Field;
+import java.math.BigInteger;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
 import java.sql.*;
-import java.util.List;
-import java.util.Objects;
-import java.util.Optional;
+import java.time.Duration;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+import java.util.zip.GZIPOutputStream;
 
 @SuppressWarnings("ClassEscapesDefinedScope")
-public class Session {
+public class Session implements LobSource {
     private final ConnectionSupplier connectionSupplier;
-    private final RowMapper rowMapper = new DefaultMapperImplementation();
+    private volatile RowMapper rowMapper = withLobSource(new DefaultMapperImplementation());
     private final Dialect dialect;
     private final DBUpdateSolver DBUpdateSolver;
+    private final IdGenerators idGenerators;
     private static final MetadataScanner metadataScanner = new MetadataScanner();
+    //max number of owner keys in a single relation loading query
+    private static final int RELATION_CHUNK_SIZE = 500;
+    //max number of rows in a single JDBC batch of insertAll and unit of work flush
+    private static final int BATCH_SIZE = 1000;
+    //rows fetched per round trip by streaming reads
+    private static final int STREAM_FETCH_SIZE = 1000;
+    //mapped objects buffered per partition of a parallel scan
+    private static final int SCAN_QUEUE_CAPACITY = 1000;
 
     private final ThreadLocal<Connection> activeConnection = new ThreadLocal<>();
 
@@ -39,6 +85,7 @@ public class Session {
         //detect which Dialect to use based on connection db
         dialect = getDialect();
         DBUpdateSolver = new DBUpdateSolver(dialect);
+        idGenerators = new IdGenerators(this.dialect, connectionSupplier);
     }
 
     public Session(ConnectionSupplier connectionSupplier, Dialect dialect, String... scanPackages) {
@@ -47,25 +94,69 @@ public class Session {
         //detect which Dialect to use based on connection db
         this.dialect = dialect;
         DBUpdateSolver = new DBUpdateSolver(dialect);
+        idGenerators = new IdGenerators(this.dialect, connectionSupplier);
     }
 
-    //detect database from connection
     private Dialect getDialect(){
         try(Connection conn = connectionSupplier.getConnection()){
-            String driverName = conn.getMetaData().getDriverName();
-            if(driverName.toLowerCase().contains("mariadb"))
-                return new MariaDBDialect();
-            if(driverName.toLowerCase().contains("mysql"))
-                return new MariaDBDialect();
-            if(driverName.toLowerCase().contains("microsoft"))
-                return new MSSQLServerDialect();
-            else
-                return new ANSISQLDialect();
+            return detectDialect(conn);
         } catch (SQLException e) {
             throw new ConnectionUnavailableException("Given connection supplier doesn't supply connections!");
         }
     }
 
+    //detect database from connection
+    static Dialect detectDialect(Connection conn) throws SQLException {
+        String driverName = conn.getMetaData().getDriverName();
+        if(driverName.toLowerCase().contains("mariadb"))
+            return new MariaDBDialect();
+        if(driverName.toLowerCase().contains("mysql"))
+            return new MariaDBDialect();
+        if(driverName.toLowerCase().contains("microsoft"))
+            return new MSSQLServerDialect();
+        if(driverName.toLowerCase().contains("postgresql"))
+            return new PostgreSQLDialect();
+        else
+            return new ANSISQLDialect();
+    }
+
+    //opt-in overlapping of JDBC fetching and object mapping, output stays the same as sequential mapping
+    public void usePipelinedMapping(int batchSize, int queueCapacity) {
+        replaceMapper(new PipelinedMapper(batchSize, queueCapacity));
+    }
+
+    //opt-in mapping of materialized results on a fork/join pool, output stays the same as sequential mapping
+    public void useParallelMapping(int parallelism) {
+        replaceMapper(new ParallelMapper(parallelism));
+    }
+
+    public void useParallelMapping(int parallelism, int rowsPerTask) {
+        replaceMapper(new ParallelMapper(parallelism, rowsPerTask));
+    }
+
+    //caller keeps ownership of the pool, the session doesn't shut it down
+    public void useParallelMapping(ForkJoinPool pool, int rowsPerTask) {
+        replaceMapper(new ParallelMapper(pool, rowsPerTask));
+    }
+
+    public void useSequentialMapping() {
+        replaceMapper(new DefaultMapperImplementation());
+    }
+
+    //pool of a replaced parallel mapper is shut down once the mappings running on it finish
+    private synchronized void replaceMapper(DefaultMapperImplementation mapper) {
+        RowMapper previous = rowMapper;
+        rowMapper = withLobSource(mapper);
+        if (previous instanceof ParallelMapper parallelMapper)
+            parallelMapper.close();
+    }
+
+    //mapped stream large objects are opened through this session on first read
+    private RowMapper withLobSource(DefaultMapperImplementation mapper) {
+        mapper.setLobSource(this);
+        return mapper;
+    }
+
     private <T> T runBody(SQLValuedTransactionBody<T> body) throws SQLException {
         if (activeConnection.get() != null) return body.execute(activeConnection.get());
         else
@@ -78,18 +169,270 @@ public class Session {
         String sql = queryBuilder.build(dialect);
         if (sql == null)
             return null;
-        return executeSelect(sql, resultClass);
+        List<T> result = executeSelect(sql, resultClass);
+        completeGraph(queryBuilder, result, resultClass);
+        return result;
     }
 
     public <T> List<T> executeSelect(String query, Class<T> resultClass) throws SQLException {
-        return runBody((conn) -> {
-            List<T> result;
+        return runBody((conn) -> selectWithRelations(conn, query, resultClass));
+    }
+
+    private <T> List<T> selectWithRelations(Connection conn, String query, Class<T> resultClass) throws SQLException {
+        List<T> result;
+        try (Statement stmt = conn.createStatement();
+             ResultSet rs = stmt.executeQuery(query)) {
+            result = rowMapper.mapWithRelations(rs, resultClass);
+        }
+        return result;
+    }
+
+    //owner keys are bound as parameters, never written into the query
+    private <T> List<T> selectWithRelations(Connection conn, PreparedStatementQuery query, Class<T> resultClass) throws SQLException {
+        try (PreparedStatement ps = conn.prepareStatement(query.getQuery())) {
+            for (int i = 1; i <= query.getArguments().size(); i++)
+                PreparedStatementQuery.bindLiteral(ps, i, query.getArguments().get(i - 1));
+            try (ResultSet rs = ps.executeQuery()) {
+                return rowMapper.mapWithRelations(rs, resultClass);
+            }
+        }
+    }
+
+    public long count(QueryBuilder queryBuilder) throws SQLException {
+        String sql = queryBuilder.toCountQuery().build(dialect);
+        return runBody(conn -> selectCount(conn, sql));
+    }
+
+    private long selectCount(Connection conn, String countQuery) throws SQLException {
+        try (Statement stmt = conn.createStatement();
+             ResultSet rs = stmt.executeQuery(countQuery)) {
+            rs.next();
+            return rs.getLong(1);
+        }
+    }
+
+    public <T> Page<T> executePage(QueryBuilder queryBuilder, Class<T> resultClass) throws SQLException {
+        //window total counts joined rows, it matches the number of entities only without collection joins
+        if (!(dialect instanceof Dialect.SupportsWindowFunctions windowDialect) || queryBuilder.joinsCollections()) {
+            String sql = queryBuilder.build(dialect);
+            String countSql = queryBuilder.toCountQuery().build(dialect);
+            Page<T> page = runBody(conn -> new Page<>(selectWithRelations(conn, sql, resultClass), selectCount(conn, countSql)));
+            completeGraph(queryBuilder, page.getContent(), resultClass);
+            return page;
+        }
+        String sql = queryBuilder.buildWithTotalCount(windowDialect);
+        Page<T> page = runBody(conn -> {
+            long[] total = {-1};
+            List<T> content;
             try (Statement stmt = conn.createStatement();
-                 ResultSet rs = stmt.executeQuery(query)) {
-                result = rowMapper.mapWithRelations(rs, resultClass);
+                 ResultSet rs = stmt.executeQuery(sql)) {
+                content = rowMapper.mapWithRelations(rs, resultClass, row -> {
+                    if (total[0] < 0)
+                        total[0] = row.getLong(QueryBuilder.TOTAL_COUNT_ALIAS);
+                });
             }
-            return result;
+            //empty page has no total column, count is surely zero only if no rows were skipped
+            if (total[0] < 0)
+                total[0] = queryBuilder.hasOffset() ? selectCount(conn, queryBuilder.toCountQuery().build(dialect)) : 0;
+            return new Page<>(content, total[0]);
         });
+        completeGraph(queryBuilder, page.getContent(), resultClass);
+        return page;
+    }
+
+    //relations fetched with additional queries and lazy collections
+
+    private void completeGraph(QueryBuilder queryBuilder, List<?> roots, Class<?> rootClass) throws SQLException {
+        Set<String> fetchedPaths = new HashSet<>(queryBuilder.joinedRelationPaths());
+        fetchedPaths.addAll(queryBuilder.jsonFetchPaths());
+        for (String path : queryBuilder.deferredFetchPaths()) {
+            int index = path.lastIndexOf(".");
+            String parentPath = index == -1 ? "" : path.substring(0, index);
+            Map<Class<?>, Set<Object>> parents = new HashMap<>();
+            collectOnPath(roots, rootClass, parentPath, parents);
+            for (var entry : parents.entrySet()) {
+                RelationMetadata relation = findRelation(entry.getKey(), path.substring(index + 1));
+                List<?> loadedParents;
+                if (queryBuilder.fetchesByKeys(path)) {
+                    loadedParents = selectRelationInChunks(entry.getKey(), relation, entry.getValue());
+                } else {
+                    String sql = queryBuilder.fetchQuery(path, entry.getValue()).build(dialect);
+                    loadedParents = runBody(conn -> selectWithRelations(conn, sql, entry.getKey()));
+                }
+                stitchRelation(relation, entry.getValue(), loadedParents);
+            }
+            fetchedPaths.add(path);
+        }
+        attachLazyCollections(roots, rootClass, "", fetchedPaths);
+    }
+
+    //collects distinct objects on the given relation path, grouped by class
+    private void collectOnPath(Collection<?> objects, Class<?> objectClass, String path, Map<Class<?>, Set<Object>> collected) {
+        if (objects.isEmpty())
+            return;
+        if (path.isEmpty()) {
+            collected.computeIfAbsent(objectClass, _ -> Collections.newSetFromMap(new IdentityHashMap<>())).addAll(objects);
+            return;
+        }
+        int index = path.indexOf(".");
+        RelationMetadata relation = findRelation(objectClass, index == -1 ? path : path.substring(0, index));
+        Field field = relation.getForeignField();
+        field.setAccessible(true);
+        List<Object> related = new ArrayList<>();
+        try {
+            for (Object object : objects) {
+                Object value = field.get(object);
+                if (value instanceof Collection<?> collection)
+                    related.addAll(collection);
+                else if (value != null)
+                    related.add(value);
+            }
+        } catch (IllegalAccessException e) {
+            throw new RuntimeException("Failed to read relation " + relation.getRelationName(), e);
+        }
+        collectOnPath(related, relation.getForeignClass(), index == -1 ? "" : path.substring(index + 1), collected);
+    }
+
+    //copies relation values from loaded owner copies to matching owners, owners without related objects get empty collections
+    private void stitchRelation(RelationMetadata relation, Collection<?> owners, List<?> loadedOwners) {
+        boolean collection = relation.getRelationType() == RelationType.ONE_TO_MANY || relation.getRelationType() == RelationType.MANY_TO_MANY;
+        Field field = relation.getForeignField();
+        field.setAccessible(true);
+        try {
+            Map<List<Object>, Object> loaded = new HashMap<>();
+            for (Object loadedOwner : loadedOwners)
+                loaded.put(primaryKey(loadedOwner), field.get(loadedOwner));
+            for (Object owner : owners) {
+                Object value = loaded.get(primaryKey(owner));
+                field.set(owner, value == null && collection ? new ArrayList<>() : value);
+            }
+        } catch (IllegalAccessException e) {
+            throw new RuntimeException("Error populating the relationship " + relation.getRelationName(), e);
+        }
+    }
+
+    private RelationMetadata findRelation(Class<?> ownerClass, String relationName) {
+        return MetadataStorage.get(ownerClass).getRelations().stream()
+                .filter(rel -> rel.getRelationName().equalsIgnoreCase(relationName))
+                .findFirst()
+                .orElseThrow(() -> new InvalidRelationPathException("Relation " + relationName + " doesn't exist in " + ownerClass.getSimpleName()));
+    }
+
+    //walks through the joined part of the object graph and binds lazy lists to collections that weren't joined
+    private void attachLazyCollections(Collection<?> objects, Class<?> objectClass, String path, Set<String> joinedPaths) {
+        if (objects.isEmpty())
+            return;
+        EntityMetadata metadata = MetadataStorage.get(objectClass);
+        for (RelationMetadata relation : metadata.getRelations()) {
+            String relationPath = path.isEmpty() ? relation.getRelationName() : path + "." + relation.getRelationName();
+            Field field = relation.getForeignField();
+            field.setAccessible(true);
+            try {
+                if (joinedPaths.contains(relationPath)) {
+                    Set<Object> related = Collections.newSetFromMap(new IdentityHashMap<>());
+                    for (Object object : objects) {
+                        Object value = field.get(object);
+                        if (value instanceof Collection<?> collection)
+                            related.addAll(collection);
+                        else if (value != null)
+                            related.add(value);
+                    }
+                    attachLazyCollections(related, relation.getForeignClass(), relationPath, joinedPaths);
+                } else if (relation.isLazy()) {
+                    LazyBatch batch = new LazyBatch(this, objectClass, relation);
+                    for (Object object : objects)
+                        field.set(object, batch.newList(object));
+                }
+            } catch (IllegalAccessException e) {
+                throw new LazyInitializationException("Failed to bind lazy relation " + relation.getRelationName(), e);
+            }
+        }
+    }
+
+    //loads the collection relation of all given owners, related objects are grouped by owner's primary key
+    Map<List<Object>, List<Object>> fetchRelation(Class<?> ownerClass, RelationMetadata relation, Collection<?> owners) throws SQLException {
+        List<?> loadedOwners = selectRelationInChunks(ownerClass, relation, owners);
+        Map<List<Object>, List<Object>> related = new HashMap<>();
+        List<Object> allRelated = new ArrayList<>();
+        Field field = relation.getForeignField();
+        field.setAccessible(true);
+        try {
+            for (Object loadedOwner : loadedOwners) {
+                List<Object> children = new ArrayList<>((Collection<?>) field.get(loadedOwner));
+                related.put(primaryKey(loadedOwner), children);
+                allRelated.addAll(children);
+            }
+        } catch (IllegalAccessException e) {
+            throw new LazyInitializationException("Failed to read relation " + relation.getRelationName(), e);
+        }
+        attachLazyCollections(allRelated, relation.getForeignClass(), "", Set.of());
+        return related;
+    }
+
+    //owner keys are split in chunks, so IN lists stay within database limits
+    private List<Object> selectRelationInChunks(Class<?> ownerClass, RelationMetadata relation, Collection<?> owners) throws SQLException {
+        List<?> ownerList = new ArrayList<>(owners);
+        List<Object> loadedOwners = new ArrayList<>();
+        for (int from = 0; from < ownerList.size(); from += RELATION_CHUNK_SIZE) {
+            List<?> chunk = ownerList.subList(from, Math.min(from + RELATION_CHUNK_SIZE, ownerList.size()));
+            PreparedStatementQuery query = QueryBuilder.selectRelation(ownerClass, relation.getRelationName(), chunk).buildPrepared(dialect);
+            loadedOwners.addAll(runBody(conn -> selectWithRelations(conn, query, ownerClass)));
+        }
+        return loadedOwners;
+    }
+
+    public <T> void loadRelation(Collection<T> owners, String relationPath) throws SQLException {
+        if (owners.isEmpty())
+            return;
+        Class<?> ownerClass = owners.iterator().next().getClass();
+        if (MetadataStorage.get(ownerClass) == null)
+            throw new EntityObjectRequiredException("Object: " + owners.iterator().next() + " is not an entity!");
+        Collection<?> level = owners;
+        String[] relationNames = relationPath.split("\\.");
+        for (int i = 0; i < relationNames.length; i++) {
+            RelationMetadata relation = findRelation(ownerClass, relationNames[i]);
+            Field field = relation.getForeignField();
+            field.setAccessible(true);
+            Set<Object> distinctOwners = Collections.newSetFromMap(new IdentityHashMap<>());
+            distinctOwners.addAll(level);
+            //relations on the way to the last one are loaded only where they are missing
+            boolean last = i == relationNames.length - 1;
+            List<Object> missing = new ArrayList<>();
+            try {
+                for (Object owner : distinctOwners) {
+                    Object value = field.get(owner);
+                    if (last || value == null || value instanceof LazyList<?> lazy && !lazy.isInitialized())
+                        missing.add(owner);
+                }
+            } catch (IllegalAccessException e) {
+                throw new RuntimeException("Failed to read relation " + relation.getRelationName(), e);
+            }
+            if (!missing.isEmpty()) {
+                stitchRelation(relation, missing, selectRelationInChunks(ownerClass, relation, missing));
+                Map<Class<?>, Set<Object>> loaded = new HashMap<>();
+                collectOnPath(missing, ownerClass, relation.getRelationName(), loaded);
+                attachLazyCollections(loaded.getOrDefault(relation.getForeignClass(), Set.of()), relation.getForeignClass(), "", Set.of());
+            }
+            Map<Class<?>, Set<Object>> related = new HashMap<>();
+            collectOnPath(distinctOwners, ownerClass, relation.getRelationName(), related);
+            level = related.getOrDefault(relation.getForeignClass(), Set.of());
+            ownerClass = relation.getForeignClass();
+            if (level.isEmpty())
+                return;
+        }
+    }
+
+    static List<Object> primaryKey(Object entity) {
+        List<Object> key = new ArrayList<>();
+        try {
+            for (Field idField : MetadataStorage.get(entity.getClass()).getIdFields()) {
+                idField.setAccessible(true);
+                key.add(idField.get(entity));
+            }
+        } catch (IllegalAccessException e) {
+            throw new LazyInitializationException("Failed to read primary key of " + entity, e);
+        }
+        return key;
     }
 
     public <T> List<T> executePDOSelect(QueryBuilder queryBuilder, Class<T> resultClass) throws SQLException {
@@ -110,8 +453,215 @@ public class Session {
         }));
     }
 
-    public <T> Optional<T> executeSingleRowPDOSelect(QueryBuilder queryBuilder, Class<T> resultClass) throws SQLException {
+    //flyweight read loop, the same instance is refilled for every row so the consumer must not retain it
+    public <T> void forEachRow(QueryBuilder queryBuilder, Class<T> resultClass, Consumer<? super T> consumer) throws SQLException {
         String sql = queryBuilder.build(dialect);
+        runBody(conn -> {
+            try (Statement stmt = conn.createStatement();
+                 ResultSet rs = stmt.executeQuery(sql)) {
+                rowMapper.forEachRow(rs, resultClass, consumer);
+            }
+            return null;
+        });
+    }
+
+    //streams result as JSON array without mapping it, relations fetched outside the main query aren't supported
+    public long writeJson(QueryBuilder queryBuilder, Class<?> resultClass, OutputStream out) throws SQLException {
+        return writeJson(queryBuilder, resultClass, Channels.newChannel(out));
+    }
+
+    public long writeJson(QueryBuilder queryBuilder, Class<?> resultClass, WritableByteChannel channel) throws SQLException {
+        if (!queryBuilder.deferredFetchPaths().isEmpty() || !queryBuilder.jsonFetchPaths().isEmpty())
+            throw new IllegalArgumentException("Only joined relations can be written as JSON");
+        String sql = queryBuilder.isPdoQuery() ? queryBuilder.build(dialect) : queryBuilder.buildGroupedByEntity(dialect);
+        return runBody(conn -> {
+            //some drivers stream with fetch size only inside a transaction
+            boolean autoCommit = conn.getAutoCommit();
+            if (autoCommit)
+                conn.setAutoCommit(false);
+            try (Statement stmt = conn.createStatement()) {
+                stmt.setFetchSize(STREAM_FETCH_SIZE);
+                try (ResultSet rs = stmt.executeQuery(sql)) {
+                    return new JsonResultWriter(channel).write(rs, resultClass);
+                }
+            } finally {
+                if (autoCommit)
+                    conn.setAutoCommit(true);
+            }
+        });
+    }
+
+    public CsvExportResult exportCsv(QueryBuilder queryBuilder, Path target) throws SQLException, IOException {
+        return exportCsv(queryBuilder, target, CsvExportOptions.defaults());
+    }
+
+    public CsvExportResult exportCsv(QueryBuilder queryBuilder, Path target, CsvExportOptions options) throws SQLException, IOException {
+        String sql = queryBuilder.build(dialect);
+        long start = System.nanoTime();
+        try (FileChannel file = FileChannel.open(target, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE);
+             WritableByteChannel channel = options.isGzip()
+                     ? Channels.newChannel(new GZIPOutputStream(Channels.newOutputStream(file), 1 << 16))
+                     : file) {
+            CsvResultWriter writer = new CsvResultWriter(channel, options);
+            long rows = runBody(conn -> {
+                //some drivers stream with fetch size only inside a transaction
+                boolean autoCommit = conn.getAutoCommit();
+                if (autoCommit)
+                    conn.setAutoCommit(false);
+                try (Statement stmt = conn.createStatement()) {
+                    stmt.setFetchSize(options.getFetchSize());
+                    try (ResultSet rs = stmt.executeQuery(sql)) {
+                        return writer.write(rs);
+                    }
+                } finally {
+                    if (autoCommit)
+                        conn.setAutoCommit(true);
+                }
+            });
+            return new CsvExportResult(rows, writer.written(), Duration.ofNanos(System.nanoTime() - start));
+        }
+    }
+
+    public CsvImportResult importCsv(Path source, Class<?> entityClass) throws SQLException, IOException {
+        return importCsv(source, entityClass, CsvImportOptions.defaults());
+    }
+
+    //inside transaction the file is imported over its connection, otherwise every chunk gets its own connection
+    public CsvImportResult importCsv(Path source, Class<?> entityClass, CsvImportOptions options) throws SQLException, IOException {
+        long start = System.nanoTime();
+        try (CsvFile file = CsvFile.open(source, options.getDelimiter(), options.isHeader())) {
+            CsvImport csvImport = new CsvImport(file, entityClass, options, dialect);
+            Connection active = activeConnection.get();
+            if (active != null) {
+                csvImport.importChunk(active, file.split(1).getFirst());
+            } else {
+                List<CsvFile.Chunk> chunks = csvImport.chunks();
+                ExecutorService executor = Executors.newFixedThreadPool(chunks.size());
+                try {
+                    List<Future<Void>> futures = new ArrayList<>();
+                    for (CsvFile.Chunk chunk : chunks) {
+                        futures.add(executor.submit(() -> {
+                            try (Connection conn = connectionSupplier.getConnection()) {
+                                csvImport.importChunk(conn, chunk);
+                            }
+                            return null;
+                        }));
+                    }
+                    for (Future<Void> future : futures)
+                        awaitChunk(future);
+                } finally {
+                    executor.shutdownNow();
+                }
+            }
+            return new CsvImportResult(csvImport.imported(), csvImport.rejected(), Duration.ofNanos(System.nanoTime() - start));
+        }
+    }
+
+    private static void awaitChunk(Future<Void> future) throws SQLException, IOException {
+        try {
+            future.get();
+        } catch (ExecutionException e) {
+            switch (e.getCause()) {
+                case SQLException sqlException -> throw sqlException;
+                case IOException ioException -> throw ioException;
+                case RuntimeException runtimeException -> throw runtimeException;
+                default -> throw new ResultSetAccessException(e.getCause());
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new ResultSetAccessException(e);
+        }
+    }
+
+    //struct-of-arrays result for analytics queries, no object is made per row
+    public ColumnarResult executeColumnar(QueryBuilder queryBuilder, Class<?> resultClass) throws SQLException {
+        String sql = queryBuilder.build(dialect);
+        return runBody(conn -> {
+            try (Statement stmt = conn.createStatement();
+                 ResultSet rs = stmt.executeQuery(sql)) {
+                return ColumnarResult.read(rs, resultClass);
+            }
+        });
+    }
+
+    //partition parallel scans, every partition runs on its own connection outside of the active transaction
+
+    public <T> Stream<T> parallelScan(QueryBuilder queryBuilder, Class<T> resultClass, int partitions) throws SQLException {
+        return parallelScan(queryBuilder, resultClass, queryBuilder.defaultSplitField(), partitions, null);
+    }
+
+    public <T> Stream<T> parallelScan(QueryBuilder queryBuilder, Class<T> resultClass, String splitField, int partitions) throws SQLException {
+        return parallelScan(queryBuilder, resultClass, splitField, partitions, null);
+    }
+
+    //with given order, partitions are merged in that order, otherwise their objects are returned as they arrive
+    public <T> Stream<T> parallelScan(QueryBuilder queryBuilder, Class<T> resultClass, String splitField, int partitions, Comparator<? super T> order) throws SQLException {
+        if (partitions < 1)
+            throw new IllegalArgumentException("Number of partitions must be positive");
+        String rangeSql = queryBuilder.toRangeQuery(splitField).build(dialect);
+        Long[] range = runBody(conn -> {
+            try (Statement stmt = conn.createStatement();
+                 ResultSet rs = stmt.executeQuery(rangeSql)) {
+                rs.next();
+                long low = rs.getLong(1);
+                return rs.wasNull() ? null : new Long[]{low, rs.getLong(2)};
+            }
+        });
+        if (range == null)
+            return Stream.empty();
+        //split the range in equal parts, there can't be more parts than values
+        BigInteger span = BigInteger.valueOf(range[1]).subtract(BigInteger.valueOf(range[0])).add(BigInteger.ONE);
+        int parts = span.min(BigInteger.valueOf(partitions)).intValue();
+        List<String> queries = new ArrayList<>();
+        Long from = null;
+        for (int i = 1; i <= parts; i++) {
+            Long to = i == parts ? null : BigInteger.valueOf(range[0]).add(span.multiply(BigInteger.valueOf(i)).divide(BigInteger.valueOf(parts))).longValue();
+            queries.add(queryBuilder.buildRange(dialect, splitField, from, to));
+            from = to;
+        }
+
+        List<ParallelScan.Partition<T>> scans = new ArrayList<>();
+        for (String query : queries)
+            scans.add((conn, sink) -> scanPartition(conn, queryBuilder, query, resultClass, sink));
+        return new ParallelScan<T>(connectionSupplier, parts, SCAN_QUEUE_CAPACITY).stream(scans, order);
+    }
+
+    //rows are mapped as they are fetched, entity roots are completed in chunks before they are handed over
+    private <T> void scanPartition(Connection conn, QueryBuilder queryBuilder, String query, Class<T> resultClass, Consumer<T> sink) throws SQLException {
+        //some drivers stream with fetch size only inside a transaction
+        conn.setAutoCommit(false);
+        try (Statement stmt = conn.createStatement()) {
+            stmt.setFetchSize(STREAM_FETCH_SIZE);
+            try (ResultSet rs = stmt.executeQuery(query)) {
+                if (queryBuilder.isPdoQuery()) {
+                    rowMapper.forEachInstance(rs, resultClass, sink);
+                    return;
+                }
+                List<T> chunk = new ArrayList<>();
+                rowMapper.forEachRoot(rs, resultClass, root -> {
+                    chunk.add(root);
+                    if (chunk.size() == RELATION_CHUNK_SIZE)
+                        completeChunk(queryBuilder, chunk, resultClass, sink);
+                });
+                completeChunk(queryBuilder, chunk, resultClass, sink);
+            }
+        } finally {
+            conn.setAutoCommit(true);
+        }
+    }
+
+    private <T> void completeChunk(QueryBuilder queryBuilder, List<T> chunk, Class<T> resultClass, Consumer<T> sink) {
+        try {
+            completeGraph(queryBuilder, chunk, resultClass);
+        } catch (SQLException e) {
+            throw new ResultSetAccessException(e);
+        }
+        chunk.forEach(sink);
+        chunk.clear();
+    }
+
+    public <T> Optional<T> executeSingleRowPDOSelect(QueryBuilder queryBuilder, Class<T> resultClass) throws SQLException {
+        String sql = queryBuilder.buildFirstRow(dialect);
         if (sql == null)
             return Optional.empty();
         return executeSingleRowPDOSelect(sql, resultClass);
@@ -120,49 +670,317 @@ public class Session {
     public <T> Optional<T> executeSingleRowPDOSelect(String query, Class<T> resultClass) throws SQLException {
         return runBody((conn) -> {
             Optional<T> result;
-            try (Statement stmt = conn.createStatement();
-                 ResultSet rs = stmt.executeQuery(query)) {
-                result = Optional.ofNullable(rowMapper.map(rs, resultClass));
+            try (Statement stmt = conn.createStatement()) {
+                //driver can stop fetching after the first row
+                stmt.setMaxRows(1);
+                try (ResultSet rs = stmt.executeQuery(query)) {
+                    result = rs.next() ? Optional.ofNullable(rowMapper.map(rs, resultClass)) : Optional.empty();
+                }
             }
             return result;
         });
     }
 
+    public boolean exists(QueryBuilder queryBuilder) throws SQLException {
+        String sql = queryBuilder.buildExists(dialect);
+        return runBody(conn -> {
+            try (Statement stmt = conn.createStatement()) {
+                stmt.setMaxRows(1);
+                try (ResultSet rs = stmt.executeQuery(sql)) {
+                    return rs.next() && rs.getInt(1) == 1;
+                }
+            }
+        });
+    }
+
     public <T> T insert(T obj) throws SQLException {
-        return runBody((conn -> {
-            PreparedStatementQuery mainInsert = DBUpdateSolver.generateInsert(obj);
-            ResultSet rs;
+        return runBody(conn -> insert(conn, obj));
+    }
 
-            //databases that doesn't support generatedKeys() with given column labels
-            if(dialect instanceof Dialect.UsesInsertReturning)
-                rs = insertReturning(conn, mainInsert);
-            //normal ones
-            else
-                rs = insertAndGetKeys(conn, mainInsert, obj);
+    private <T> T insert(Connection conn, T obj) throws SQLException {
+        T keysObject = insertRow(conn, obj);
 
-            rs.next();
-            T keysObject = rowMapper.map(rs, obj);
+        //solve many-to-many relationships
+        List<PreparedStatementQuery> queries = DBUpdateSolver.generateManyToManyInserts(keysObject);
+
+        //go in reverse as last element in list is the main insert, others are many to many inserts
+        for (int k = queries.size() - 1; k >= 0; k--) {
+            PreparedStatementQuery pq = queries.get(k);
+            PreparedStatement ps = conn.prepareStatement(pq.getQuery());
+            for (int i = 1; i <= pq.getArguments().size(); i++) {
+                PreparedStatementQuery.bindLiteral(ps, i, pq.getArguments().get(i - 1));
+            }
+            ps.executeUpdate();
+        }
+        return keysObject;
+    }
+
+    //inserts only the entity row, keys from the database are mapped back into the object
+    private <T> T insertRow(Connection conn, T obj) throws SQLException {
+        return insertRow(conn, obj, Map.of());
+    }
 
-            //solve many-to-many relationships
-            List<PreparedStatementQuery> queries = DBUpdateSolver.generateManyToManyInserts(keysObject);
+    private <T> T insertRow(Connection conn, T obj, Map<String, Literal> foreignKeys) throws SQLException {
+        //keys with a strategy are assigned before the insert
+        idGenerators.assign(conn, obj);
+        PreparedStatementQuery mainInsert = DBUpdateSolver.generateInsert(obj, foreignKeys);
+        ResultSet rs;
+
+        //databases that doesn't support generatedKeys() with given column labels
+        if(dialect instanceof Dialect.UsesInsertReturning)
+            rs = insertReturning(conn, mainInsert);
+        //normal ones
+        else
+            rs = insertAndGetKeys(conn, mainInsert, obj);
+
+        rs.next();
+        return rowMapper.map(rs, obj);
+    }
 
-            //go in reverse as last element in list is the main insert, others are many to many inserts
-            for (int k = queries.size() - 1; k >= 0; k--) {
-                PreparedStatementQuery pq = queries.get(k);
-                PreparedStatement ps = conn.prepareStatement(pq.getQuery());
-                for (int i = 1; i <= pq.getArguments().size(); i++) {
-                    bindLiteral(ps, i, pq.getArguments().get(i - 1));
+    //objects with keys known before insert are written in batches grouped by table, in order of first appearance,
+    //followed by their many-to-many rows. Objects with keys generated by the database are inserted one by one,
+    //rows batched before them are written first
+    public <T> List<T> insertAll(List<T> objects) throws SQLException {
+        return runBody(conn -> {
+            Map<String, List<List<Literal>>> rows = new LinkedHashMap<>();
+            List<Object> batched = new ArrayList<>();
+            for (T obj : objects) {
+                EntityMetadata meta = MetadataStorage.get(obj.getClass());
+                if (meta == null)
+                    throw new EntityObjectRequiredException("Given object: " + obj.getClass().getName() + " is not an entity");
+                if (meta.getGeneratedId().contains(true)) {
+                    executeBatches(conn, rows);
+                    insert(conn, obj);
+                    continue;
                 }
-                ps.executeUpdate();
+                idGenerators.assign(conn, obj);
+                String query = dialect.generateInsertQuery(DBUpdateSolver.generateBulkColumns(meta), meta.getTableName());
+                rows.computeIfAbsent(query, _ -> new ArrayList<>()).add(DBUpdateSolver.generateBulkValues(meta, obj));
+                batched.add(obj);
             }
-            return keysObject;
-        }));
+            executeBatches(conn, rows);
+            for (Object obj : batched) {
+                for (PreparedStatementQuery pq : DBUpdateSolver.generateManyToManyInserts(obj))
+                    rows.computeIfAbsent(pq.getQuery(), _ -> new ArrayList<>()).add(pq.getArguments());
+            }
+            executeBatches(conn, rows);
+            return objects;
+        });
+    }
+
+    //registered objects are flushed when the body returns, inside the active transaction or a new one
+    public void unitOfWork(UnitOfWorkBody body) throws SQLException {
+        inTransaction(conn -> {
+            UnitOfWork unitOfWork = new UnitOfWork(this, DBUpdateSolver, idGenerators, this::insertRow);
+            body.execute(unitOfWork);
+            unitOfWork.flush(conn);
+        });
+    }
+
+    //inserts the root with every object reachable through many-to-one, one-to-one and one-to-many relations, as
+    //a unit of work: parents first, rows of an entity batched per level, joined rows of many-to-many relations at the end.
+    //Objects on the other side of many-to-many relations aren't inserted, neither are objects whose database generated
+    //or strategy assigned keys are already set, those are treated as saved. Keys set by the application tell nothing,
+    //so rows that already exist have to be given as existing, they are referenced but neither inserted nor traversed
+    public <T> T insertGraph(T root, Object... existing) throws SQLException {
+        if (MetadataStorage.get(root.getClass()) == null)
+            throw new EntityObjectRequiredException("Given object: " + root.getClass().getName() + " is not an entity");
+        List<Object> graph = new ArrayList<>();
+        Set<Object> visited = Collections.newSetFromMap(new IdentityHashMap<>());
+        visited.addAll(Arrays.asList(existing));
+        Deque<Object> pending = new ArrayDeque<>(List.of(root));
+        while (!pending.isEmpty()) {
+            Object obj = pending.pop();
+            if (!visited.add(obj) || isSaved(obj))
+                continue;
+            graph.add(obj);
+            for (RelationMetadata relation : MetadataStorage.get(obj.getClass()).getRelations()) {
+                if (relation.getRelationType() == RelationType.MANY_TO_MANY)
+                    continue;
+                Object value = DBUpdateSolver.extractFieldValue(relation.getForeignField(), obj);
+                if (value instanceof LazyList<?> lazyList && !lazyList.isInitialized())
+                    continue;
+                if (value instanceof Collection<?> collection)
+                    collection.stream().filter(Objects::nonNull).forEach(pending::push);
+                else if (value != null)
+                    pending.push(value);
+            }
+        }
+        inTransaction(conn -> {
+            UnitOfWork unitOfWork = new UnitOfWork(this, DBUpdateSolver, idGenerators, this::insertRow);
+            graph.forEach(unitOfWork::registerNew);
+            unitOfWork.flush(conn);
+        });
+        return root;
+    }
+
+    //keys made by the database or by an id strategy are empty until the object is inserted
+    private boolean isSaved(Object obj) {
+        EntityMetadata meta = MetadataStorage.get(obj.getClass());
+        for (int i = 0; i < meta.getIdFields().size(); i++) {
+            Field field = meta.getIdFields().get(i);
+            boolean assignedOnInsert = meta.getGeneratedId().get(i) || meta.getColumns().values().stream()
+                    .anyMatch(column -> column.getField().equals(field) && column.getIdGeneration() != null);
+            if (!assignedOnInsert)
+                continue;
+            if (!IdGenerators.isEmptyKey(DBUpdateSolver.extractFieldValue(field, obj)))
+                return true;
+        }
+        return false;
+    }
+
+    //deletes the root and rows reached through the given one-to-many, inverse one-to-one and many-to-many relation
+    //paths with set based statements in one transaction, without loading them. Many-to-many paths delete only joined
+    //rows. Returns affected rows per table, in order of the statements
+    public Map<String, Integer> deleteCascade(Object root, String... relationPaths) throws SQLException {
+        List<DBUpdateSolver.TableDelete> deletes = DBUpdateSolver.generateCascadeDeletes(root, List.of(relationPaths));
+        Map<String, Integer> counts = new LinkedHashMap<>();
+        inTransaction(conn -> {
+            for (DBUpdateSolver.TableDelete delete : deletes) {
+                PreparedStatementQuery query = delete.query();
+                try (PreparedStatement ps = conn.prepareStatement(query.getQuery())) {
+                    for (int i = 1; i <= query.getArguments().size(); i++)
+                        PreparedStatementQuery.bindLiteral(ps, i, query.getArguments().get(i - 1));
+                    counts.merge(delete.tableName(), ps.executeUpdate(), Integer::sum);
+                }
+            }
+        });
+        return counts;
+    }
+
+    //rewrites the joined table rows of the owner to match its many-to-many list: one select of the connected keys,
+    //then missing rows are inserted and stale rows deleted in one batch each. Null list is left as it is
+    public void syncRelation(Object owner, String relationName) throws SQLException {
+        if (MetadataStorage.get(owner.getClass()) == null)
+            throw new EntityObjectRequiredException("Given object: " + owner.getClass().getName() + " is not an entity");
+        RelationMetadata relation = findRelation(owner.getClass(), relationName);
+        if (relation.getRelationType() != RelationType.MANY_TO_MANY)
+            throw new InvalidRelationPathException("Relation " + relationName + " in " + owner.getClass().getSimpleName() + " is not many-to-many");
+        if (!(DBUpdateSolver.extractFieldValue(relation.getForeignField(), owner) instanceof List<?> related))
+            return;
+
+        List<Literal> ownerKeys = DBUpdateSolver.keyValues(owner);
+        Set<List<Literal>> wanted = new LinkedHashSet<>();
+        for (Object obj : related)
+            wanted.add(DBUpdateSolver.keyValues(obj));
+        PreparedStatementQuery select = DBUpdateSolver.selectJoinedKeys(owner, relation);
+        List<String> columns = new ArrayList<>(relation.getMyJoinedTableFks());
+        columns.addAll(relation.getForeignKeyNames());
+        //keys are read as the key fields of the related entity, so they compare equal to the wanted ones
+        List<Class<?>> keyTypes = DBUpdateSolver.keyTypes(relation.getForeignClass());
+
+        inTransaction(conn -> {
+            Set<List<Literal>> current = new HashSet<>();
+            try (PreparedStatement ps = conn.prepareStatement(select.getQuery())) {
+                for (int i = 1; i <= select.getArguments().size(); i++)
+                    PreparedStatementQuery.bindLiteral(ps, i, select.getArguments().get(i - 1));
+                try (ResultSet rs = ps.executeQuery()) {
+                    while (rs.next()) {
+                        List<Literal> keys = new ArrayList<>();
+                        for (int i = 1; i <= relation.getForeignKeyNames().size(); i++)
+                            keys.add(DBUpdateSolver.makeLiteral(rs.getObject(i, keyTypes.get(i - 1))));
+                        current.add(keys);
+                    }
+                }
+            }
+            Map<String, List<List<Literal>>> rows = new LinkedHashMap<>();
+            String delete = dialect.generateDeleteQuery(columns, relation.getJoinedTableName());
+            for (List<Literal> keys : current) {
+                if (!wanted.contains(keys))
+                    rows.computeIfAbsent(delete, _ -> new ArrayList<>()).add(joinedRow(ownerKeys, keys));
+            }
+            String insert = dialect.generateInsertQuery(columns, relation.getJoinedTableName());
+            for (List<Literal> keys : wanted) {
+                if (!current.contains(keys))
+                    rows.computeIfAbsent(insert, _ -> new ArrayList<>()).add(joinedRow(ownerKeys, keys));
+            }
+            executeBatches(conn, rows);
+        });
+    }
+
+    private static List<Literal> joinedRow(List<Literal> ownerKeys, List<Literal> relatedKeys) {
+        List<Literal> row = new ArrayList<>(ownerKeys);
+        row.addAll(relatedKeys);
+        return row;
+    }
+
+    //runs the body in the active transaction, or in a new one
+    private void inTransaction(SQLTransactionBody body) throws SQLException {
+        if (activeConnection.get() != null)
+            body.execute(activeConnection.get());
+        else
+            transaction(body);
+    }
+
+    //executes and clears collected rows, statements are sent in batches of BATCH_SIZE rows
+    static void executeBatches(Connection conn, Map<String, List<List<Literal>>> rows) throws SQLException {
+        for (var entry : rows.entrySet()) {
+            try (PreparedStatement ps = conn.prepareStatement(entry.getKey())) {
+                int pending = 0;
+                for (List<Literal> row : entry.getValue()) {
+                    for (int i = 0; i < row.size(); i++)
+                        PreparedStatementQuery.bindLiteral(ps, i + 1, row.get(i));
+                    ps.addBatch();
+                    if (++pending == BATCH_SIZE) {
+                        ps.executeBatch();
+                        pending = 0;
+                    }
+                }
+                if (pending > 0)
+                    ps.executeBatch();
+            }
+        }
+        rows.clear();
+    }
+
+    //loads rows in entity column order through the native loader of the database, generated keys aren't read back
+    //and many-to-many rows aren't written
+    public <T> long bulkLoad(Class<T> entityClass, Iterable<? extends T> entities) throws SQLException {
+        EntityMetadata meta = bulkMetadata(entityClass);
+        //large objects are bound as streams, which only the batch fallback can do
+        boolean hasLob = meta.getColumns().values().stream().anyMatch(ColumnMetadata::isLob);
+        return runBody(conn -> {
+            BulkLoader loader = dialect instanceof Dialect.SupportsBulkLoad bulkDialect && !hasLob
+                    ? bulkDialect.bulkLoader(conn)
+                    : new BatchBulkLoader(dialect);
+            return bulkLoad(conn, meta, entities, loader);
+        });
+    }
+
+    public <T> long bulkLoad(Class<T> entityClass, Iterable<? extends T> entities, BulkLoader loader) throws SQLException {
+        EntityMetadata meta = bulkMetadata(entityClass);
+        return runBody(conn -> bulkLoad(conn, meta, entities, loader));
+    }
+
+    private EntityMetadata bulkMetadata(Class<?> entityClass) {
+        EntityMetadata meta = MetadataStorage.get(entityClass);
+        if (meta == null)
+            throw new EntityObjectRequiredException("Class " + entityClass.getName() + " is not an entity");
+        return meta;
+    }
+
+    private long bulkLoad(Connection conn, EntityMetadata meta, Iterable<?> entities, BulkLoader loader) throws SQLException {
+        Iterator<?> iterator = entities.iterator();
+        if (!iterator.hasNext())
+            return 0;
+        Iterator<List<Literal>> rows = new Iterator<>() {
+            @Override
+            public boolean hasNext() {
+                return iterator.hasNext();
+            }
+
+            @Override
+            public List<Literal> next() {
+                return DBUpdateSolver.generateBulkValues(meta, iterator.next());
+            }
+        };
+        return loader.load(conn, meta.getTableName(), DBUpdateSolver.generateBulkColumns(meta), rows);
     }
 
     private ResultSet insertAndGetKeys(Connection conn, PreparedStatementQuery mainInsert, Object obj) throws SQLException{
         PreparedStatement preparedStatement = conn.prepareStatement(mainInsert.getQuery(), extractKeys(obj));
         for (int i = 1; i <= mainInsert.getArguments().size(); i++) {
-            bindLiteral(preparedStatement, i, mainInsert.getArguments().get(i - 1));
+            PreparedStatementQuery.bindLiteral(preparedStatement, i, mainInsert.getArguments().get(i - 1));
         }
         preparedStatement.executeUpdate();
         return preparedStatement.getGeneratedKeys();
@@ -171,7 +989,7 @@ public class Session {
     private ResultSet insertReturning(Connection conn, PreparedStatementQuery mainInsert) throws SQLException{
         PreparedStatement preparedStatement = conn.prepareStatement(mainInsert.getQuery());
         for (int i = 1; i <= mainInsert.getArguments().size(); i++) {
-            bindLiteral(preparedStatement, i, mainInsert.getArguments().get(i - 1));
+            PreparedStatementQuery.bindLiteral(preparedStatement, i, mainInsert.getArguments().get(i - 1));
         }
         return preparedStatement.executeQuery();
     }
@@ -208,11 +1026,73 @@ public class Session {
         executeUpdateStatement(disconnect);
     }
 
+    //large object streaming, streams keep their statement (and connection outside of transactions) open until closed
+
+    @Override
+    public InputStream openStream(Object entity, String fieldName) throws SQLException {
+        LobResources lob = openLob(entity, fieldName);
+        if (lob == null)
+            return null;
+        InputStream stream = null;
+        try {
+            stream = lob.getResultSet().getBinaryStream(1);
+            return stream == null ? null : lob.wrap(stream);
+        } finally {
+            if (stream == null)
+                lob.close();
+        }
+    }
+
+    @Override
+    public Reader openReader(Object entity, String fieldName) throws SQLException {
+        LobResources lob = openLob(entity, fieldName);
+        if (lob == null)
+            return null;
+        Reader reader = null;
+        try {
+            reader = lob.getResultSet().getCharacterStream(1);
+            return reader == null ? null : lob.wrap(reader);
+        } finally {
+            if (reader == null)
+                lob.close();
+        }
+    }
+
+    public ReadableByteChannel openChannel(Object entity, String fieldName) throws SQLException {
+        InputStream stream = openStream(entity, fieldName);
+        return stream == null ? null : Channels.newChannel(stream);
+    }
+
+    //returns resources positioned on the selected row, null if the row doesn't exist
+    private LobResources openLob(Object entity, String fieldName) throws SQLException {
+        PreparedStatementQuery select = DBUpdateSolver.selectColumn(entity, fieldName);
+        Connection ownedConnection = activeConnection.get() == null ? connectionSupplier.getConnection() : null;
+        Connection conn = ownedConnection != null ? ownedConnection : activeConnection.get();
+        PreparedStatement ps = null;
+        try {
+            ps = conn.prepareStatement(select.getQuery());
+            for (int i = 1; i <= select.getArguments().size(); i++) {
+                PreparedStatementQuery.bindLiteral(ps, i, select.getArguments().get(i - 1));
+            }
+            LobResources lob = new LobResources(ownedConnection, ps, ps.executeQuery());
+            if (lob.getResultSet().next())
+                return lob;
+            lob.close();
+            return null;
+        } catch (SQLException | RuntimeException e) {
+            if (ps != null)
+                ps.close();
+            if (ownedConnection != null)
+                ownedConnection.close();
+            throw e;
+        }
+    }
+
     private void executeUpdateStatement(PreparedStatementQuery update) throws SQLException {
         runBody(conn -> {
             PreparedStatement preparedStatement = conn.prepareStatement(update.getQuery());
             for (int i = 1; i <= update.getArguments().size(); i++) {
-                bindLiteral(preparedStatement, i, update.getArguments().get(i - 1));
+                PreparedStatementQuery.bindLiteral(preparedStatement, i, update.getArguments().get(i - 1));
             }
             preparedStatement.executeUpdate();
             return null;
@@ -234,21 +1114,6 @@ public class Session {
         return keys;
     }
 
-    private void bindLiteral(PreparedStatement ps, int idx, Literal lit) throws SQLException {
-        switch (lit) {
-            case Literal.DoubleCnst d -> ps.setDouble(idx, d.x());
-            case Literal.LongCnst l -> ps.setLong(idx, l.x());
-            case Literal.StringCnst s -> ps.setString(idx, s.x());
-            case Literal.BoolCnst b -> ps.setBoolean(idx, b.x());
-            case Literal.DateCnst d -> ps.setDate(idx, java.sql.Date.valueOf(d.x()));
-            case Literal.DateTimeCnst dt -> ps.setTimestamp(idx, java.sql.Timestamp.valueOf(dt.x()));
-            case Literal.TimeCnst t -> ps.setTime(idx, java.sql.Time.valueOf(t.x()));
-            case Literal.NullCnst _ -> ps.setNull(idx, java.sql.Types.NULL);
-
-            default -> throw new IllegalArgumentException("Unsupported literal: " + lit.getClass());
-        }
-    }
-
     private static class IgnoreNull {
         public String toString() {
             return "IGNORE NULL";
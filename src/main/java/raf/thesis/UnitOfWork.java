@@ -0,0 +1,337 @@
+package raf.thesis;
+
+import raf.thesis.metadata.ColumnMetadata;
+import raf.thesis.metadata.EntityMetadata;
+import raf.thesis.metadata.RelationMetadata;
+import raf.thesis.metadata.RelationType;
+import raf.thesis.metadata.storage.MetadataStorage;
+import raf.thesis.query.DBUpdateSolver;
+import raf.thesis.query.PreparedStatementQuery;
+import raf.thesis.query.QueryBuilder;
+import raf.thesis.query.exceptions.EntityObjectRequiredException;
+import raf.thesis.query.tree.Literal;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.*;
+
+/**
+ * Collects new, modified and removed entities and writes them with a single flush, see {@link Session#unitOfWork}.
+ * <p>
+ * Rows are ordered by foreign keys between registered objects: an object is inserted after the objects it refers to
+ * through many-to-one and owning one-to-one relations, and deleted before them. Statements of the same shape are
+ * sent in JDBC batches, only objects with keys generated by the database are inserted one by one, since their keys
+ * have to be read back before dependent rows are written. Their foreign keys taken from owners are part of that insert.
+ * <p>
+ * New objects held by one-to-many collections of new owners are inserted after their owners, with the foreign key
+ * taken from the owner. Remaining relations of new objects are written after all inserts: many-to-many rows and
+ * foreign keys of one-to-many collections holding objects that already exist. Updates write columns like
+ * {@link Session#update(Object)}, removed objects lose rows of their many-to-many relations before being deleted.
+ * <p>
+ * Objects loaded through the unit of work, or passed to {@link #track(Object)}, keep a snapshot of their column values.
+ * Only the columns changed since the snapshot are updated, and unchanged objects aren't written at all.
+ */
+public class UnitOfWork {
+    private final Session session;
+    private final DBUpdateSolver solver;
+    private final IdGenerators idGenerators;
+    private final RowInserter rowInserter;
+    private final Registered created = new Registered();
+    private final Registered dirty = new Registered();
+    private final Registered removed = new Registered();
+    private final Registered tracked = new Registered();
+    private final Map<Object, EntitySnapshot> snapshots = new IdentityHashMap<>();
+
+    //inserts a single entity row with the given foreign key columns and maps generated keys back into it
+    interface RowInserter {
+        void insert(Connection conn, Object obj, Map<String, Literal> foreignKeys) throws SQLException;
+    }
+
+    //owner whose one-to-many or inverse one-to-one relation holds a registered object, its keys are the object's foreign key
+    private record Parent(Object owner, RelationMetadata relation) {
+    }
+
+    //row of a joined table, the same row can be reached from both sides of a many-to-many relation
+    private record JoinedRow(String table, Map<String, Literal> values) {
+    }
+
+    //objects compared by identity, in order of registration
+    private static class Registered implements Iterable<Object> {
+        private final Set<Object> members = Collections.newSetFromMap(new IdentityHashMap<>());
+        private final List<Object> order = new ArrayList<>();
+
+        void add(Object obj) {
+            if (members.add(obj))
+                order.add(obj);
+        }
+
+        boolean remove(Object obj) {
+            if (!members.remove(obj))
+                return false;
+            order.removeIf(member -> member == obj);
+            return true;
+        }
+
+        boolean contains(Object obj) {
+            return members.contains(obj);
+        }
+
+        @Override
+        public Iterator<Object> iterator() {
+            return order.iterator();
+        }
+    }
+
+    UnitOfWork(Session session, DBUpdateSolver solver, IdGenerators idGenerators, RowInserter rowInserter) {
+        this.session = session;
+        this.solver = solver;
+        this.idGenerators = idGenerators;
+        this.rowInserter = rowInserter;
+    }
+
+    public UnitOfWork registerNew(Object entity) {
+        check(entity);
+        //removing and then adding again cancels the removal
+        if (!removed.remove(entity))
+            created.add(entity);
+        return this;
+    }
+
+    //modified objects that are new or removed are already covered by their insert or delete
+    public UnitOfWork registerDirty(Object entity) {
+        check(entity);
+        if (!created.contains(entity) && !removed.contains(entity))
+            dirty.add(entity);
+        return this;
+    }
+
+    public UnitOfWork registerRemoved(Object entity) {
+        check(entity);
+        dirty.remove(entity);
+        //new objects that are removed again are never written
+        if (!created.remove(entity))
+            removed.add(entity);
+        return this;
+    }
+
+    //selected entities and entities of their loaded relations are tracked
+    public <T> List<T> executeSelect(QueryBuilder queryBuilder, Class<T> resultClass) throws SQLException {
+        List<T> result = session.executeSelect(queryBuilder, resultClass);
+        result.forEach(this::track);
+        return result;
+    }
+
+    //takes a snapshot of column values of the entity and of entities reachable through its loaded relations,
+    //changes made after it are found at flush without registering the objects as dirty
+    public UnitOfWork track(Object entity) {
+        check(entity);
+        Deque<Object> pending = new ArrayDeque<>(List.of(entity));
+        while (!pending.isEmpty()) {
+            Object obj = pending.pop();
+            if (tracked.contains(obj))
+                continue;
+            tracked.add(obj);
+            snapshots.put(obj, EntitySnapshot.of(obj));
+            for (RelationMetadata relation : MetadataStorage.get(obj.getClass()).getRelations()) {
+                Object value = DBUpdateSolver.extractFieldValue(relation.getForeignField(), obj);
+                if (value instanceof LazyList<?> lazyList && !lazyList.isInitialized())
+                    continue;
+                if (value instanceof Collection<?> collection)
+                    collection.stream().filter(Objects::nonNull).forEach(pending::push);
+                else if (value != null)
+                    pending.push(value);
+            }
+        }
+        return this;
+    }
+
+    private static void check(Object entity) {
+        if (entity == null || MetadataStorage.get(entity.getClass()) == null)
+            throw new EntityObjectRequiredException("Object: " + entity + " is not an entity");
+    }
+
+    void flush(Connection conn) throws SQLException {
+        Map<String, List<List<Literal>>> rows = new LinkedHashMap<>();
+
+        Map<Object, Parent> parents = parents(created);
+        Set<Object> keyedByParent = Collections.newSetFromMap(new IdentityHashMap<>());
+        for (List<Object> level : levels(created, parents)) {
+            for (Object obj : level) {
+                EntityMetadata meta = MetadataStorage.get(obj.getClass());
+                if (!meta.getGeneratedId().contains(true))
+                    continue;
+                rowInserter.insert(conn, obj, parentKeys(parents.get(obj)));
+                if (parents.containsKey(obj))
+                    keyedByParent.add(obj);
+            }
+            for (Object obj : level) {
+                EntityMetadata meta = MetadataStorage.get(obj.getClass());
+                if (meta.getGeneratedId().contains(true))
+                    continue;
+                idGenerators.assign(conn, obj);
+                addInsert(obj, meta, parents.get(obj), rows);
+                if (parents.containsKey(obj))
+                    keyedByParent.add(obj);
+            }
+            Session.executeBatches(conn, rows);
+        }
+
+        Set<JoinedRow> joinedRows = new HashSet<>();
+        for (Object obj : created)
+            addRelationRows(obj, rows, joinedRows, keyedByParent);
+        Session.executeBatches(conn, rows);
+
+        for (Object obj : dirty)
+            addUpdate(obj, rows);
+        for (Object obj : tracked) {
+            if (!dirty.contains(obj) && !created.contains(obj) && !removed.contains(obj))
+                addUpdate(obj, rows);
+        }
+        Session.executeBatches(conn, rows);
+
+        List<List<Object>> deleteLevels = levels(removed, parents(removed));
+        for (Object obj : removed) {
+            List<Literal> keys = solver.deleteObject(obj).getArguments();
+            for (RelationMetadata relation : MetadataStorage.get(obj.getClass()).getRelations()) {
+                if (relation.getRelationType() == RelationType.MANY_TO_MANY)
+                    rows.computeIfAbsent(solver.dialect.generateDeleteQuery(relation.getMyJoinedTableFks(), relation.getJoinedTableName()),
+                            _ -> new ArrayList<>()).add(keys);
+            }
+        }
+        Session.executeBatches(conn, rows);
+        //objects referring to others are deleted first
+        for (List<Object> level : deleteLevels.reversed()) {
+            for (Object obj : level)
+                add(rows, solver.deleteObject(obj));
+            Session.executeBatches(conn, rows);
+        }
+    }
+
+    //tracked objects update only columns changed since their snapshot, and nothing if no column changed
+    private void addUpdate(Object obj, Map<String, List<List<Literal>>> rows) {
+        EntitySnapshot snapshot = snapshots.get(obj);
+        if (snapshot == null) {
+            add(rows, solver.updateObject(obj, false));
+            return;
+        }
+        List<ColumnMetadata> changed = snapshot.changedColumns(obj);
+        if (!changed.isEmpty())
+            add(rows, solver.updateColumns(obj, changed));
+    }
+
+    //foreign key of an object held by a new owner's collection is taken from the owner, it is added to the insert
+    //when the object's own relations don't cover that column
+    private void addInsert(Object obj, EntityMetadata meta, Parent parent, Map<String, List<List<Literal>>> rows) {
+        List<String> columns = solver.generateBulkColumns(meta);
+        List<Literal> values = solver.generateBulkValues(meta, obj);
+        parentKeys(parent).forEach((column, value) -> {
+            int index = DBUpdateSolver.indexOfColumn(columns, column);
+            if (index == -1) {
+                columns.add(column);
+                values.add(value);
+            } else {
+                values.set(index, value);
+            }
+        });
+        rows.computeIfAbsent(solver.dialect.generateInsertQuery(columns, meta.getTableName()), _ -> new ArrayList<>()).add(values);
+    }
+
+    //foreign key columns of an object held by the owner's collection, mapped to the owner's keys
+    private Map<String, Literal> parentKeys(Parent parent) {
+        Map<String, Literal> keys = new LinkedHashMap<>();
+        if (parent == null)
+            return keys;
+        List<Literal> ownerKeys = solver.keyValues(parent.owner());
+        List<String> foreignKeys = parent.relation().getForeignKeyNames();
+        for (int i = 0; i < foreignKeys.size(); i++)
+            keys.put(foreignKeys.get(i), ownerKeys.get(i));
+        return keys;
+    }
+
+    private void addRelationRows(Object owner, Map<String, List<List<Literal>>> rows, Set<JoinedRow> joinedRows, Set<Object> keyedByParent) {
+        for (RelationMetadata relation : MetadataStorage.get(owner.getClass()).getRelations()) {
+            if (DBUpdateSolver.ownsForeignKey(relation))
+                continue;
+            Object value = DBUpdateSolver.extractFieldValue(relation.getForeignField(), owner);
+            if (value == null)
+                continue;
+            Collection<?> related = value instanceof Collection<?> collection ? collection : List.of(value);
+            for (Object child : related) {
+                if (relation.getRelationType() != RelationType.MANY_TO_MANY && keyedByParent.contains(child))
+                    continue;
+                PreparedStatementQuery connect = solver.connect(owner, child, relation.getRelationName());
+                if (relation.getRelationType() == RelationType.MANY_TO_MANY && !joinedRows.add(joinedRow(relation, connect)))
+                    continue;
+                add(rows, connect);
+            }
+        }
+    }
+
+    private static JoinedRow joinedRow(RelationMetadata relation, PreparedStatementQuery connect) {
+        List<String> columns = new ArrayList<>(relation.getMyJoinedTableFks());
+        columns.addAll(relation.getForeignKeyNames());
+        Map<String, Literal> values = new TreeMap<>();
+        for (int i = 0; i < columns.size(); i++)
+            values.put(columns.get(i).toLowerCase(), connect.getArguments().get(i));
+        return new JoinedRow(relation.getJoinedTableName().toLowerCase(), values);
+    }
+
+    private static void add(Map<String, List<List<Literal>>> rows, PreparedStatementQuery query) {
+        rows.computeIfAbsent(query.getQuery(), _ -> new ArrayList<>()).add(query.getArguments());
+    }
+
+    private static Map<Object, Parent> parents(Registered objects) {
+        Map<Object, Parent> parents = new IdentityHashMap<>();
+        for (Object owner : objects) {
+            for (RelationMetadata relation : MetadataStorage.get(owner.getClass()).getRelations()) {
+                if (DBUpdateSolver.ownsForeignKey(relation) || relation.getRelationType() == RelationType.MANY_TO_MANY)
+                    continue;
+                Object value = DBUpdateSolver.extractFieldValue(relation.getForeignField(), owner);
+                if (value == null || value instanceof LazyList<?> lazyList && !lazyList.isInitialized())
+                    continue;
+                Collection<?> related = value instanceof Collection<?> collection ? collection : List.of(value);
+                for (Object child : related) {
+                    if (objects.contains(child))
+                        parents.put(child, new Parent(owner, relation));
+                }
+            }
+        }
+        return parents;
+    }
+
+    //groups objects by the length of the longest chain of foreign key references to other objects of the group,
+    //references from parents' collections included
+    private static List<List<Object>> levels(Registered objects, Map<Object, Parent> parents) {
+        Map<Object, Integer> levels = new IdentityHashMap<>();
+        Set<Object> visiting = Collections.newSetFromMap(new IdentityHashMap<>());
+        List<List<Object>> grouped = new ArrayList<>();
+        for (Object obj : objects) {
+            int level = level(obj, objects, parents, levels, visiting);
+            while (grouped.size() <= level)
+                grouped.add(new ArrayList<>());
+            grouped.get(level).add(obj);
+        }
+        return grouped;
+    }
+
+    private static int level(Object obj, Registered objects, Map<Object, Parent> parents, Map<Object, Integer> levels, Set<Object> visiting) {
+        Integer known = levels.get(obj);
+        if (known != null)
+            return known;
+        if (!visiting.add(obj))
+            throw new IllegalStateException("Registered objects refer to each other in a cycle, through " + obj.getClass().getSimpleName());
+        int level = 0;
+        for (RelationMetadata relation : MetadataStorage.get(obj.getClass()).getRelations()) {
+            if (!DBUpdateSolver.ownsForeignKey(relation))
+                continue;
+            Object related = DBUpdateSolver.extractFieldValue(relation.getForeignField(), obj);
+            if (related != null && objects.contains(related))
+                level = Math.max(level, level(related, objects, parents, levels, visiting) + 1);
+        }
+        if (parents.containsKey(obj))
+            level = Math.max(level, level(parents.get(obj).owner(), objects, parents, levels, visiting) + 1);
+        visiting.remove(obj);
+        levels.put(obj, level);
+        return level;
+    }
+}
@@ -0,0 +1,83 @@
+package raf.thesis.mapper;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
+
+//encodes text straight into a reusable buffer that is drained to the channel whenever it fills up
+class ByteSink {
+    private final WritableByteChannel channel;
+    private final ByteBuffer buffer;
+    private long written;
+
+    ByteSink(WritableByteChannel channel, ByteBuffer buffer) {
+        this.channel = channel;
+        this.buffer = buffer;
+    }
+
+    void put(byte b) throws IOException {
+        if (!buffer.hasRemaining())
+            flush();
+        buffer.put(b);
+    }
+
+    void put(byte[] bytes) throws IOException {
+        for (byte b : bytes)
+            put(b);
+    }
+
+    void putAscii(String text) throws IOException {
+        for (int i = 0; i < text.length(); i++)
+            put((byte) text.charAt(i));
+    }
+
+    void putLong(long value) throws IOException {
+        if (value == Long.MIN_VALUE) {
+            putAscii(Long.toString(value));
+            return;
+        }
+        if (value < 0) {
+            put((byte) '-');
+            value = -value;
+        }
+        long divisor = 1;
+        while (value / divisor >= 10)
+            divisor *= 10;
+        for (; divisor > 0; divisor /= 10)
+            put((byte) ('0' + value / divisor % 10));
+    }
+
+    //writes UTF-8 encoding of the character at index, returns index of the last consumed character
+    int putUtf8(String text, int index) throws IOException {
+        char c = text.charAt(index);
+        if (c < 0x80) {
+            put((byte) c);
+        } else if (c < 0x800) {
+            put((byte) (0xC0 | c >> 6));
+            put((byte) (0x80 | c & 0x3F));
+        } else if (Character.isHighSurrogate(c) && index + 1 < text.length() && Character.isLowSurrogate(text.charAt(index + 1))) {
+            int codePoint = Character.toCodePoint(c, text.charAt(++index));
+            put((byte) (0xF0 | codePoint >> 18));
+            put((byte) (0x80 | codePoint >> 12 & 0x3F));
+            put((byte) (0x80 | codePoint >> 6 & 0x3F));
+            put((byte) (0x80 | codePoint & 0x3F));
+        } else {
+            put((byte) (0xE0 | c >> 12));
+            put((byte) (0x80 | c >> 6 & 0x3F));
+            put((byte) (0x80 | c & 0x3F));
+        }
+        return index;
+    }
+
+    void flush() throws IOException {
+        buffer.flip();
+        written += buffer.remaining();
+        while (buffer.hasRemaining())
+            channel.write(buffer);
+        buffer.clear();
+    }
+
+    long written() {
+        return written;
+    }
+}
@@ -0,0 +1,218 @@
+package raf.thesis.mapper;
+
+import raf.thesis.metadata.ColumnMetadata;
+import raf.thesis.metadata.EntityMetadata;
+import raf.thesis.metadata.storage.MetadataStorage;
+
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.util.*;
+
+/**
+ * Query result stored column by column instead of as one object per row.
+ * <p>
+ * Columns are named by the fields of the mapped class. Integral fields are stored in {@code int[]} or
+ * {@code long[]}, floating point fields in {@code double[]}, strings and enums are dictionary encoded into
+ * {@code int[]} codes, everything else is kept as objects. Every column has its own null bitmap, primitive
+ * arrays hold zero on null rows.
+ */
+public final class ColumnarResult {
+    public enum ColumnType {INT, LONG, DOUBLE, STRING, OBJECT}
+
+    private final Map<String, ColumnVector> columns;
+    private final int size;
+
+    private ColumnarResult(Map<String, ColumnVector> columns, int size) {
+        this.columns = columns;
+        this.size = size;
+    }
+
+    public static ColumnarResult read(ResultSet rs, Class<?> clazz) throws SQLException {
+        EntityMetadata metadata = MetadataStorage.get(clazz);
+        if (metadata == null)
+            throw new IllegalArgumentException("Class " + clazz.getSimpleName() + " is not an entity or PDO");
+        Map<String, ColumnVector> columns = new LinkedHashMap<>();
+        ResultSetMetaData rsMeta = rs.getMetaData();
+        for (int i = 1; i <= rsMeta.getColumnCount(); i++) {
+            ColumnMetadata column = metadata.getColumns().get(rsMeta.getColumnLabel(i).toLowerCase());
+            //columns not mapped by the class are skipped, same as with object mapping
+            if (column != null)
+                columns.put(column.getField().getName(), new ColumnVector(i, column.getField().getType()));
+        }
+        int size = 0;
+        while (rs.next()) {
+            for (ColumnVector column : columns.values())
+                column.read(rs, size);
+            size++;
+        }
+        for (ColumnVector column : columns.values())
+            column.trim(size);
+        return new ColumnarResult(columns, size);
+    }
+
+    private static ColumnType typeOf(Class<?> type) {
+        if (type == int.class || type == Integer.class || type == short.class || type == Short.class
+                || type == byte.class || type == Byte.class)
+            return ColumnType.INT;
+        if (type == long.class || type == Long.class)
+            return ColumnType.LONG;
+        if (type == double.class || type == Double.class || type == float.class || type == Float.class)
+            return ColumnType.DOUBLE;
+        if (type == String.class || type.isEnum())
+            return ColumnType.STRING;
+        return ColumnType.OBJECT;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public Set<String> columnNames() {
+        return Collections.unmodifiableSet(columns.keySet());
+    }
+
+    public ColumnType type(String field) {
+        return column(field).type;
+    }
+
+    public boolean isNull(String field, int row) {
+        return column(field).nulls.get(row);
+    }
+
+    public int[] ints(String field) {
+        return column(field, ColumnType.INT).ints;
+    }
+
+    public long[] longs(String field) {
+        return column(field, ColumnType.LONG).longs;
+    }
+
+    public double[] doubles(String field) {
+        return column(field, ColumnType.DOUBLE).doubles;
+    }
+
+    //dictionary codes of string column, code is an index in the dictionary
+    public int[] codes(String field) {
+        return column(field, ColumnType.STRING).ints;
+    }
+
+    public List<String> dictionary(String field) {
+        return Collections.unmodifiableList(column(field, ColumnType.STRING).dictionary);
+    }
+
+    public String string(String field, int row) {
+        ColumnVector column = column(field, ColumnType.STRING);
+        return column.nulls.get(row) ? null : column.dictionary.get(column.ints[row]);
+    }
+
+    public Object[] objects(String field) {
+        return column(field, ColumnType.OBJECT).objects;
+    }
+
+    //boxed value of any column, meant for occasional access
+    public Object get(String field, int row) {
+        ColumnVector column = column(field);
+        if (column.nulls.get(row))
+            return null;
+        return switch (column.type) {
+            case INT -> column.ints[row];
+            case LONG -> column.longs[row];
+            case DOUBLE -> column.doubles[row];
+            case STRING -> column.dictionary.get(column.ints[row]);
+            case OBJECT -> column.objects[row];
+        };
+    }
+
+    private ColumnVector column(String field) {
+        ColumnVector column = columns.get(field);
+        if (column == null)
+            throw new IllegalArgumentException("Column " + field + " is not in the result");
+        return column;
+    }
+
+    private ColumnVector column(String field, ColumnType type) {
+        ColumnVector column = column(field);
+        if (column.type != type)
+            throw new IllegalArgumentException("Column " + field + " is " + column.type + ", not " + type);
+        return column;
+    }
+
+    private static final class ColumnVector {
+        private static final int INITIAL_CAPACITY = 64;
+        private final int index;
+        private final ColumnType type;
+        private final Class<?> fieldType;
+        private final BitSet nulls = new BitSet();
+        private int[] ints;
+        private long[] longs;
+        private double[] doubles;
+        private Object[] objects;
+        private List<String> dictionary;
+        //only used while reading
+        private Map<String, Integer> codes;
+
+        private ColumnVector(int index, Class<?> fieldType) {
+            this.index = index;
+            this.type = typeOf(fieldType);
+            this.fieldType = fieldType == boolean.class ? Boolean.class : fieldType == char.class ? Character.class : fieldType;
+            switch (type) {
+                case INT -> ints = new int[INITIAL_CAPACITY];
+                case LONG -> longs = new long[INITIAL_CAPACITY];
+                case DOUBLE -> doubles = new double[INITIAL_CAPACITY];
+                case STRING -> {
+                    ints = new int[INITIAL_CAPACITY];
+                    dictionary = new ArrayList<>();
+                    codes = new HashMap<>();
+                }
+                case OBJECT -> objects = new Object[INITIAL_CAPACITY];
+            }
+        }
+
+        private void read(ResultSet rs, int row) throws SQLException {
+            ensureCapacity(row + 1);
+            switch (type) {
+                case INT -> ints[row] = rs.getInt(index);
+                case LONG -> longs[row] = rs.getLong(index);
+                case DOUBLE -> doubles[row] = rs.getDouble(index);
+                case STRING -> {
+                    String value = rs.getString(index);
+                    if (value != null)
+                        ints[row] = codes.computeIfAbsent(value, v -> {
+                            dictionary.add(v);
+                            return dictionary.size() - 1;
+                        });
+                }
+                case OBJECT -> objects[row] = rs.getObject(index, fieldType);
+            }
+            if (rs.wasNull())
+                nulls.set(row);
+        }
+
+        private void ensureCapacity(int capacity) {
+            int current = switch (type) {
+                case INT, STRING -> ints.length;
+                case LONG -> longs.length;
+                case DOUBLE -> doubles.length;
+                case OBJECT -> objects.length;
+            };
+            if (capacity <= current)
+                return;
+            resize(Math.max(capacity, current * 2));
+        }
+
+        private void trim(int size) {
+            resize(size);
+            codes = null;
+        }
+
+        private void resize(int length) {
+            switch (type) {
+                case INT, STRING -> ints = Arrays.copyOf(ints, length);
+                case LONG -> longs = Arrays.copyOf(longs, length);
+                case DOUBLE -> doubles = Arrays.copyOf(doubles, length);
+                case OBJECT -> objects = Arrays.copyOf(objects, length);
+            }
+        }
+    }
+}
@@ -0,0 +1,51 @@
+package raf.thesis.mapper;
+
+import lombok.Getter;
+
+/**
+ * Settings of CSV export, defaults write comma separated, uncompressed file with a header row.
+ */
+@Getter
+public class CsvExportOptions {
+    private char delimiter = ',';
+    private boolean header = true;
+    private boolean gzip = false;
+    //rows fetched from the database in a single round trip
+    private int fetchSize = 1000;
+    private int bufferSize = 1 << 20;
+
+    public static CsvExportOptions defaults() {
+        return new CsvExportOptions();
+    }
+
+    public CsvExportOptions delimiter(char delimiter) {
+        if (delimiter == '"' || delimiter == '\r' || delimiter == '\n' || delimiter > 0x7F)
+            throw new IllegalArgumentException("Delimiter has to be an ASCII character other than a quote or a line break");
+        this.delimiter = delimiter;
+        return this;
+    }
+
+    public CsvExportOptions header(boolean header) {
+        this.header = header;
+        return this;
+    }
+
+    public CsvExportOptions gzip(boolean gzip) {
+        this.gzip = gzip;
+        return this;
+    }
+
+    public CsvExportOptions fetchSize(int fetchSize) {
+        if (fetchSize < 0)
+            throw new IllegalArgumentException("Fetch size can't be negative");
+        this.fetchSize = fetchSize;
+        return this;
+    }
+
+    public CsvExportOptions bufferSize(int bufferSize) {
+        if (bufferSize < 1)
+            throw new IllegalArgumentException("Buffer size must be positive");
+        this.bufferSize = bufferSize;
+        return this;
+    }
+}
@@ -0,0 +1,13 @@
+package raf.thesis.mapper;
+
+import java.time.Duration;
+
+/**
+ * Summary of finished CSV export, bytes are counted before compression.
+ */
+public record CsvExportResult(long rows, long bytes, Duration elapsed) {
+    public double rowsPerSecond() {
+        long nanos = elapsed.toNanos();
+        return nanos == 0 ? rows : rows * 1_000_000_000.0 / nanos;
+    }
+}
@@ -0,0 +1,271 @@
+package raf.thesis.mapper;
+
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Memory mapped RFC 4180 CSV file that can be split into chunks parsed independently.
+ * <p>
+ * Chunks end at record boundaries, line breaks inside quoted fields are recognized by following quotes
+ * the same way records are read, which needs one sequential pass over the file when splitting. Empty unquoted fields are read as
+ * {@code null}, empty quoted fields as empty strings. Both {@code \n} and {@code \r\n} end records.
+ */
+public final class CsvFile implements AutoCloseable {
+    //largest region mapped at once
+    private static final long MAX_MAPPING = 1L << 30;
+
+    private final FileChannel channel;
+    private final long size;
+    private final byte delimiter;
+    private final List<String> header;
+    private final long dataStart;
+    private final long dataFirstLine;
+
+    /**
+     * Region of the file holding whole records, with the line number of its first record.
+     */
+    public record Chunk(long start, long end, long firstLine) {
+    }
+
+    private CsvFile(FileChannel channel, char delimiter, boolean header) throws IOException {
+        this.channel = channel;
+        this.size = channel.size();
+        this.delimiter = (byte) delimiter;
+        if (!header) {
+            this.header = null;
+            this.dataStart = 0;
+            this.dataFirstLine = 1;
+            return;
+        }
+        Cursor cursor = cursor(new Chunk(0, size, 1));
+        this.header = cursor.next() ? cursor.fields() : List.of();
+        this.dataStart = cursor.position();
+        this.dataFirstLine = cursor.nextLine;
+    }
+
+    public static CsvFile open(Path path, char delimiter, boolean header) throws IOException {
+        if (delimiter == '"' || delimiter == '\r' || delimiter == '\n' || delimiter > 0x7F)
+            throw new IllegalArgumentException("Delimiter has to be an ASCII character other than a quote or a line break");
+        FileChannel channel = FileChannel.open(path, StandardOpenOption.READ);
+        try {
+            return new CsvFile(channel, delimiter, header);
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    //header fields, null if the file has no header
+    public List<String> header() {
+        return header;
+    }
+
+    //splits data records into at most the given number of chunks of similar size
+    public List<Chunk> split(int parts) throws IOException {
+        List<Chunk> chunks = new ArrayList<>();
+        long dataSize = size - dataStart;
+        long start = dataStart;
+        long startLine = dataFirstLine;
+        long position = dataStart;
+        long line = dataFirstLine;
+        //quotes are read like the cursor does: only a quote at field start opens a quoted field,
+        //a quote right after a closing one is an escaped quote inside it
+        boolean quoted = false;
+        boolean closed = false;
+        boolean fieldStart = true;
+        MappedByteBuffer window = null;
+        long windowStart = 0;
+        for (int part = 1; part < parts; part++) {
+            long target = dataStart + dataSize * part / parts;
+            long boundary = -1;
+            while (position < size) {
+                if (window == null || position - windowStart >= window.capacity()) {
+                    windowStart = position;
+                    window = channel.map(FileChannel.MapMode.READ_ONLY, position, Math.min(MAX_MAPPING, size - position));
+                }
+                byte b = window.get((int) (position - windowStart));
+                position++;
+                if (quoted) {
+                    if (b == '"') {
+                        quoted = false;
+                        closed = true;
+                    } else if (b == '\n') {
+                        line++;
+                    }
+                    continue;
+                }
+                if (b == '"' && (fieldStart || closed)) {
+                    quoted = true;
+                    closed = false;
+                    fieldStart = false;
+                    continue;
+                }
+                closed = false;
+                fieldStart = b == delimiter || b == '\n';
+                if (b == '\n') {
+                    line++;
+                    if (position >= target) {
+                        boundary = position;
+                        break;
+                    }
+                }
+            }
+            if (boundary == -1 || boundary >= size)
+                break;
+            chunks.add(new Chunk(start, boundary, startLine));
+            start = boundary;
+            startLine = line;
+        }
+        chunks.add(new Chunk(start, size, startLine));
+        return chunks;
+    }
+
+    public Cursor cursor(Chunk chunk) throws IOException {
+        return new Cursor(chunk);
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+
+    /**
+     * Reads records of a single chunk, not thread safe, every chunk should get its own cursor.
+     */
+    public final class Cursor {
+        private final Chunk chunk;
+        private MappedByteBuffer window;
+        private long windowStart;
+        private long position;
+        private long nextLine;
+        private long line;
+        private long recordStart;
+        private byte[] field = new byte[256];
+        private final List<String> fields = new ArrayList<>();
+
+        private Cursor(Chunk chunk) throws IOException {
+            this.chunk = chunk;
+            this.position = chunk.start();
+            this.nextLine = chunk.firstLine();
+            map(position);
+        }
+
+        private void map(long from) throws IOException {
+            windowStart = from;
+            window = channel.map(FileChannel.MapMode.READ_ONLY, from, Math.min(MAX_MAPPING, chunk.end() - from));
+        }
+
+        private int read() throws IOException {
+            if (position >= chunk.end())
+                return -1;
+            if (position - windowStart >= window.capacity())
+                map(position);
+            position++;
+            return window.get((int) (position - 1 - windowStart)) & 0xFF;
+        }
+
+        private int peek() throws IOException {
+            if (position >= chunk.end())
+                return -1;
+            if (position - windowStart >= window.capacity())
+                map(position);
+            return window.get((int) (position - windowStart)) & 0xFF;
+        }
+
+        //reads next record, returns false at the end of the chunk
+        public boolean next() throws IOException {
+            fields.clear();
+            if (position >= chunk.end())
+                return false;
+            recordStart = position;
+            line = nextLine;
+            int length = 0;
+            boolean quoted = false;
+            boolean wasQuoted = false;
+            while (true) {
+                int b = read();
+                if (quoted) {
+                    if (b == -1)
+                        throw new IllegalStateException("Unterminated quoted field at line " + line);
+                    if (b == '"' && peek() == '"') {
+                        read();
+                        length = append(length, (byte) '"');
+                    } else if (b == '"') {
+                        quoted = false;
+                    } else {
+                        if (b == '\n')
+                            nextLine++;
+                        length = append(length, (byte) b);
+                    }
+                    continue;
+                }
+                if (b == -1 || b == '\n' || b == delimiter) {
+                    fields.add(length == 0 && !wasQuoted ? null : new String(field, 0, length, StandardCharsets.UTF_8));
+                    length = 0;
+                    wasQuoted = false;
+                    if (b == delimiter)
+                        continue;
+                    if (b == '\n')
+                        nextLine++;
+                    break;
+                }
+                if (b == '"' && length == 0 && !wasQuoted) {
+                    quoted = true;
+                    wasQuoted = true;
+                } else if (b != '\r' || peek() != '\n') {
+                    //carriage return before line feed belongs to the line break
+                    length = append(length, (byte) b);
+                }
+            }
+            return true;
+        }
+
+        private int append(int length, byte b) {
+            if (length == field.length)
+                field = Arrays.copyOf(field, length * 2);
+            field[length] = b;
+            return length + 1;
+        }
+
+        public List<String> fields() {
+            return Collections.unmodifiableList(new ArrayList<>(fields));
+        }
+
+        public int size() {
+            return fields.size();
+        }
+
+        //field of the last read record, null if it was empty and unquoted
+        public String field(int index) {
+            return fields.get(index);
+        }
+
+        //line where the last read record starts
+        public long line() {
+            return line;
+        }
+
+        //original text of the last read record without the line break
+        public String raw() throws IOException {
+            MappedByteBuffer record = channel.map(FileChannel.MapMode.READ_ONLY, recordStart, position - recordStart);
+            byte[] bytes = new byte[record.capacity()];
+            record.get(bytes);
+            int length = bytes.length;
+            while (length > 0 && (bytes[length - 1] == '\n' || bytes[length - 1] == '\r'))
+                length--;
+            return new String(bytes, 0, length, StandardCharsets.UTF_8);
+        }
+
+        private long position() {
+            return position;
+        }
+    }
+}
@@ -0,0 +1,62 @@
+package raf.thesis.mapper;
+
+import lombok.Getter;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.LongConsumer;
+
+/**
+ * Settings of CSV import. By default the file is comma separated and its header names the target columns,
+ * rows are inserted in batches of 1000 over a single connection.
+ */
+@Getter
+public class CsvImportOptions {
+    private char delimiter = ',';
+    private boolean header = true;
+    //target field or column for every file column, null skips the column
+    private List<String> columns;
+    private int batchSize = 1000;
+    //number of chunks parsed and inserted at the same time, each over its own connection
+    private int parallelism = 1;
+    //receives the number of inserted rows after every batch, possibly from several threads
+    private LongConsumer progress = _ -> {};
+
+    public static CsvImportOptions defaults() {
+        return new CsvImportOptions();
+    }
+
+    public CsvImportOptions delimiter(char delimiter) {
+        this.delimiter = delimiter;
+        return this;
+    }
+
+    public CsvImportOptions header(boolean header) {
+        this.header = header;
+        return this;
+    }
+
+    public CsvImportOptions columns(String... columns) {
+        this.columns = Arrays.asList(columns);
+        return this;
+    }
+
+    public CsvImportOptions batchSize(int batchSize) {
+        if (batchSize < 1)
+            throw new IllegalArgumentException("Batch size must be positive");
+        this.batchSize = batchSize;
+        return this;
+    }
+
+    public CsvImportOptions parallelism(int parallelism) {
+        if (parallelism < 1)
+            throw new IllegalArgumentException("Parallelism must be positive");
+        this.parallelism = parallelism;
+        return this;
+    }
+
+    public CsvImportOptions progress(LongConsumer progress) {
+        this.progress = progress;
+        return this;
+    }
+}
@@ -0,0 +1,20 @@
+package raf.thesis.mapper;
+
+import java.time.Duration;
+import java.util.List;
+
+/**
+ * Summary of finished CSV import, rejected rows are ordered by line.
+ */
+public record CsvImportResult(long imported, List<RejectedRow> rejected, Duration elapsed) {
+    /**
+     * Row that couldn't be converted or inserted, with the line it starts at and the reason.
+     */
+    public record RejectedRow(long line, String content, String reason) {
+    }
+
+    public double rowsPerSecond() {
+        long nanos = elapsed.toNanos();
+        return nanos == 0 ? imported : imported * 1_000_000_000.0 / nanos;
+    }
+}
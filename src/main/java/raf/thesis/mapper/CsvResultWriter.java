@@ -0,0 +1,155 @@
+package raf.thesis.mapper;
+
+import raf.thesis.mapper.exceptions.ResultSetAccessException;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.math.BigDecimal;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.sql.Types;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.util.Base64;
+
+/**
+ * Writes result set rows as RFC 4180 CSV, reading typed column values and encoding them straight into
+ * a direct buffer. Values are quoted only when they contain the delimiter, a quote or a line break,
+ * {@code NULL} is written as an empty field. Temporal values are written in ISO format.
+ */
+public class CsvResultWriter {
+    private enum Kind {INTEGRAL, DECIMAL, FLOATING, BOOLEAN, DATE, TIME, TIMESTAMP, BINARY, TEXT}
+
+    private final ByteSink out;
+    private final CsvExportOptions options;
+
+    public CsvResultWriter(WritableByteChannel channel, CsvExportOptions options) {
+        this.out = new ByteSink(channel, ByteBuffer.allocateDirect(options.getBufferSize()));
+        this.options = options;
+    }
+
+    //returns number of written rows, header excluded
+    public long write(ResultSet rs) {
+        try {
+            ResultSetMetaData rsMeta = rs.getMetaData();
+            int columnCount = rsMeta.getColumnCount();
+            Kind[] kinds = new Kind[columnCount];
+            for (int i = 0; i < columnCount; i++)
+                kinds[i] = kindOf(rsMeta.getColumnType(i + 1));
+            if (options.isHeader()) {
+                for (int i = 0; i < columnCount; i++) {
+                    if (i > 0)
+                        out.put((byte) options.getDelimiter());
+                    putText(headerName(rsMeta.getColumnLabel(i + 1)));
+                }
+                putLineBreak();
+            }
+            long rows = 0;
+            while (rs.next()) {
+                for (int i = 0; i < columnCount; i++) {
+                    if (i > 0)
+                        out.put((byte) options.getDelimiter());
+                    writeValue(rs, i + 1, kinds[i]);
+                }
+                putLineBreak();
+                rows++;
+            }
+            out.flush();
+            return rows;
+        } catch (SQLException e) {
+            throw new ResultSetAccessException(e);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    //bytes passed to the channel so far
+    public long written() {
+        return out.written();
+    }
+
+    private static Kind kindOf(int sqlType) {
+        return switch (sqlType) {
+            case Types.TINYINT, Types.SMALLINT, Types.INTEGER, Types.BIGINT -> Kind.INTEGRAL;
+            case Types.DECIMAL, Types.NUMERIC -> Kind.DECIMAL;
+            case Types.REAL, Types.FLOAT, Types.DOUBLE -> Kind.FLOATING;
+            case Types.BIT, Types.BOOLEAN -> Kind.BOOLEAN;
+            case Types.DATE -> Kind.DATE;
+            case Types.TIME -> Kind.TIME;
+            case Types.TIMESTAMP -> Kind.TIMESTAMP;
+            case Types.BINARY, Types.VARBINARY, Types.LONGVARBINARY, Types.BLOB -> Kind.BINARY;
+            default -> Kind.TEXT;
+        };
+    }
+
+    //entity columns are labeled with relation path starting at the root alias, which is dropped
+    private static String headerName(String label) {
+        int dot = label.indexOf('.');
+        return label.startsWith("%") && dot != -1 ? label.substring(dot + 1) : label;
+    }
+
+    private void writeValue(ResultSet rs, int index, Kind kind) throws SQLException, IOException {
+        switch (kind) {
+            case INTEGRAL -> {
+                long value = rs.getLong(index);
+                if (!rs.wasNull())
+                    out.putLong(value);
+            }
+            case FLOATING -> {
+                double value = rs.getDouble(index);
+                if (!rs.wasNull())
+                    out.putAscii(Double.toString(value));
+            }
+            case BOOLEAN -> {
+                boolean value = rs.getBoolean(index);
+                if (!rs.wasNull())
+                    out.putAscii(value ? "true" : "false");
+            }
+            case DECIMAL -> putAscii(rs.getBigDecimal(index));
+            case DATE -> putAscii(rs.getObject(index, LocalDate.class));
+            case TIME -> putAscii(rs.getObject(index, LocalTime.class));
+            case TIMESTAMP -> putAscii(rs.getObject(index, LocalDateTime.class));
+            case BINARY -> {
+                byte[] value = rs.getBytes(index);
+                if (value != null)
+                    out.putAscii(Base64.getEncoder().encodeToString(value));
+            }
+            case TEXT -> {
+                String value = rs.getString(index);
+                if (value != null)
+                    putText(value);
+            }
+        }
+    }
+
+    private void putAscii(Object value) throws IOException {
+        if (value != null)
+            out.putAscii(value instanceof BigDecimal decimal ? decimal.toPlainString() : value.toString());
+    }
+
+    private void putText(String text) throws IOException {
+        boolean quoted = false;
+        for (int i = 0; i < text.length() && !quoted; i++) {
+            char c = text.charAt(i);
+            quoted = c == options.getDelimiter() || c == '"' || c == '\r' || c == '\n';
+        }
+        if (quoted)
+            out.put((byte) '"');
+        for (int i = 0; i < text.length(); i++) {
+            if (text.charAt(i) == '"')
+                out.put((byte) '"');
+            i = out.putUtf8(text, i);
+        }
+        if (quoted)
+            out.put((byte) '"');
+    }
+
+    private void putLineBreak() throws IOException {
+        out.put((byte) '\r');
+        out.put((byte) '\n');
+    }
+}
@@ -1,6 +1,8 @@
 package raf.thesis.mapper;
 
+import lombok.Setter;
 import org.apache.commons.beanutils.BeanUtils;
+import org.apache.commons.beanutils.PropertyUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import raf.thesis.mapper.exceptions.ClassInstantiationException;
@@ -11,32 +13,63 @@ import raf.thesis.metadata.EntityMetadata;
 import raf.thesis.metadata.RelationMetadata;
 import raf.thesis.metadata.RelationType;
 import raf.thesis.metadata.storage.MetadataStorage;
+import raf.thesis.query.QueryBuilder;
 
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.Reader;
+import java.io.StringReader;
 import java.lang.reflect.Field;
 import java.lang.reflect.InvocationTargetException;
+import java.math.BigDecimal;
 import java.sql.*;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.time.format.DateTimeParseException;
 import java.util.*;
+import java.util.function.Consumer;
 import java.util.stream.Collectors;
 
 public class DefaultMapperImplementation implements RowMapper {
     private static final Logger log = LoggerFactory.getLogger(DefaultMapperImplementation.class);
+    //marks JSON relations in relation deduplication
+    private static final Object JSON_RELATION = new Object();
+    //marks stream large objects that are opened through the lob source on first read
+    private static final Object DEFERRED_LOB = new Object();
+
+    //without a source stream large objects are read whole while mapping
+    @Setter
+    private LobSource lobSource;
 
     @Override
     public <T> T map(ResultSet rs, Class<T> clazz) {
-        return singleRowMap(rs, clazz);
+        try {
+            List<Column> columns = flatColumns(rs.getMetaData(), clazz);
+            return hydrateFlat(clazz, columns, readRow(rs, columns));
+        } catch (SQLException e) {
+            throw new ResultSetAccessException(e);
+        }
     }
 
     @Override
     public <T> T map(ResultSet rs, T instance){
-        return singleRowMap(rs, instance);
+        try {
+            List<Column> columns = flatColumns(rs.getMetaData(), instance.getClass());
+            return hydrateFlat(instance, columns, readRow(rs, columns));
+        } catch (SQLException e) {
+            throw new ResultSetAccessException(e);
+        }
     }
 
     @Override
     public <T> List<T> mapList(ResultSet rs, Class<T> clazz) {
         List<T> instances = new ArrayList<>();
         try {
+            List<Column> columns = flatColumns(rs.getMetaData(), clazz);
             while (rs.next()) {
-                instances.add(singleRowMap(rs, clazz));
+                instances.add(hydrateFlat(clazz, columns, readRow(rs, columns)));
             }
         } catch (SQLException e) {
             throw new ResultSetAccessException(e);
@@ -44,74 +77,284 @@ public class DefaultMapperImplementation implements RowMapper {
         return instances;
     }
 
+    //single instance is refilled for every row, consumer must not keep it
+    @Override
+    public <T> void forEachRow(ResultSet rs, Class<T> clazz, Consumer<? super T> consumer) {
+        try {
+            if (MetadataStorage.get(clazz) == null)
+                throw new IllegalArgumentException("Class " + clazz.getSimpleName() + " is not an entity or PDO");
+            List<Column> columns = flatColumns(rs.getMetaData(), clazz);
+            T instance = newInstance(clazz);
+            Object[] values = new Object[columns.size()];
+            while (rs.next()) {
+                readRow(rs, columns, values);
+                consumer.accept(hydrateFlat(instance, columns, values));
+            }
+        } catch (SQLException e) {
+            throw new ResultSetAccessException(e);
+        }
+    }
+
+    @Override
+    public <T> void forEachInstance(ResultSet rs, Class<T> clazz, Consumer<? super T> consumer) {
+        try {
+            List<Column> columns = flatColumns(rs.getMetaData(), clazz);
+            while (rs.next()) {
+                consumer.accept(hydrateFlat(clazz, columns, readRow(rs, columns)));
+            }
+        } catch (SQLException e) {
+            throw new ResultSetAccessException(e);
+        }
+    }
+
+    //every root is assembled on its own, so related objects aren't shared between roots
+    @Override
+    public <T> void forEachRoot(ResultSet rs, Class<T> clazz, Consumer<? super T> consumer) {
+        try {
+            List<Column> columns = graphColumns(rs.getMetaData(), clazz);
+            String rootPath = columns.stream().filter(column -> !column.json() && !column.path().contains("."))
+                    .map(Column::path).findFirst().orElse(null);
+            GraphAssembler assembler = new GraphAssembler();
+            List<Object> rootKey = null;
+            while (rs.next()) {
+                GraphRow row = hydrateGraph(columns, readRow(rs, columns));
+                List<Object> key = row.keys().get(rootPath);
+                if (rootKey != null && !rootKey.equals(key)) {
+                    assembler.result(clazz).forEach(consumer);
+                    assembler = new GraphAssembler();
+                }
+                rootKey = key;
+                assembler.add(row);
+            }
+            assembler.result(clazz).forEach(consumer);
+        } catch (SQLException e) {
+            throw new ResultSetAccessException(e);
+        }
+    }
+
     //result set is in specific format that my query builder will make
     //for each row, i should make instances of objects by navigating through relations to find the right one
     //for each object, i need to handle duplicates by putting them in map with list of path, .class and PK as key
     @Override
     public <T> List<T> mapWithRelations(ResultSet rs, Class<T> clazz) {
-        Map<List<Object>, Object> madeObjects = new HashMap<>();
-        //linked hash set to preserve order from DB
-        Set<Object> returningObjects = new LinkedHashSet<>();
-        Set<List<Object>> relationDeduplication = new HashSet<>();
+        return mapWithRelations(rs, clazz, _ -> {});
+    }
+
+    @Override
+    public <T> List<T> mapWithRelations(ResultSet rs, Class<T> clazz, RowListener rowListener) {
+        GraphAssembler assembler = new GraphAssembler();
         try {
+            List<Column> columns = graphColumns(rs.getMetaData(), clazz);
             while (rs.next()) {
-                ResultSetMetaData rsMeta = rs.getMetaData();
-                int columnCount = rsMeta.getColumnCount();
-                //constructing objects
-                Map<String, Object> rowInstances = new HashMap<>();
-                for (int i = 1; i <= columnCount; i++) {
-                    String columnName = rsMeta.getColumnLabel(i);
-                    List<String> path = Arrays.stream(columnName.split("\\."))
-                            .collect(Collectors.toList());
-                    String fieldName = path.getLast();
-                    path.removeLast();
-                    String joinedPath = String.join(".", path);
-
-                    Object instance = rowInstances.get(joinedPath);
-                    if (instance == null) {
-                        var type = findInstanceType(path, clazz);
-                        instance = type.getDeclaredConstructor().newInstance();
-                        rowInstances.put(joinedPath, instance);
-                    }
-                    //map column in instance, handle null objects from DB
-                    if (!mapSingleProperty(instance, columnName, fieldName, rs))
-                        rowInstances.put(joinedPath, NullMarker.NULL);
+                rowListener.onRow(rs);
+                assembler.add(hydrateGraph(columns, readRow(rs, columns)));
+            }
+        } catch (SQLException e) {
+            throw new ResultSetAccessException(e);
+        }
+        return assembler.result(clazz);
+    }
+
+    //mapping is split in two stages: reading raw values from JDBC and hydrating instances with reflection
+    //result set column resolved once per result set, path and owner are null for flat mapping
+    record Column(int index, String path, Class<?> owner, ColumnMetadata metadata, boolean json) {
+    }
+
+    List<Column> flatColumns(ResultSetMetaData rsMeta, Class<?> clazz) throws SQLException {
+        EntityMetadata entityMetadata = MetadataStorage.get(clazz);
+        List<Column> columns = new ArrayList<>();
+        if (entityMetadata == null)
+            return columns;
+        for (int i = 1; i <= rsMeta.getColumnCount(); i++) {
+            String columnName = rsMeta.getColumnLabel(i).toLowerCase();
+            columns.add(new Column(i, null, clazz, findColumn(entityMetadata, clazz, columnName), false));
+        }
+        return columns;
+    }
+
+    List<Column> graphColumns(ResultSetMetaData rsMeta, Class<?> clazz) throws SQLException {
+        List<Column> columns = new ArrayList<>();
+        for (int i = 1; i <= rsMeta.getColumnCount(); i++) {
+            String columnName = rsMeta.getColumnLabel(i);
+            if (columnName.startsWith(QueryBuilder.JSON_RELATION_PREFIX)) {
+                columns.add(new Column(i, columnName.substring(QueryBuilder.JSON_RELATION_PREFIX.length()), null, null, true));
+                continue;
+            }
+            //window total of paged selects isn't an entity column
+            if (columnName.equalsIgnoreCase(QueryBuilder.TOTAL_COUNT_ALIAS))
+                continue;
+            List<String> path = Arrays.stream(columnName.split("\\."))
+                    .collect(Collectors.toList());
+            String fieldName = path.getLast();
+            path.removeLast();
+            Class<?> owner = findInstanceType(path, clazz);
+            columns.add(new Column(i, String.join(".", path), owner, findColumn(MetadataStorage.get(owner), owner, fieldName), false));
+        }
+        return columns;
+    }
+
+    private ColumnMetadata findColumn(EntityMetadata entityMetadata, Class<?> clazz, String columnName) {
+        ColumnMetadata columnMetadata = entityMetadata.getColumns().get(columnName);
+        if (columnMetadata == null) {
+            // Column doesn't belong to this entity -> skip for now
+            log.warn("Column '{}' does not exist in entity '{}'; skipping.", columnName, clazz.getSimpleName());
+        }
+        return columnMetadata;
+    }
+
+    //JDBC stage, values are read in types of their fields so hydration doesn't touch the result set
+    Object[] readRow(ResultSet rs, List<Column> columns) throws SQLException {
+        return readRow(rs, columns, new Object[columns.size()]);
+    }
+
+    Object[] readRow(ResultSet rs, List<Column> columns, Object[] values) throws SQLException {
+        for (int i = 0; i < values.length; i++) {
+            values[i] = readValue(rs, columns.get(i));
+        }
+        return values;
+    }
+
+    Object readValue(ResultSet rs, Column column) throws SQLException {
+        if (column.json())
+            return rs.getString(column.index());
+        if (column.metadata() != null)
+            return readColumn(column.metadata(), rs, column.index());
+        return null;
+    }
+
+    <T> T hydrateFlat(Class<T> clazz, List<Column> columns, Object[] values) {
+        if (MetadataStorage.get(clazz) == null) {
+            return null;
+        }
+        return hydrateFlat(newInstance(clazz), columns, values);
+    }
+
+    private static <T> T newInstance(Class<T> clazz) {
+        try {
+            return clazz.getDeclaredConstructor().newInstance();
+        } catch (Exception e) {
+            throw new ClassInstantiationException(e);
+        }
+    }
+
+    private <T> T hydrateFlat(T instance, List<Column> columns, Object[] values) {
+        for (int i = 0; i < values.length; i++) {
+            if (columns.get(i).metadata() != null)
+                assignColumn(instance, columns.get(i).metadata(), values[i]);
+        }
+        return instance;
+    }
+
+    //instances of one row by relation path, objects with null primary key are marked as null objects
+    record GraphRow(Map<String, Object> instances, Map<String, List<Object>> keys, Map<String, String> jsonRelations) {
+    }
+
+    GraphRow hydrateGraph(List<Column> columns, Object[] values) {
+        //constructing objects
+        Map<String, Object> rowInstances = new LinkedHashMap<>();
+        //relation path -> JSON array of related rows
+        Map<String, String> jsonRelations = new LinkedHashMap<>();
+        try {
+            for (int i = 0; i < values.length; i++) {
+                Column column = columns.get(i);
+                if (column.json()) {
+                    jsonRelations.put(column.path(), (String) values[i]);
+                    continue;
                 }
-                //deduplicating objects by inserting in madeObjects map
-                for (var entry : rowInstances.entrySet()) {
-                    //skip null objects
-                    if (entry.getValue().equals(NullMarker.NULL)) {
-                        continue;
-                    }
-                    madeObjects.putIfAbsent(getPrimaryKey(entry.getValue()), entry.getValue());
+                Object instance = rowInstances.get(column.path());
+                if (instance == null) {
+                    instance = column.owner().getDeclaredConstructor().newInstance();
+                    rowInstances.put(column.path(), instance);
                 }
-                //solve relations
-                for (var freshObjectEntry : rowInstances.entrySet()) {
-                    List<String> path = Arrays.stream(freshObjectEntry.getKey().split("\\.")).collect(Collectors.toList());
-                    //skip mapping null objects
-                    if (freshObjectEntry.getValue().equals(NullMarker.NULL)) {
-                        continue;
-                    }
-                    //these are original object required to return
-                    if (path.size() == 1) {
-                        returningObjects.add(madeObjects.get(getPrimaryKey(freshObjectEntry.getValue())));
-                        continue;
-                    }
-                    List<Object> myKey = getPrimaryKey(freshObjectEntry.getValue());
-                    String relation = path.getLast();
-                    path.removeLast();
-                    String joinedPath = String.join(".", path);
-                    List<Object> parentKey = getPrimaryKey(rowInstances.get(joinedPath));
-                    Object parent = madeObjects.get(parentKey);
-                    Object child = madeObjects.get(myKey);
-                    //relation deduplication
-                    if (relationDeduplication.add(List.of(parent, child, relation))) {
-                        solveRelations(parent, child, relation);
-                    }
+                //map column in instance, handle null objects from DB
+                if (instance.equals(NullMarker.NULL) || column.metadata() == null)
+                    continue;
+                if (!assignColumn(instance, column.metadata(), values[i]))
+                    rowInstances.put(column.path(), NullMarker.NULL);
+            }
+        } catch (InvocationTargetException | InstantiationException | IllegalAccessException |
+                 NoSuchMethodException e) {
+            throw new ClassInstantiationException(e);
+        }
+        //keys are read here so assembling doesn't repeat reflection
+        Map<String, List<Object>> keys = new HashMap<>();
+        for (var entry : rowInstances.entrySet()) {
+            if (!entry.getValue().equals(NullMarker.NULL))
+                keys.put(entry.getKey(), getPrimaryKey(entry.getValue()));
+        }
+        return new GraphRow(rowInstances, keys, jsonRelations);
+    }
 
-                }
+    //deduplicates and links hydrated rows, rows have to be added in result set order
+    class GraphAssembler {
+        private final Map<List<Object>, Object> madeObjects = new HashMap<>();
+        //linked hash set to preserve order from DB
+        private final Set<Object> returningObjects = new LinkedHashSet<>();
+        private final Set<List<Object>> relationDeduplication = new HashSet<>();
 
+        void add(GraphRow row) {
+            //deduplicating objects by inserting in madeObjects map
+            for (var entry : row.keys().entrySet()) {
+                madeObjects.putIfAbsent(entry.getValue(), row.instances().get(entry.getKey()));
             }
+            link(row);
+        }
+
+        //registers objects already deduplicated elsewhere, first registered instance of a key wins
+        void register(Map<List<Object>, Object> objects) {
+            for (var entry : objects.entrySet()) {
+                madeObjects.putIfAbsent(entry.getKey(), entry.getValue());
+            }
+        }
+
+        //links objects of a row whose instances are already registered
+        void link(GraphRow row) {
+            Map<String, Object> rowInstances = row.instances();
+            //solve relations
+            for (var freshObjectEntry : rowInstances.entrySet()) {
+                List<String> path = Arrays.stream(freshObjectEntry.getKey().split("\\.")).collect(Collectors.toList());
+                //skip mapping null objects
+                if (freshObjectEntry.getValue().equals(NullMarker.NULL)) {
+                    continue;
+                }
+                //these are original object required to return
+                if (path.size() == 1) {
+                    returningObjects.add(madeObjects.get(row.keys().get(freshObjectEntry.getKey())));
+                    continue;
+                }
+                List<Object> myKey = row.keys().get(freshObjectEntry.getKey());
+                String relation = path.getLast();
+                path.removeLast();
+                String joinedPath = String.join(".", path);
+                List<Object> parentKey = row.keys().get(joinedPath);
+                Object parent = madeObjects.get(parentKey);
+                Object child = madeObjects.get(myKey);
+                //relation deduplication
+                if (relationDeduplication.add(List.of(parent, child, relation))) {
+                    solveRelations(parent, child, relation);
+                }
+            }
+            //aggregated relations are the same in every row of their parent
+            for (var jsonRelation : row.jsonRelations().entrySet()) {
+                List<String> path = Arrays.stream(jsonRelation.getKey().split("\\.")).collect(Collectors.toList());
+                String relation = path.getLast();
+                path.removeLast();
+                Object parentInstance = rowInstances.get(String.join(".", path));
+                if (parentInstance == null || parentInstance.equals(NullMarker.NULL))
+                    continue;
+                Object parent = madeObjects.get(row.keys().get(String.join(".", path)));
+                if (relationDeduplication.add(List.of(parent, JSON_RELATION, relation))) {
+                    try {
+                        solveJsonRelation(parent, relation, jsonRelation.getValue(), madeObjects);
+                    } catch (InvocationTargetException | InstantiationException | IllegalAccessException |
+                             NoSuchMethodException e) {
+                        throw new ClassInstantiationException(e);
+                    }
+                }
+            }
+        }
+
+        <T> List<T> result(Class<T> clazz) {
             List<T> instances = new ArrayList<>();
             for (var entry : returningObjects) {
                 if (clazz.isInstance(entry)) {
@@ -119,11 +362,6 @@ public class DefaultMapperImplementation implements RowMapper {
                 }
             }
             return instances;
-        } catch (SQLException e) {
-            throw new ResultSetAccessException(e);
-        } catch (InvocationTargetException | InstantiationException | IllegalAccessException |
-                 NoSuchMethodException e) {
-            throw new ClassInstantiationException(e);
         }
     }
 
@@ -162,6 +400,72 @@ public class DefaultMapperImplementation implements RowMapper {
 
     }
 
+    //builds related objects from aggregated JSON array and sets them in the parent's collection
+    private void solveJsonRelation(Object parent, String relationName, String json, Map<List<Object>, Object> madeObjects)
+            throws InvocationTargetException, InstantiationException, IllegalAccessException, NoSuchMethodException {
+        RelationMetadata relation = MetadataStorage.get(parent.getClass()).getRelations().stream()
+                .filter(rel -> rel.getRelationName().equals(relationName))
+                .findFirst()
+                .orElseThrow(() -> new RuntimeException("Relation " + relationName + " not found"));
+        EntityMetadata relatedMetadata = MetadataStorage.get(relation.getForeignClass());
+        List<Object> related = new ArrayList<>();
+        List<?> rows = json == null ? List.of() : (List<?>) JsonReader.read(json);
+        for (Object row : rows) {
+            Object child = relation.getForeignClass().getDeclaredConstructor().newInstance();
+            for (var value : ((Map<?, ?>) row).entrySet()) {
+                String key = value.getKey().toString();
+                ColumnMetadata column = relatedMetadata.getColumns().values().stream()
+                        .filter(col -> col.getColumnName().equalsIgnoreCase(key))
+                        .findFirst()
+                        .orElse(null);
+                if (column == null) {
+                    log.warn("Column '{}' does not exist in entity '{}'; skipping.", key, relation.getForeignClass().getSimpleName());
+                    continue;
+                }
+                Object converted = fromJson(value.getValue(), column.getField().getType());
+                if (converted != null)
+                    PropertyUtils.setProperty(child, column.getField().getName(), converted);
+            }
+            Object madeChild = madeObjects.putIfAbsent(getPrimaryKey(child), child);
+            related.add(madeChild != null ? madeChild : child);
+        }
+        Field field = relation.getForeignField();
+        field.setAccessible(true);
+        field.set(parent, related);
+    }
+
+    //JSON values are strings, numbers and booleans, temporal values come in ISO format
+    private Object fromJson(Object value, Class<?> fieldType) {
+        if (value == null)
+            return null;
+        if (fieldType.isEnum())
+            return enumFromString(fieldType, value.toString());
+        Class<?> type = javaPrimitiveTypes(fieldType);
+        if (value instanceof BigDecimal number) {
+            if (type == Integer.class) return number.intValue();
+            if (type == Long.class) return number.longValue();
+            if (type == Short.class) return number.shortValue();
+            if (type == Byte.class) return number.byteValue();
+            if (type == Double.class) return number.doubleValue();
+            if (type == Float.class) return number.floatValue();
+            if (type == BigDecimal.class) return number;
+            if (type == Boolean.class) return number.signum() != 0;
+            if (type == String.class) return number.toPlainString();
+        }
+        if (value instanceof Boolean bool && (type == Boolean.class || type == String.class))
+            return type == Boolean.class ? bool : bool.toString();
+        String text = value.toString();
+        try {
+            if (type == String.class) return text;
+            if (type == LocalDate.class) return LocalDate.parse(text.substring(0, 10));
+            if (type == LocalDateTime.class) return LocalDateTime.parse(text.replace(' ', 'T'));
+            if (type == LocalTime.class) return LocalTime.parse(text);
+        } catch (DateTimeParseException e) {
+            throw new TypeConversionException(e);
+        }
+        throw new TypeConversionException("JSON value " + value + " can't be converted to " + fieldType.getSimpleName());
+    }
+
     //traverse through path to find right class
     private Class<?> findInstanceType(List<String> path, Class<?> start) {
         Class<?> current = start;
@@ -177,71 +481,32 @@ public class DefaultMapperImplementation implements RowMapper {
         return current;
     }
 
-    private <T> T singleRowMap(ResultSet rs, Class<T> clazz) {
-        EntityMetadata entityMetadata = MetadataStorage.get(clazz);
-
-        if (entityMetadata == null) {
-            return null;
-        }
-
-
-        T instance;
-        try {
-            instance = clazz.getDeclaredConstructor().newInstance();
-        } catch (Exception e) {
-            throw new ClassInstantiationException(e);
-        }
-        return singleRowMap(rs, instance);
-    }
-
-    private <T> T singleRowMap(ResultSet rs, T instance){
-        //for each column in result set, find the designated field
-        // and do the conversion to java datatype
-        try {
-            ResultSetMetaData rsMeta = rs.getMetaData();
-            int columnCount = rsMeta.getColumnCount();
-
-            for (int i = 1; i <= columnCount; i++) {
-                String columnName = rsMeta.getColumnLabel(i).toLowerCase();
-                mapSingleProperty(instance, columnName, columnName, rs);
-            }
-
-            return instance;
-        } catch (SQLException e) {
-            throw new ResultSetAccessException(e);
-        }
+    //reads value of single column in the type of its field
+    private Object readColumn(ColumnMetadata columnMetadata, ResultSet rs, int index) throws SQLException {
+        Class<?> fieldType = columnMetadata.getField().getType();
+        if (columnMetadata.isLob())
+            return readLob(fieldType, rs, index);
+        //check if it is enum
+        if (fieldType.isEnum())
+            return enumFromString(fieldType, rs.getString(index));
+        //convert primitive types to java wrappers for JDBC
+        return rs.getObject(index, javaPrimitiveTypes(fieldType));
     }
 
-    //maps single column value to property in instance, returns false if DB null object mapping is detected
-    private boolean mapSingleProperty(Object instance, String resultSetColumnName, String columnName, ResultSet rs) {
+    //sets single column value to property in instance, returns false if DB null object mapping is detected
+    private boolean assignColumn(Object instance, ColumnMetadata columnMetadata, Object value) {
         try {
-            Class<?> clazz = instance.getClass();
-            EntityMetadata entityMetadata = MetadataStorage.get(clazz);
-            //check if instance is nullObject
-            if (instance.equals(NullMarker.NULL))
-                return true;
-
-            ColumnMetadata columnMetadata = entityMetadata.getColumns().get(columnName);
-
-            if (columnMetadata == null) {
-                // Column doesn't belong to this entity -> skip for now
-                log.warn("Column '{}' does not exist in entity '{}'; skipping.", columnName, clazz.getSimpleName());
-                return true;
-            }
-
             Field field = columnMetadata.getField();
             String fieldName = field.getName();
-            Class<?> fieldType = field.getType();
-            Object value;
-            //check if it is enum
-            if(fieldType.isEnum()){
-                value = enumFromString(fieldType, rs.getString(resultSetColumnName));
+            //large objects can't be primary keys, set them without conversions
+            if (columnMetadata.isLob()) {
+                if (value == DEFERRED_LOB)
+                    value = deferredLob(instance, field);
+                PropertyUtils.setProperty(instance, fieldName, value);
+                return true;
             }
-            //convert primitive types to java wrappers for JDBC
-            else
-                value = rs.getObject(resultSetColumnName, javaPrimitiveTypes(fieldType));
             //check if field is PK and null -> db null object
-            List<Field> pkFields = entityMetadata.getIdFields();
+            List<Field> pkFields = MetadataStorage.get(instance.getClass()).getIdFields();
             if (pkFields.contains(field) && value == null) {
                 //flag for null object
                 return false;
@@ -249,13 +514,88 @@ public class DefaultMapperImplementation implements RowMapper {
             //populate field
             BeanUtils.setProperty(instance, fieldName, value);
             return true;
-        } catch (SQLException e) {
-            throw new ResultSetAccessException(e);
-        } catch (IllegalAccessException | InvocationTargetException e) {
+        } catch (IllegalAccessException | InvocationTargetException | NoSuchMethodException e) {
             throw new TypeConversionException(e);
         }
     }
 
+    //explicitly selected byte[] and String large objects are read whole, streams are deferred if there is a lob source
+    private Object readLob(Class<?> fieldType, ResultSet rs, int index) throws SQLException {
+        if (fieldType == byte[].class)
+            return rs.getBytes(index);
+        if (lobSource != null && (fieldType == InputStream.class || fieldType == Reader.class))
+            return DEFERRED_LOB;
+        if (fieldType == InputStream.class) {
+            byte[] bytes = rs.getBytes(index);
+            return bytes == null ? null : new ByteArrayInputStream(bytes);
+        }
+        String value = rs.getString(index);
+        if (fieldType == Reader.class)
+            return value == null ? null : new StringReader(value);
+        return value;
+    }
+
+    //stream selecting the large object of the entity by its key on first read, NULL values read as empty
+    private Object deferredLob(Object instance, Field field) {
+        LobSource source = lobSource;
+        String fieldName = field.getName();
+        if (field.getType() == InputStream.class) {
+            return new InputStream() {
+                private InputStream stream;
+
+                private InputStream stream() throws IOException {
+                    if (stream == null)
+                        stream = Objects.requireNonNullElseGet(open(() -> source.openStream(instance, fieldName)), InputStream::nullInputStream);
+                    return stream;
+                }
+
+                @Override
+                public int read() throws IOException {
+                    return stream().read();
+                }
+
+                @Override
+                public int read(byte[] b, int off, int len) throws IOException {
+                    return stream().read(b, off, len);
+                }
+
+                @Override
+                public void close() throws IOException {
+                    if (stream != null)
+                        stream.close();
+                }
+            };
+        }
+        return new Reader() {
+            private Reader reader;
+
+            @Override
+            public int read(char[] cbuf, int off, int len) throws IOException {
+                if (reader == null)
+                    reader = Objects.requireNonNullElseGet(open(() -> source.openReader(instance, fieldName)), Reader::nullReader);
+                return reader.read(cbuf, off, len);
+            }
+
+            @Override
+            public void close() throws IOException {
+                if (reader != null)
+                    reader.close();
+            }
+        };
+    }
+
+    private interface LobOpener<S> {
+        S open() throws SQLException;
+    }
+
+    private static <S> S open(LobOpener<S> opener) throws IOException {
+        try {
+            return opener.open();
+        } catch (SQLException e) {
+            throw new IOException(e);
+        }
+    }
+
     //construct instance of enum that is given
     private <E extends Enum<E>> E enumFromString(Class<?> enumClass, String value) {
         assert enumClass.isEnum();
@@ -0,0 +1,155 @@
+package raf.thesis.mapper;
+
+import raf.thesis.mapper.exceptions.TypeConversionException;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Minimal JSON parser for relation columns aggregated by the database.
+ * Objects are read as maps, arrays as lists and numbers as {@link BigDecimal}.
+ */
+class JsonReader {
+    private final String json;
+    private int pos;
+
+    private JsonReader(String json) {
+        this.json = json;
+    }
+
+    static Object read(String json) {
+        JsonReader reader = new JsonReader(json);
+        Object value = reader.readValue();
+        reader.skipWhitespace();
+        if (reader.pos != json.length())
+            throw reader.error("Unexpected content");
+        return value;
+    }
+
+    private Object readValue() {
+        skipWhitespace();
+        if (pos >= json.length())
+            throw error("Unexpected end");
+        char c = json.charAt(pos);
+        return switch (c) {
+            case '{' -> readObject();
+            case '[' -> readArray();
+            case '"' -> readString();
+            case 't' -> readLiteral("true", Boolean.TRUE);
+            case 'f' -> readLiteral("false", Boolean.FALSE);
+            case 'n' -> readLiteral("null", null);
+            default -> readNumber();
+        };
+    }
+
+    private Map<String, Object> readObject() {
+        Map<String, Object> object = new LinkedHashMap<>();
+        pos++;
+        skipWhitespace();
+        if (peek() == '}') {
+            pos++;
+            return object;
+        }
+        while (true) {
+            skipWhitespace();
+            String key = readString();
+            skipWhitespace();
+            expect(':');
+            object.put(key, readValue());
+            skipWhitespace();
+            if (peek() == ',') {
+                pos++;
+                continue;
+            }
+            expect('}');
+            return object;
+        }
+    }
+
+    private List<Object> readArray() {
+        List<Object> array = new ArrayList<>();
+        pos++;
+        skipWhitespace();
+        if (peek() == ']') {
+            pos++;
+            return array;
+        }
+        while (true) {
+            array.add(readValue());
+            skipWhitespace();
+            if (peek() == ',') {
+                pos++;
+                continue;
+            }
+            expect(']');
+            return array;
+        }
+    }
+
+    private String readString() {
+        expect('"');
+        StringBuilder sb = new StringBuilder();
+        while (true) {
+            if (pos >= json.length())
+                throw error("Unterminated string");
+            char c = json.charAt(pos++);
+            if (c == '"')
+                return sb.toString();
+            if (c != '\\') {
+                sb.append(c);
+                continue;
+            }
+            char escaped = json.charAt(pos++);
+            switch (escaped) {
+                case 'b' -> sb.append('\b');
+                case 'f' -> sb.append('\f');
+                case 'n' -> sb.append('\n');
+                case 'r' -> sb.append('\r');
+                case 't' -> sb.append('\t');
+                case 'u' -> {
+                    sb.append((char) Integer.parseInt(json.substring(pos, pos + 4), 16));
+                    pos += 4;
+                }
+                default -> sb.append(escaped);
+            }
+        }
+    }
+
+    private BigDecimal readNumber() {
+        int start = pos;
+        while (pos < json.length() && "+-0123456789.eE".indexOf(json.charAt(pos)) != -1)
+            pos++;
+        if (start == pos)
+            throw error("Unexpected character");
+        return new BigDecimal(json.substring(start, pos));
+    }
+
+    private Object readLiteral(String literal, Object value) {
+        if (!json.startsWith(literal, pos))
+            throw error("Unexpected character");
+        pos += literal.length();
+        return value;
+    }
+
+    private void expect(char c) {
+        if (peek() != c)
+            throw error("Expected '" + c + "'");
+        pos++;
+    }
+
+    private char peek() {
+        return pos < json.length() ? json.charAt(pos) : 0;
+    }
+
+    private void skipWhitespace() {
+        while (pos < json.length() && Character.isWhitespace(json.charAt(pos)))
+            pos++;
+    }
+
+    private TypeConversionException error(String message) {
+        return new TypeConversionException(message + " at position " + pos + " in JSON relation column");
+    }
+}
@@ -0,0 +1,363 @@
+package raf.thesis.mapper;
+
+import raf.thesis.mapper.exceptions.ResultSetAccessException;
+import raf.thesis.metadata.ColumnMetadata;
+import raf.thesis.metadata.EntityMetadata;
+import raf.thesis.metadata.RelationMetadata;
+import raf.thesis.metadata.RelationType;
+import raf.thesis.metadata.storage.MetadataStorage;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.math.BigDecimal;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.time.temporal.Temporal;
+import java.util.*;
+
+/**
+ * Writes a result set of an entity query straight into a JSON array, without mapping rows to objects.
+ * <p>
+ * Property names come from entity fields, joined relations are nested by their relation paths: collections
+ * as arrays and to-one relations as objects or {@code null}. Rows of one entity have to come one after another,
+ * which {@code QueryBuilder.buildGroupedByEntity} guarantees. Only one object per nesting level is kept open,
+ * so every entity can have at most one joined collection, directly or through its to-one relations.
+ * Results of {@link raf.thesis.metadata.annotations.PDO} queries, whose columns carry no relation path, are written
+ * as flat objects, one per row, and don't need a primary key.
+ * Output goes through a single reusable buffer.
+ */
+public class JsonResultWriter {
+    private static final int BUFFER_SIZE = 8192;
+    private static final byte[] NULL = "null".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] TRUE = "true".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] FALSE = "false".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] HEX = "0123456789abcdef".getBytes(StandardCharsets.US_ASCII);
+
+    private final ByteSink out;
+
+    public JsonResultWriter(WritableByteChannel channel) {
+        this.out = new ByteSink(channel, ByteBuffer.allocate(BUFFER_SIZE));
+    }
+
+    //returns number of written root entities
+    public long write(ResultSet rs, Class<?> clazz) {
+        try {
+            Node root = plan(rs.getMetaData(), clazz);
+            long written = 0;
+            out.put((byte) '[');
+            while (rs.next()) {
+                //flat rows without a key are separate objects
+                if (root.keyIndexes.isEmpty()) {
+                    if (written > 0)
+                        out.put((byte) ',');
+                    openObject(root, rs);
+                    out.put((byte) '}');
+                    written++;
+                    continue;
+                }
+                Object[] key = root.readKey(rs);
+                if (key == null || Arrays.equals(key, root.key)) {
+                    if (root.key != null && root.multi != null)
+                        advance(root.multi, rs);
+                    continue;
+                }
+                if (root.key != null) {
+                    closeObject(root);
+                    out.put((byte) ',');
+                }
+                root.open(key);
+                openObject(root, rs);
+                written++;
+            }
+            if (root.key != null)
+                closeObject(root);
+            out.put((byte) ']');
+            out.flush();
+            return written;
+        } catch (SQLException e) {
+            throw new ResultSetAccessException(e);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    //single entity of relation path with its selected columns
+    private static final class Node {
+        private final Class<?> type;
+        private final RelationMetadata relation;
+        private final byte[] name;
+        private final List<Column> columns = new ArrayList<>();
+        private final List<Integer> keyIndexes = new ArrayList<>();
+        //to-one relations without collections below them, written whole from the first row
+        private final List<Node> singles = new ArrayList<>();
+        //relation spanning multiple rows, at most one per entity
+        private Node multi;
+        private final List<Node> children = new ArrayList<>();
+        //key of the open object, null if none is open
+        private Object[] key;
+        //reused arrays of the open key and of the key read last
+        private Object[] openKey;
+        private Object[] scratch;
+        //keys already written inside the current parent, single column keys are kept as they are
+        private final Set<Object> seen = new HashSet<>();
+        private boolean written;
+
+        private Node(Class<?> type, RelationMetadata relation) {
+            this.type = type;
+            this.relation = relation;
+            this.name = relation == null ? null : propertyName(relation.getForeignField().getName());
+        }
+
+        private boolean isCollection() {
+            return relation.getRelationType() == RelationType.ONE_TO_MANY || relation.getRelationType() == RelationType.MANY_TO_MANY;
+        }
+
+        private boolean spansRows() {
+            return isCollection() || multi != null;
+        }
+
+        //reads primary key into reused array, null if the entity is missing from the row
+        private Object[] readKey(ResultSet rs) throws SQLException {
+            if (scratch == null)
+                scratch = new Object[keyIndexes.size()];
+            for (int i = 0; i < scratch.length; i++) {
+                scratch[i] = rs.getObject(keyIndexes.get(i));
+                if (scratch[i] == null)
+                    return null;
+            }
+            return scratch;
+        }
+
+        //copies the key read last into the open key
+        private void open(Object[] read) {
+            if (openKey == null)
+                openKey = new Object[read.length];
+            System.arraycopy(read, 0, openKey, 0, read.length);
+            key = openKey;
+        }
+
+        private boolean markSeen(Object[] read) {
+            return seen.add(read.length == 1 ? read[0] : List.of(read.clone()));
+        }
+    }
+
+    private record Column(int index, byte[] name, ColumnMetadata metadata) {
+    }
+
+    private Node plan(ResultSetMetaData rsMeta, Class<?> clazz) throws SQLException {
+        Map<String, Node> nodes = new LinkedHashMap<>();
+        Node root = new Node(clazz, null);
+        for (int i = 1; i <= rsMeta.getColumnCount(); i++) {
+            String label = rsMeta.getColumnLabel(i);
+            //labels without relation path are PDO aliases, they belong to the root object
+            if (!label.contains(".")) {
+                ColumnMetadata column = MetadataStorage.get(clazz).getColumns().get(label.toLowerCase());
+                if (column != null)
+                    root.columns.add(new Column(i, propertyName(column.getField().getName()), column));
+                continue;
+            }
+            List<String> path = new ArrayList<>(Arrays.asList(label.split("\\.")));
+            String columnName = path.removeLast();
+            Node node = root;
+            for (int p = 1; p < path.size(); p++)
+                node = child(node, path.get(p), nodes, String.join(".", path.subList(0, p + 1)));
+            EntityMetadata metadata = MetadataStorage.get(node.type);
+            ColumnMetadata column = metadata.getColumns().get(columnName);
+            if (column == null)
+                continue;
+            node.columns.add(new Column(i, propertyName(column.getField().getName()), column));
+            if (metadata.getIdFields().contains(column.getField()))
+                node.keyIndexes.add(i);
+        }
+        arrange(root);
+        return root;
+    }
+
+    private Node child(Node parent, String relationName, Map<String, Node> nodes, String path) {
+        return nodes.computeIfAbsent(path, _ -> {
+            RelationMetadata relation = MetadataStorage.get(parent.type).getRelations().stream()
+                    .filter(rel -> rel.getRelationName().equalsIgnoreCase(relationName))
+                    .findFirst()
+                    .orElseThrow(() -> new IllegalArgumentException("Relation " + relationName + " not found"));
+            Node child = new Node(relation.getForeignClass(), relation);
+            parent.children.add(child);
+            return child;
+        });
+    }
+
+    //splits children into single-row ones and the one spanning rows, bottom up
+    private void arrange(Node node) {
+        if (node.keyIndexes.isEmpty() && (node.relation != null || !node.children.isEmpty()))
+            throw new IllegalArgumentException("Primary key of " + node.type.getSimpleName() + " has to be selected");
+        for (Node child : node.children) {
+            arrange(child);
+            if (!child.spansRows()) {
+                node.singles.add(child);
+                continue;
+            }
+            if (node.multi != null)
+                throw new IllegalArgumentException("Entity " + node.type.getSimpleName() + " joins more than one collection, they can't be streamed together");
+            node.multi = child;
+        }
+    }
+
+    private void openObject(Node node, ResultSet rs) throws SQLException, IOException {
+        out.put((byte) '{');
+        boolean first = true;
+        for (Column column : node.columns) {
+            if (!first)
+                out.put((byte) ',');
+            first = false;
+            out.put(column.name());
+            writeValue(column, rs);
+        }
+        for (Node single : node.singles) {
+            out.put((byte) ',');
+            out.put(single.name);
+            if (single.readKey(rs) == null)
+                out.put(NULL);
+            else {
+                openObject(single, rs);
+                out.put((byte) '}');
+            }
+        }
+        if (node.multi != null) {
+            Node multi = node.multi;
+            out.put((byte) ',');
+            out.put(multi.name);
+            if (multi.isCollection())
+                out.put((byte) '[');
+            multi.key = null;
+            multi.written = false;
+            multi.seen.clear();
+            advance(multi, rs);
+        }
+    }
+
+    //continues relation spanning rows of its open parent with the current row
+    private void advance(Node node, ResultSet rs) throws SQLException, IOException {
+        Object[] key = node.readKey(rs);
+        if (!node.isCollection()) {
+            if (!node.written) {
+                node.written = true;
+                if (key == null) {
+                    node.key = null;
+                    out.put(NULL);
+                } else {
+                    node.open(key);
+                    openObject(node, rs);
+                }
+            } else if (node.key != null && node.multi != null) {
+                advance(node.multi, rs);
+            }
+            return;
+        }
+        if (key == null)
+            return;
+        if (Arrays.equals(key, node.key)) {
+            if (node.multi != null)
+                advance(node.multi, rs);
+            return;
+        }
+        //rows not grouped by this entity would repeat it, such rows are skipped
+        if (!node.markSeen(key))
+            return;
+        if (node.key != null) {
+            closeObject(node);
+            out.put((byte) ',');
+        }
+        node.open(key);
+        openObject(node, rs);
+    }
+
+    private void closeObject(Node node) throws IOException {
+        Node multi = node.multi;
+        if (multi != null) {
+            if (multi.key != null)
+                closeObject(multi);
+            if (multi.isCollection())
+                out.put((byte) ']');
+        }
+        out.put((byte) '}');
+    }
+
+    private void writeValue(Column column, ResultSet rs) throws SQLException, IOException {
+        Class<?> type = column.metadata().getField().getType();
+        int index = column.index();
+        if (type == int.class || type == Integer.class || type == long.class || type == Long.class
+                || type == short.class || type == Short.class || type == byte.class || type == Byte.class) {
+            long value = rs.getLong(index);
+            if (rs.wasNull())
+                out.put(NULL);
+            else
+                out.putLong(value);
+            return;
+        }
+        if (type == boolean.class || type == Boolean.class) {
+            boolean value = rs.getBoolean(index);
+            out.put(rs.wasNull() ? NULL : value ? TRUE : FALSE);
+            return;
+        }
+        if (type == double.class || type == Double.class || type == float.class || type == Float.class) {
+            double value = rs.getDouble(index);
+            if (rs.wasNull() || !Double.isFinite(value))
+                out.put(NULL);
+            else
+                out.putAscii(Double.toString(value));
+            return;
+        }
+        if (type == BigDecimal.class) {
+            BigDecimal value = rs.getBigDecimal(index);
+            if (value == null)
+                out.put(NULL);
+            else
+                out.putAscii(value.toPlainString());
+            return;
+        }
+        if (type == byte[].class || type == InputStream.class) {
+            byte[] value = rs.getBytes(index);
+            if (value == null)
+                out.put(NULL);
+            else
+                putString(Base64.getEncoder().encodeToString(value));
+            return;
+        }
+        //temporal values in ISO format, same as they are read from JSON
+        Object value = Temporal.class.isAssignableFrom(type) ? rs.getObject(index, type) : rs.getString(index);
+        if (value == null)
+            out.put(NULL);
+        else
+            putString(value.toString());
+    }
+
+    private static byte[] propertyName(String name) {
+        return ("\"" + name + "\":").getBytes(StandardCharsets.UTF_8);
+    }
+
+    //escapes and encodes string as UTF-8 directly into the buffer
+    private void putString(String text) throws IOException {
+        out.put((byte) '"');
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (c == '"' || c == '\\') {
+                out.put((byte) '\\');
+                out.put((byte) c);
+            } else if (c < 0x20) {
+                out.put((byte) '\\');
+                out.put((byte) 'u');
+                out.put((byte) '0');
+                out.put((byte) '0');
+                out.put(HEX[c >> 4]);
+                out.put(HEX[c & 0xF]);
+            } else {
+                i = out.putUtf8(text, i);
+            }
+        }
+        out.put((byte) '"');
+    }
+}
@@ -0,0 +1,16 @@
+package raf.thesis.mapper;
+
+import java.io.InputStream;
+import java.io.Reader;
+import java.sql.SQLException;
+
+/**
+ * Opens large object columns of already mapped entities. {@link DefaultMapperImplementation} uses it to fill
+ * {@link InputStream} and {@link Reader} fields with streams that select the value on first read,
+ * instead of reading the whole value while mapping the row.
+ */
+public interface LobSource {
+    InputStream openStream(Object entity, String fieldName) throws SQLException;
+
+    Reader openReader(Object entity, String fieldName) throws SQLException;
+}
@@ -0,0 +1,346 @@
+package raf.thesis.mapper;
+
+import raf.thesis.mapper.exceptions.ResultSetAccessException;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.function.BiFunction;
+
+/**
+ * Mapper that materializes the whole result set first and hydrates it on a fork/join pool.
+ * <p>
+ * Raw values are buffered column by column, then row ranges are hydrated by recursive tasks whose results
+ * are concatenated in row order. For joined results every range also deduplicates its own entities, the
+ * partitions are then merged on the calling thread in row order, so identity and ordering of the graph
+ * are the same as with {@link DefaultMapperImplementation}. Pays off for large results, small ones are
+ * mapped by a single task.
+ * <p>
+ * A pool made from the given parallelism is owned by the mapper and shut down by {@link #close()},
+ * a pool passed in by the caller is left running.
+ */
+public class ParallelMapper extends DefaultMapperImplementation implements AutoCloseable {
+    //smaller ranges are not worth forking
+    private static final int DEFAULT_ROWS_PER_TASK = 512;
+    private final ForkJoinPool pool;
+    private final int rowsPerTask;
+    //pools made from parallelism belong to the mapper, given pools and the common pool belong to the caller
+    private final boolean ownsPool;
+
+    public ParallelMapper() {
+        this(ForkJoinPool.commonPool(), DEFAULT_ROWS_PER_TASK, false);
+    }
+
+    public ParallelMapper(int parallelism) {
+        this(parallelism, DEFAULT_ROWS_PER_TASK);
+    }
+
+    public ParallelMapper(int parallelism, int rowsPerTask) {
+        this(new ForkJoinPool(parallelism), rowsPerTask, true);
+    }
+
+    public ParallelMapper(ForkJoinPool pool, int rowsPerTask) {
+        this(pool, rowsPerTask, false);
+    }
+
+    private ParallelMapper(ForkJoinPool pool, int rowsPerTask, boolean ownsPool) {
+        if (rowsPerTask < 1) {
+            if (ownsPool)
+                pool.shutdown();
+            throw new IllegalArgumentException("Rows per task must be positive");
+        }
+        this.pool = pool;
+        this.rowsPerTask = rowsPerTask;
+        this.ownsPool = ownsPool;
+    }
+
+    //mappings already running finish on the pool, new ones are rejected
+    @Override
+    public void close() {
+        if (ownsPool)
+            pool.shutdown();
+    }
+
+    @Override
+    public <T> List<T> mapList(ResultSet rs, Class<T> clazz) {
+        try {
+            List<Column> columns = flatColumns(rs.getMetaData(), clazz);
+            ColumnBuffer buffer = buffer(rs, columns, _ -> {});
+            List<List<T>> partitions = pool.invoke(new HydrateRange<>(0, buffer.size, (from, to) -> {
+                List<T> instances = new ArrayList<>(to - from);
+                for (int i = from; i < to; i++)
+                    instances.add(hydrateFlat(clazz, columns, buffer.row(i)));
+                return instances;
+            }));
+            List<T> instances = new ArrayList<>(buffer.size);
+            partitions.forEach(instances::addAll);
+            return instances;
+        } catch (SQLException e) {
+            throw new ResultSetAccessException(e);
+        }
+    }
+
+    @Override
+    public <T> List<T> mapWithRelations(ResultSet rs, Class<T> clazz, RowListener rowListener) {
+        try {
+            List<Column> columns = graphColumns(rs.getMetaData(), clazz);
+            ColumnBuffer buffer = buffer(rs, columns, rowListener);
+            List<Partition> partitions = pool.invoke(new HydrateRange<>(0, buffer.size, (from, to) -> {
+                Partition partition = new Partition(new ArrayList<>(to - from), new LinkedHashMap<>());
+                for (int i = from; i < to; i++) {
+                    GraphRow row = hydrateGraph(columns, buffer.row(i));
+                    //rows of the range share the first instance of every entity
+                    for (var key : row.keys().entrySet()) {
+                        Object made = partition.objects().putIfAbsent(key.getValue(), row.instances().get(key.getKey()));
+                        if (made != null)
+                            row.instances().put(key.getKey(), made);
+                    }
+                    partition.rows().add(row);
+                }
+                return partition;
+            }));
+            GraphAssembler assembler = new GraphAssembler();
+            for (Partition partition : partitions) {
+                assembler.register(partition.objects());
+                partition.rows().forEach(assembler::link);
+            }
+            return assembler.result(clazz);
+        } catch (SQLException e) {
+            throw new ResultSetAccessException(e);
+        }
+    }
+
+    private ColumnBuffer buffer(ResultSet rs, List<Column> columns, RowListener rowListener) throws SQLException {
+        ColumnBuffer buffer = new ColumnBuffer(columns);
+        while (rs.next()) {
+            rowListener.onRow(rs);
+            buffer.read(rs);
+        }
+        return buffer;
+    }
+
+    //raw values stored column by column, numeric and boolean columns in primitive arrays
+    private final class ColumnBuffer {
+        private final ColumnValues[] values;
+        private int size;
+
+        private ColumnBuffer(List<Column> columns) {
+            values = new ColumnValues[columns.size()];
+            for (int c = 0; c < values.length; c++)
+                values[c] = columnValues(columns.get(c));
+        }
+
+        private void read(ResultSet rs) throws SQLException {
+            for (ColumnValues column : values) {
+                column.ensureCapacity(size + 1);
+                column.read(rs, size);
+            }
+            size++;
+        }
+
+        private Object[] row(int index) {
+            Object[] row = new Object[values.length];
+            for (int c = 0; c < values.length; c++)
+                row[c] = values[c].get(index);
+            return row;
+        }
+    }
+
+    private ColumnValues columnValues(Column column) {
+        if (column.json() || column.metadata() == null || column.metadata().isLob())
+            return new ObjectValues(column);
+        Class<?> type = column.metadata().getField().getType();
+        if (type == int.class || type == Integer.class)
+            return new IntValues(column.index());
+        if (type == long.class || type == Long.class)
+            return new LongValues(column.index());
+        if (type == double.class || type == Double.class)
+            return new DoubleValues(column.index());
+        if (type == boolean.class || type == Boolean.class)
+            return new BooleanValues(column.index());
+        return new ObjectValues(column);
+    }
+
+    //values of a single column, SQL nulls of primitive columns are kept in a separate bit set
+    private abstract static class ColumnValues {
+        protected final BitSet nulls = new BitSet();
+        protected int capacity = 16;
+
+        abstract void read(ResultSet rs, int row) throws SQLException;
+
+        abstract Object get(int row);
+
+        abstract void resize(int capacity);
+
+        void ensureCapacity(int rows) {
+            if (rows <= capacity)
+                return;
+            capacity *= 2;
+            resize(capacity);
+        }
+    }
+
+    private static final class IntValues extends ColumnValues {
+        private final int index;
+        private int[] values = new int[capacity];
+
+        private IntValues(int index) {
+            this.index = index;
+        }
+
+        @Override
+        void read(ResultSet rs, int row) throws SQLException {
+            values[row] = rs.getInt(index);
+            if (rs.wasNull())
+                nulls.set(row);
+        }
+
+        @Override
+        Object get(int row) {
+            return nulls.get(row) ? null : values[row];
+        }
+
+        @Override
+        void resize(int capacity) {
+            values = Arrays.copyOf(values, capacity);
+        }
+    }
+
+    private static final class LongValues extends ColumnValues {
+        private final int index;
+        private long[] values = new long[capacity];
+
+        private LongValues(int index) {
+            this.index = index;
+        }
+
+        @Override
+        void read(ResultSet rs, int row) throws SQLException {
+            values[row] = rs.getLong(index);
+            if (rs.wasNull())
+                nulls.set(row);
+        }
+
+        @Override
+        Object get(int row) {
+            return nulls.get(row) ? null : values[row];
+        }
+
+        @Override
+        void resize(int capacity) {
+            values = Arrays.copyOf(values, capacity);
+        }
+    }
+
+    private static final class DoubleValues extends ColumnValues {
+        private final int index;
+        private double[] values = new double[capacity];
+
+        private DoubleValues(int index) {
+            this.index = index;
+        }
+
+        @Override
+        void read(ResultSet rs, int row) throws SQLException {
+            values[row] = rs.getDouble(index);
+            if (rs.wasNull())
+                nulls.set(row);
+        }
+
+        @Override
+        Object get(int row) {
+            return nulls.get(row) ? null : values[row];
+        }
+
+        @Override
+        void resize(int capacity) {
+            values = Arrays.copyOf(values, capacity);
+        }
+    }
+
+    private static final class BooleanValues extends ColumnValues {
+        private final int index;
+        private final BitSet values = new BitSet();
+
+        private BooleanValues(int index) {
+            this.index = index;
+        }
+
+        @Override
+        void read(ResultSet rs, int row) throws SQLException {
+            values.set(row, rs.getBoolean(index));
+            if (rs.wasNull())
+                nulls.set(row);
+        }
+
+        @Override
+        Object get(int row) {
+            return nulls.get(row) ? null : values.get(row);
+        }
+
+        @Override
+        void resize(int capacity) {
+        }
+    }
+
+    //columns without a primitive representation, read through the default column conversion
+    private final class ObjectValues extends ColumnValues {
+        private final Column column;
+        private Object[] values = new Object[capacity];
+
+        private ObjectValues(Column column) {
+            this.column = column;
+        }
+
+        @Override
+        void read(ResultSet rs, int row) throws SQLException {
+            values[row] = readValue(rs, column);
+        }
+
+        @Override
+        Object get(int row) {
+            return values[row];
+        }
+
+        @Override
+        void resize(int capacity) {
+            values = Arrays.copyOf(values, capacity);
+        }
+    }
+
+    private record Partition(List<GraphRow> rows, Map<List<Object>, Object> objects) {
+    }
+
+    //splits row range in halves until it is small enough, results are returned in row order
+    private final class HydrateRange<P> extends RecursiveTask<List<P>> {
+        private final int from;
+        private final int to;
+        private final BiFunction<Integer, Integer, P> hydrate;
+
+        private HydrateRange(int from, int to, BiFunction<Integer, Integer, P> hydrate) {
+            this.from = from;
+            this.to = to;
+            this.hydrate = hydrate;
+        }
+
+        @Override
+        protected List<P> compute() {
+            if (to - from <= rowsPerTask)
+                return List.of(hydrate.apply(from, to));
+            int middle = (from + to) >>> 1;
+            HydrateRange<P> left = new HydrateRange<>(from, middle, hydrate);
+            left.fork();
+            List<P> right = new HydrateRange<>(middle, to, hydrate).compute();
+            List<P> result = new ArrayList<>(left.join());
+            result.addAll(right);
+            return result;
+        }
+    }
+}
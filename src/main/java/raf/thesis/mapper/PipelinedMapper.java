@@ -0,0 +1,112 @@
+package raf.thesis.mapper;
+
+import raf.thesis.mapper.exceptions.ResultSetAccessException;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+/**
+ * Mapper that overlaps JDBC fetching with object hydration.
+ * <p>
+ * The calling thread reads raw column values into batches of {@code batchSize} rows and hands every batch
+ * to a virtual thread that hydrates it, while the next batch is being fetched. At most {@code queueCapacity}
+ * batches are in flight, after that the reader waits for the oldest one, so memory use stays bounded.
+ * Batches are consumed in the order they were read, which keeps the output identical to
+ * {@link DefaultMapperImplementation}. Deduplication and relation linking of joined results stay on the
+ * calling thread.
+ */
+public class PipelinedMapper extends DefaultMapperImplementation {
+    private final int batchSize;
+    private final int queueCapacity;
+
+    public PipelinedMapper(int batchSize, int queueCapacity) {
+        if (batchSize < 1 || queueCapacity < 1)
+            throw new IllegalArgumentException("Batch size and queue capacity must be positive");
+        this.batchSize = batchSize;
+        this.queueCapacity = queueCapacity;
+    }
+
+    @Override
+    public <T> List<T> mapList(ResultSet rs, Class<T> clazz) {
+        List<T> instances = new ArrayList<>();
+        try {
+            List<Column> columns = flatColumns(rs.getMetaData(), clazz);
+            pipeline(rs, columns, _ -> {}, values -> hydrateFlat(clazz, columns, values), instances::add);
+        } catch (SQLException e) {
+            throw new ResultSetAccessException(e);
+        }
+        return instances;
+    }
+
+    @Override
+    public <T> List<T> mapWithRelations(ResultSet rs, Class<T> clazz, RowListener rowListener) {
+        GraphAssembler assembler = new GraphAssembler();
+        try {
+            List<Column> columns = graphColumns(rs.getMetaData(), clazz);
+            pipeline(rs, columns, rowListener, values -> hydrateGraph(columns, values), assembler::add);
+        } catch (SQLException e) {
+            throw new ResultSetAccessException(e);
+        }
+        return assembler.result(clazz);
+    }
+
+    private <R> void pipeline(ResultSet rs, List<Column> columns, RowListener rowListener,
+                              Function<Object[], R> hydrate, Consumer<R> sink) throws SQLException {
+        Deque<Future<List<R>>> inFlight = new ArrayDeque<>();
+        try (ExecutorService mappers = Executors.newVirtualThreadPerTaskExecutor()) {
+            try {
+                List<Object[]> batch = new ArrayList<>(batchSize);
+                while (rs.next()) {
+                    rowListener.onRow(rs);
+                    batch.add(readRow(rs, columns));
+                    if (batch.size() < batchSize)
+                        continue;
+                    //backpressure, reader waits for the oldest batch when the queue is full
+                    if (inFlight.size() == queueCapacity)
+                        drain(inFlight.poll(), sink);
+                    inFlight.add(submit(mappers, batch, hydrate));
+                    batch = new ArrayList<>(batchSize);
+                }
+                if (!batch.isEmpty())
+                    inFlight.add(submit(mappers, batch, hydrate));
+                while (!inFlight.isEmpty())
+                    drain(inFlight.poll(), sink);
+            } finally {
+                //nothing is left on success, on failure pending batches are abandoned
+                inFlight.forEach(pending -> pending.cancel(true));
+            }
+        }
+    }
+
+    private static <R> Future<List<R>> submit(ExecutorService mappers, List<Object[]> rows, Function<Object[], R> hydrate) {
+        return mappers.submit(() -> {
+            List<R> hydrated = new ArrayList<>(rows.size());
+            for (Object[] row : rows)
+                hydrated.add(hydrate.apply(row));
+            return hydrated;
+        });
+    }
+
+    private static <R> void drain(Future<List<R>> batch, Consumer<R> sink) {
+        try {
+            batch.get().forEach(sink);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new ResultSetAccessException(e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException runtime)
+                throw runtime;
+            throw new ResultSetAccessException(e.getCause());
+        }
+    }
+}
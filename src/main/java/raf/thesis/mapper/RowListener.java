@@ -0,0 +1,12 @@
+package raf.thesis.mapper;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+
+/**
+ * Callback invoked by {@link RowMapper} for every row of the result set before it is mapped.
+ */
+@FunctionalInterface
+public interface RowListener {
+    void onRow(ResultSet rs) throws SQLException;
+}
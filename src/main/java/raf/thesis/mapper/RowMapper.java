@@ -2,6 +2,7 @@ package raf.thesis.mapper;
 
 import java.sql.ResultSet;
 import java.util.List;
+import java.util.function.Consumer;
 
 public interface RowMapper {
     <T> T map(ResultSet rs, Class<T> clazz);
@@ -11,4 +12,24 @@ public interface RowMapper {
     <T> List<T> mapList(ResultSet rs, Class<T> clazz);
 
     <T> List<T> mapWithRelations(ResultSet rs, Class<T> clazz);
+
+    //mappers that don't report row progress ignore the listener
+    default <T> List<T> mapWithRelations(ResultSet rs, Class<T> clazz, RowListener rowListener) {
+        return mapWithRelations(rs, clazz);
+    }
+
+    //implementations may refill one instance for every row, consumer must not keep it
+    default <T> void forEachRow(ResultSet rs, Class<T> clazz, Consumer<? super T> consumer) {
+        mapList(rs, clazz).forEach(consumer);
+    }
+
+    //hands every mapped row over as soon as it is read
+    default <T> void forEachInstance(ResultSet rs, Class<T> clazz, Consumer<? super T> consumer) {
+        mapList(rs, clazz).forEach(consumer);
+    }
+
+    //hands every root object over once all of its rows are read, rows of one root have to come one after another
+    default <T> void forEachRoot(ResultSet rs, Class<T> clazz, Consumer<? super T> consumer) {
+        mapWithRelations(rs, clazz).forEach(consumer);
+    }
 }
@@ -12,6 +12,10 @@ import java.lang.reflect.Field;
 public class ColumnMetadata {
     private String columnName;
     private Field field;
+    //large object columns are excluded from default selects
+    private boolean lob;
+    //client side key assignment, null for columns without it
+    private IdGeneration idGeneration;
 
     public ColumnMetadata(String columnName, Field field) {
         this.columnName = columnName.toLowerCase();
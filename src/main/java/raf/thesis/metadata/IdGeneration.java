@@ -0,0 +1,9 @@
+package raf.thesis.metadata;
+
+import raf.thesis.metadata.annotations.IdStrategy;
+
+/**
+ * Client side key assignment of a primary key column, with defaults of {@link raf.thesis.metadata.annotations.Id} resolved.
+ */
+public record IdGeneration(IdStrategy strategy, String generator, int allocationSize, String generatorTable) {
+}
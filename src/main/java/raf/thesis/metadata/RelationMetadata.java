@@ -26,6 +26,8 @@ public class RelationMetadata {
     String foreignRelationName;
     //only for ONE-TO-ONE relations -> is the fk in my table?
     Boolean mySideKey;
+    //only for collection relations -> is the collection loaded on first access?
+    boolean lazy;
 
     public RelationMetadata(Field foreignField, String relationName, RelationType relationType, Class<?> foreignClass) {
         this.foreignField = foreignField;
@@ -52,4 +54,9 @@ public class RelationMetadata {
         this.myJoinedTableFks = myJoinedTableFks;
         this.foreignRelationName = foreignRelationName;
     }
+
+    public RelationMetadata(Field foreignField, String relationName, RelationType relationType, Class<?> foreignClass, List<String> foreignKeyNames, String joinedTableName, List<String> myJoinedTableFks, String foreignRelationName, Boolean mySideKey) {
+        this(foreignField, relationName, relationType, foreignClass, foreignKeyNames, joinedTableName, myJoinedTableFks, foreignRelationName);
+        this.mySideKey = mySideKey;
+    }
 }
@@ -16,4 +16,28 @@ public @interface Id {
      * @return {@code true} if key is generated, {@code false} if not
      */
     boolean generated() default false;
+
+    /**
+     * Strategy that assigns the key on the client before insert, when the field isn't already set.
+     * Keys known before insert don't have to be read back, which lets {@link raf.thesis.Session#insertAll(java.util.List)}
+     * send rows in batches. Can't be combined with {@link #generated()}.
+     */
+    IdStrategy strategy() default IdStrategy.NONE;
+
+    /**
+     * Name of the sequence for {@link IdStrategy#SEQUENCE}, by default table name followed by {@code _seq}.
+     * Name of the generator row for {@link IdStrategy#TABLE}, by default table name.
+     */
+    String generator() default "";
+
+    /**
+     * Number of keys reserved with a single database call by {@link IdStrategy#SEQUENCE} and {@link IdStrategy#TABLE}.
+     */
+    int allocationSize() default 50;
+
+    /**
+     * Table of {@link IdStrategy#TABLE} generators, with {@code generator_name} and {@code next_value} columns.
+     * Missing generator rows are created on first use.
+     */
+    String generatorTable() default "id_generators";
 }
@@ -0,0 +1,25 @@
+package raf.thesis.metadata.annotations;
+
+/**
+ * Strategies for assigning primary keys on the client before insert, see {@link Id#strategy()}.
+ */
+public enum IdStrategy {
+    /**
+     * Key is set by the application, or by the database when {@link Id#generated()} is {@code true}.
+     */
+    NONE,
+    /**
+     * Blocks of keys are reserved with a single call to a database sequence. The sequence has to be
+     * incremented by {@link Id#allocationSize()}, every value it returns starts a new block.
+     */
+    SEQUENCE,
+    /**
+     * Blocks of keys are reserved by raising the value kept for the generator in {@link Id#generatorTable()},
+     * which works on databases without sequences.
+     */
+    TABLE,
+    /**
+     * Time ordered UUID version 7 made without a database call, for {@code String} fields.
+     */
+    UUID_V7
+}
@@ -0,0 +1,22 @@
+package raf.thesis.metadata.annotations;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Marks a field in {@link Entity} class to be mapped to a large object ({@code BLOB} or {@code CLOB}) column.
+ * Large object columns are left out of entity selects unless they are explicitly requested through
+ * {@link raf.thesis.query.QueryBuilder#selectOnly(String...)}, and can be streamed without loading the whole value
+ * through {@link raf.thesis.Session#openStream(Object, String)} and {@link raf.thesis.Session#openReader(Object, String)}.
+ * Updates leave large object columns whose field is {@code null} unchanged, as they weren't loaded.
+ * <p>
+ * Supported field types are {@code byte[]} and {@link java.io.InputStream} for binary columns,
+ * and {@code String} and {@link java.io.Reader} for character columns. Selected {@link java.io.InputStream}
+ * and {@link java.io.Reader} fields read the value from the database on first read.
+ */
+@Retention(RetentionPolicy.RUNTIME)
+@Target(ElementType.FIELD)
+public @interface Lob {
+}
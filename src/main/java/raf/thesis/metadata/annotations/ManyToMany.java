@@ -39,4 +39,11 @@ public @interface ManyToMany {
      * column names of the related object's table.
      */
     String[] theirKey() default {};
+
+    /**
+     * Lazy collections aren't populated by queries that don't join them. Instead, they get a list bound to the
+     * {@link raf.thesis.Session} that loads the relation on first access, together with the same relation of every
+     * other object returned by the query.
+     */
+    boolean lazy() default false;
 }
@@ -23,4 +23,11 @@ public @interface OneToMany {
      * By default, foreign key column names match the primary key column names of the table of this object.
      */
     String[] foreignKey() default {};
+
+    /**
+     * Lazy collections aren't populated by queries that don't join them. Instead, they get a list bound to the
+     * {@link raf.thesis.Session} that loads the relation on first access, together with the same relation of every
+     * other object returned by the query.
+     */
+    boolean lazy() default false;
 }
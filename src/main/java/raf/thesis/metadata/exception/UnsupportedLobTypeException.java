@@ -0,0 +1,7 @@
+package raf.thesis.metadata.exception;
+
+import lombok.experimental.StandardException;
+
+@StandardException
+public class UnsupportedLobTypeException extends RuntimeException {
+}
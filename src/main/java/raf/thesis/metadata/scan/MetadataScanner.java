@@ -6,15 +6,20 @@ import org.reflections.util.ConfigurationBuilder;
 import org.reflections.util.FilterBuilder;
 import raf.thesis.metadata.ColumnMetadata;
 import raf.thesis.metadata.EntityMetadata;
+import raf.thesis.metadata.IdGeneration;
 import raf.thesis.metadata.RelationMetadata;
 import raf.thesis.metadata.RelationType;
 import raf.thesis.metadata.annotations.*;
 import raf.thesis.metadata.exception.DuplicateRelationNamesException;
 import raf.thesis.metadata.exception.ListFieldRequiredException;
 import raf.thesis.metadata.exception.RequiredFieldException;
+import raf.thesis.metadata.exception.UnsupportedIdStrategyException;
+import raf.thesis.metadata.exception.UnsupportedLobTypeException;
 import raf.thesis.metadata.exception.UnsupportedRelationException;
 import raf.thesis.metadata.storage.MetadataStorage;
 
+import java.io.InputStream;
+import java.io.Reader;
 import java.lang.reflect.Field;
 import java.lang.reflect.ParameterizedType;
 import java.lang.reflect.Type;
@@ -24,6 +29,8 @@ import java.util.List;
 import java.util.Set;
 
 public class MetadataScanner {
+    private static final Set<Class<?>> LOB_TYPES = Set.of(byte[].class, String.class, InputStream.class, Reader.class);
+    private static final Set<Class<?>> NUMERIC_ID_TYPES = Set.of(int.class, Integer.class, long.class, Long.class);
     private boolean initialized = false;
     private final List<RelationMetadata> solveForeignKeys = new ArrayList<>();
     private final List<RelationMetadata> madeRelations = new ArrayList<>();
@@ -177,6 +184,7 @@ public class MetadataScanner {
             assert ann != null;
             relationMetadata.setRelationName(!ann.relationName().isEmpty() ? ann.relationName().toLowerCase() : field.getName().toLowerCase());
             relationMetadata.setRelationType(RelationType.ONE_TO_MANY);
+            relationMetadata.setLazy(ann.lazy());
             relationMetadata.setForeignField(field);
             relationMetadata.setForeignClass(getListElementType(clazz, field, RelationType.ONE_TO_MANY));
             if (ann.foreignKey().length == 0) {
@@ -211,6 +219,7 @@ public class MetadataScanner {
             assert ann != null;
             relationMetadata.setRelationName(!ann.relationName().isEmpty() ? ann.relationName().toLowerCase() : field.getName().toLowerCase());
             relationMetadata.setRelationType(RelationType.MANY_TO_MANY);
+            relationMetadata.setLazy(ann.lazy());
             relationMetadata.setForeignField(field);
             relationMetadata.setForeignClass(getListElementType(clazz, field, RelationType.MANY_TO_MANY));
             if (ann.joinedTableName() == null) {
@@ -243,6 +252,39 @@ public class MetadataScanner {
             columnMeta.setField(field);
             meta.getColumns().put(columnMeta.getColumnName(), columnMeta);
         }
+
+        if (field.isAnnotationPresent(Lob.class)) {
+            if (!LOB_TYPES.contains(field.getType()))
+                throw new UnsupportedLobTypeException("Lob field " + field.getName() + " in " + clazz.getSimpleName() + " must be one of: byte[], String, InputStream, Reader");
+            for (var column : meta.getColumns().values()) {
+                if (column.getField().equals(field))
+                    column.setLob(true);
+            }
+        }
+
+        if (field.isAnnotationPresent(Id.class) && field.getAnnotation(Id.class).strategy() != IdStrategy.NONE) {
+            IdGeneration generation = idGeneration(field, clazz, meta);
+            for (var column : meta.getColumns().values()) {
+                if (column.getField().equals(field))
+                    column.setIdGeneration(generation);
+            }
+        }
+    }
+
+    private IdGeneration idGeneration(Field field, Class<?> clazz, EntityMetadata meta) {
+        Id ann = field.getAnnotation(Id.class);
+        String fieldName = field.getName() + " in " + clazz.getSimpleName();
+        if (ann.generated())
+            throw new UnsupportedIdStrategyException("Id field " + fieldName + " can't be generated by the database and have a strategy");
+        if (ann.allocationSize() < 1)
+            throw new UnsupportedIdStrategyException("Allocation size of id field " + fieldName + " must be positive");
+        if (ann.strategy() == IdStrategy.UUID_V7 && field.getType() != String.class)
+            throw new UnsupportedIdStrategyException("Id field " + fieldName + " with UUID_V7 strategy must be a String");
+        if (ann.strategy() != IdStrategy.UUID_V7 && !NUMERIC_ID_TYPES.contains(field.getType()))
+            throw new UnsupportedIdStrategyException("Id field " + fieldName + " with " + ann.strategy() + " strategy must be one of: int, Integer, long, Long");
+        String generator = !ann.generator().isEmpty() ? ann.generator()
+                : ann.strategy() == IdStrategy.SEQUENCE ? meta.getTableName() + "_seq" : meta.getTableName();
+        return new IdGeneration(ann.strategy(), generator, ann.allocationSize(), ann.generatorTable());
     }
 
     //extract class type from list
@@ -10,23 +10,34 @@ import raf.thesis.metadata.storage.MetadataStorage;
 import raf.thesis.query.dialect.Dialect;
 import raf.thesis.query.exceptions.EntityObjectRequiredException;
 import raf.thesis.query.exceptions.IdInRelatedObjectsCantBeNullException;
+import raf.thesis.query.exceptions.InvalidFieldPathException;
 import raf.thesis.query.exceptions.InvalidRelationPathException;
 import raf.thesis.query.exceptions.MissingIdException;
 import raf.thesis.query.tree.Literal;
 
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.io.Reader;
+import java.io.StringReader;
 import java.lang.reflect.Field;
 import java.lang.reflect.InvocationTargetException;
+import java.math.BigDecimal;
 import java.time.LocalDate;
 import java.time.LocalDateTime;
 import java.time.LocalTime;
 import java.util.*;
+import java.util.function.Function;
 
 @AllArgsConstructor
 public class DBUpdateSolver {
     public Dialect dialect;
 
     public PreparedStatementQuery generateInsert(Object obj) {
-        List<PreparedStatementQuery> queries = new ArrayList<>();
+        return generateInsert(obj, Map.of());
+    }
+
+    //foreign keys given by the caller replace columns of the same name, or are added to the insert
+    public PreparedStatementQuery generateInsert(Object obj, Map<String, Literal> foreignKeys) {
 
         EntityMetadata meta = MetadataStorage.get(obj.getClass());
         if (meta == null)
@@ -46,7 +57,7 @@ public class DBUpdateSolver {
             if (generated.containsKey(col.getField()) && generated.get(col.getField()))
                 continue;
             columnNames.add(col.getColumnName());
-            columnValues.add(makeLiteral(col.getField(), obj));
+            columnValues.add(makeColumnLiteral(col, obj));
         }
 
         //solve relations
@@ -61,10 +72,69 @@ public class DBUpdateSolver {
                 getKeyValues(relationEntity, relatedObject, columnValues);
             }
         }
+        foreignKeys.forEach((column, value) -> {
+            int index = indexOfColumn(columnNames, column);
+            if (index == -1) {
+                columnNames.add(column);
+                columnValues.add(value);
+            } else {
+                columnValues.set(index, value);
+            }
+        });
         String query = dialect instanceof Dialect.UsesInsertReturning d ? d.generateInsertQuery(columnNames, meta.getTableName(), extractKeys(meta)) : dialect.generateInsertQuery(columnNames, meta.getTableName());
         return new PreparedStatementQuery(query, columnValues);
     }
 
+    public static int indexOfColumn(List<String> columns, String column) {
+        for (int i = 0; i < columns.size(); i++) {
+            if (columns.get(i).equalsIgnoreCase(column))
+                return i;
+        }
+        return -1;
+    }
+
+    //same columns as insert, but fixed for every object: foreign keys of missing relations are kept as nulls
+    public List<String> generateBulkColumns(EntityMetadata meta) {
+        List<String> columnNames = new ArrayList<>();
+        for (var col : meta.getColumns().values()) {
+            if (!isGeneratedId(meta, col))
+                columnNames.add(col.getColumnName());
+        }
+        for (var relation : meta.getRelations()) {
+            if (ownsForeignKey(relation))
+                columnNames.addAll(relation.getForeignKeyNames());
+        }
+        return columnNames;
+    }
+
+    public List<Literal> generateBulkValues(EntityMetadata meta, Object obj) {
+        List<Literal> columnValues = new ArrayList<>();
+        for (var col : meta.getColumns().values()) {
+            if (!isGeneratedId(meta, col))
+                columnValues.add(makeColumnLiteral(col, obj));
+        }
+        for (var relation : meta.getRelations()) {
+            if (!ownsForeignKey(relation))
+                continue;
+            Object relatedObject = extractFieldValue(relation.getForeignField(), obj);
+            if (relatedObject == null)
+                relation.getForeignKeyNames().forEach(_ -> columnValues.add(new Literal.NullCnst()));
+            else
+                getKeyValues(MetadataStorage.get(relatedObject.getClass()), relatedObject, columnValues);
+        }
+        return columnValues;
+    }
+
+    private static boolean isGeneratedId(EntityMetadata meta, ColumnMetadata col) {
+        int idx = meta.getIdFields().indexOf(col.getField());
+        return idx != -1 && meta.getGeneratedId().get(idx);
+    }
+
+    public static boolean ownsForeignKey(RelationMetadata relation) {
+        return relation.getRelationType() == RelationType.MANY_TO_ONE
+                || (relation.getRelationType() == RelationType.ONE_TO_ONE && relation.getMySideKey());
+    }
+
     public List<PreparedStatementQuery> generateManyToManyInserts(Object obj) {
         List<PreparedStatementQuery> queries = new ArrayList<>();
         EntityMetadata meta = MetadataStorage.get(obj.getClass());
@@ -114,8 +184,11 @@ public class DBUpdateSolver {
             }
             //normal column
             else {
+                //large objects aren't loaded by default selects, null means the stored value is kept
+                if (col.isLob() && extractFieldValue(col.getField(), object) == null)
+                    continue;
                 columnNames.add(col.getColumnName());
-                Literal value = makeLiteral(col.getField(), object);
+                Literal value = makeColumnLiteral(col, object);
                 if (value instanceof Literal.NullCnst && ignoreNulls)
                     columnNames.removeLast();
                 else
@@ -126,6 +199,115 @@ public class DBUpdateSolver {
         return new PreparedStatementQuery(dialect.generateUpdateQuery(columnNames, meta.getTableName(), keyColumnNames), columnValues);
     }
 
+    //update of the given non key columns only
+    public PreparedStatementQuery updateColumns(Object object, List<ColumnMetadata> columns) {
+        EntityMetadata meta = MetadataStorage.get(object.getClass());
+        if (meta == null)
+            throw new EntityObjectRequiredException("Object: " + object + " is not an entity!");
+        List<String> columnNames = new ArrayList<>();
+        List<String> keyColumnNames = new ArrayList<>();
+        List<Literal> columnValues = new ArrayList<>();
+        List<Literal> keyColumnValues = new ArrayList<>();
+
+        for (var col : columns) {
+            columnNames.add(col.getColumnName());
+            columnValues.add(makeColumnLiteral(col, object));
+        }
+        for (var col : meta.getColumns().values()) {
+            if (meta.getIdFields().contains(col.getField()))
+                extractColumnNameAndValue(keyColumnNames, keyColumnValues, col, object);
+        }
+        columnValues.addAll(keyColumnValues);
+        return new PreparedStatementQuery(dialect.generateUpdateQuery(columnNames, meta.getTableName(), keyColumnNames), columnValues);
+    }
+
+    public List<Literal> keyValues(Object obj) {
+        EntityMetadata meta = MetadataStorage.get(obj.getClass());
+        if (meta == null)
+            throw new EntityObjectRequiredException("Object: " + obj + " is not an entity!");
+        List<Literal> keyValues = new ArrayList<>();
+        getKeyValues(meta, obj, keyValues);
+        return keyValues;
+    }
+
+    //types key columns of an entity are read as, so they make the same literals as key fields: primitives boxed, enums by name
+    public List<Class<?>> keyTypes(Class<?> entityClass) {
+        EntityMetadata meta = MetadataStorage.get(entityClass);
+        if (meta == null)
+            throw new EntityObjectRequiredException("Class " + entityClass.getName() + " is not an entity");
+        List<Class<?>> types = new ArrayList<>();
+        for (var key : meta.getIdFields()) {
+            Class<?> type = key.getType();
+            types.add(type.isEnum() ? String.class : primitiveTypes.getOrDefault(type, type));
+        }
+        return types;
+    }
+
+    //keys of related objects connected to the owner in the joined table of a many-to-many relation
+    public PreparedStatementQuery selectJoinedKeys(Object owner, RelationMetadata relation) {
+        return new PreparedStatementQuery(dialect.generateSelectByKeyQuery(relation.getForeignKeyNames(), relation.getJoinedTableName(),
+                relation.getMyJoinedTableFks()), keyValues(owner));
+    }
+
+    //delete statement of a cascading delete with the table it deletes from
+    public record TableDelete(String tableName, PreparedStatementQuery query) {
+    }
+
+    //rows deleted from one table, selected by a condition on the rows of its parent node
+    private static class CascadeNode {
+        final EntityMetadata meta;
+        final String tableName;
+        final String condition;
+        final Map<String, CascadeNode> children = new LinkedHashMap<>();
+
+        CascadeNode(EntityMetadata meta, String tableName, String condition) {
+            this.meta = meta;
+            this.tableName = tableName;
+            this.condition = condition;
+        }
+    }
+
+    //set based deletes of the rows reached from the root through the given relation paths, children before their parents.
+    //Every statement selects its rows with nested subqueries ending in the root's key, so nothing is loaded
+    public List<TableDelete> generateCascadeDeletes(Object root, List<String> relationPaths) {
+        EntityMetadata meta = MetadataStorage.get(root.getClass());
+        if (meta == null)
+            throw new EntityObjectRequiredException("Object: " + root + " is not an entity!");
+        CascadeNode rootNode = new CascadeNode(meta, meta.getTableName(), dialect.generateKeyCondition(extractKeys(meta)));
+        for (String path : relationPaths) {
+            CascadeNode node = rootNode;
+            for (String relationName : path.split("\\.")) {
+                if (node.meta == null)
+                    throw new InvalidRelationPathException("Path " + path + " continues after a many-to-many relation");
+                node = node.children.computeIfAbsent(relationName, childRelation(node, path));
+            }
+        }
+        List<TableDelete> deletes = new ArrayList<>();
+        addCascadeDeletes(rootNode, keyValues(root), deletes);
+        return deletes;
+    }
+
+    private Function<String, CascadeNode> childRelation(CascadeNode parent, String path) {
+        return relationName -> {
+            RelationMetadata rel = parent.meta.getRelations().stream().filter(x -> x.getRelationName().equals(relationName)).findFirst()
+                    .orElseThrow(() -> new InvalidRelationPathException("Relation " + relationName + " of path " + path + " doesn't exist in " + parent.meta.getEntityClass().getSimpleName()));
+            if (ownsForeignKey(rel))
+                throw new InvalidRelationPathException("Relation " + relationName + " of path " + path + " refers to a parent row, rows can be deleted only through collections and inverse one-to-one relations");
+            String parentKeys = dialect.generateKeySubquery(extractKeys(parent.meta), parent.tableName, parent.condition);
+            //many-to-many relations delete only rows of the joined table
+            if (rel.getRelationType() == RelationType.MANY_TO_MANY)
+                return new CascadeNode(null, rel.getJoinedTableName(), dialect.generateInSubqueryCondition(rel.getJoinedTableName(), rel.getMyJoinedTableFks(), parentKeys));
+            EntityMetadata childMeta = MetadataStorage.get(rel.getForeignClass());
+            return new CascadeNode(childMeta, childMeta.getTableName(), dialect.generateInSubqueryCondition(childMeta.getTableName(), rel.getForeignKeyNames(), parentKeys));
+        };
+    }
+
+    private void addCascadeDeletes(CascadeNode node, List<Literal> rootKeys, List<TableDelete> deletes) {
+        for (CascadeNode child : node.children.values())
+            addCascadeDeletes(child, rootKeys, deletes);
+        deletes.add(new TableDelete(node.tableName, new PreparedStatementQuery(dialect.generateDeleteWhereQuery(node.tableName, node.condition), rootKeys)));
+    }
+
     public PreparedStatementQuery deleteObject(Object obj) {
         EntityMetadata meta = MetadataStorage.get(obj.getClass());
         if (meta == null)
@@ -142,6 +324,26 @@ public class DBUpdateSolver {
         return new PreparedStatementQuery(dialect.generateDeleteQuery(keyColumnNames, meta.getTableName()), keyColumnValues);
     }
 
+    public PreparedStatementQuery selectColumn(Object obj, String fieldName) {
+        EntityMetadata meta = MetadataStorage.get(obj.getClass());
+        if (meta == null)
+            throw new EntityObjectRequiredException("Object: " + obj + " is not an entity!");
+        ColumnMetadata column = meta.getColumns().values().stream()
+                .filter(col -> col.getField().getName().equalsIgnoreCase(fieldName) || col.getColumnName().equalsIgnoreCase(fieldName))
+                .findFirst()
+                .orElseThrow(() -> new InvalidFieldPathException("Given field name " + fieldName + " doesn't exist in object: " + obj));
+        List<String> keyColumnNames = new ArrayList<>();
+        List<Literal> keyColumnValues = new ArrayList<>();
+
+        for (var col : meta.getColumns().values()) {
+            //PK field
+            if (meta.getIdFields().contains(col.getField())) {
+                extractColumnNameAndValue(keyColumnNames, keyColumnValues, col, obj);
+            }
+        }
+        return new PreparedStatementQuery(dialect.generateSelectByKeyQuery(List.of(column.getColumnName()), meta.getTableName(), keyColumnNames), keyColumnValues);
+    }
+
     public PreparedStatementQuery connect(Object obj1, Object obj2, String relationName) {
         EntityMetadata meta1 = MetadataStorage.get(obj1.getClass());
         EntityMetadata meta2 = MetadataStorage.get(obj2.getClass());
@@ -273,7 +475,7 @@ public class DBUpdateSolver {
         }
     }
 
-    private Object extractFieldValue(Field field, Object instance) {
+    public static Object extractFieldValue(Field field, Object instance) {
         try {
             return PropertyUtils.getProperty(instance, field.getName());
         } catch (IllegalAccessException | InvocationTargetException | NoSuchMethodException e) {
@@ -281,11 +483,34 @@ public class DBUpdateSolver {
         }
     }
 
+    //large object columns are bound as streams, so drivers don't have to hold the whole value
+    private Literal makeColumnLiteral(ColumnMetadata col, Object instance) {
+        Object value = extractFieldValue(col.getField(), instance);
+        if (!col.isLob() || value == null)
+            return makeLiteral(value);
+        return switch (value) {
+            case byte[] bytes -> new Literal.BinaryStreamCnst(new ByteArrayInputStream(bytes));
+            case InputStream stream -> new Literal.BinaryStreamCnst(stream);
+            case String str -> new Literal.CharacterStreamCnst(new StringReader(str));
+            case Reader reader -> new Literal.CharacterStreamCnst(reader);
+            default -> throw new IllegalArgumentException("Unsupported large object type: " + value.getClass());
+        };
+    }
+
     private Literal makeLiteral(Field field, Object instance) {
         return makeLiteral(extractFieldValue(field, instance));
     }
 
-    private Literal makeLiteral(Object obj) {
+    private static final Map<Class<?>, Class<?>> primitiveTypes = Map.of(
+            boolean.class, Boolean.class,
+            byte.class, Byte.class,
+            short.class, Short.class,
+            int.class, Integer.class,
+            long.class, Long.class,
+            float.class, Float.class,
+            double.class, Double.class);
+
+    public static Literal makeLiteral(Object obj) {
         return switch (obj) {
             case null -> new Literal.NullCnst();
 
@@ -296,11 +521,13 @@ public class DBUpdateSolver {
             case Integer i -> new Literal.LongCnst(i.longValue());
             case Short s -> new Literal.LongCnst(s.longValue());
             case Byte b -> new Literal.LongCnst(b.longValue());
+            case BigDecimal d -> new Literal.DecimalCnst(d);
 
             case Boolean bool -> new Literal.BoolCnst(bool);
 
             case String str -> new Literal.StringCnst(str);
             case Enum<?> e -> new Literal.StringCnst(e.name());
+            case UUID uuid -> new Literal.UuidCnst(uuid);
 
             case LocalDate date -> new Literal.DateCnst(date);
             case LocalDateTime dateTime -> new Literal.DateTimeCnst(dateTime);
@@ -0,0 +1,14 @@
+package raf.thesis.query;
+
+/**
+ * Enum for relation fetch strategy specification
+ * <ul>
+ *     <li>{@code JOIN} - relation is fetched in the main query with a {@link Join#LEFT} join</li>
+ *     <li>{@code SELECT_IN} - relation is fetched with an additional query, matching already loaded parents by primary keys</li>
+ *     <li>{@code SUBSELECT} - relation is fetched with an additional query, matching parents with a subquery repeating the main query conditions</li>
+ *     <li>{@code JSON} - collection relation is aggregated into a JSON array column of the main query, keeping one row per parent</li>
+ * </ul>
+ */
+public enum FetchMode {
+    JOIN, SELECT_IN, SUBSELECT, JSON
+}
@@ -0,0 +1,15 @@
+package raf.thesis.query;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+import java.util.List;
+
+/**
+ * Single page of query results together with the total number of results matched by the query.
+ */
+@Getter@AllArgsConstructor
+public class Page<T> {
+    private final List<T> content;
+    private final long total;
+}
@@ -5,10 +5,31 @@ import lombok.Getter;
 import lombok.Setter;
 import raf.thesis.query.tree.Literal;
 
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
 import java.util.List;
 
 @Getter@Setter@AllArgsConstructor
 public class PreparedStatementQuery {
     String query;
     List<Literal> arguments;
+
+    public static void bindLiteral(PreparedStatement ps, int idx, Literal lit) throws SQLException {
+        switch (lit) {
+            case Literal.DoubleCnst d -> ps.setDouble(idx, d.x());
+            case Literal.LongCnst l -> ps.setLong(idx, l.x());
+            case Literal.DecimalCnst d -> ps.setBigDecimal(idx, d.x());
+            case Literal.StringCnst s -> ps.setString(idx, s.x());
+            case Literal.BoolCnst b -> ps.setBoolean(idx, b.x());
+            case Literal.DateCnst d -> ps.setDate(idx, java.sql.Date.valueOf(d.x()));
+            case Literal.DateTimeCnst dt -> ps.setTimestamp(idx, java.sql.Timestamp.valueOf(dt.x()));
+            case Literal.TimeCnst t -> ps.setTime(idx, java.sql.Time.valueOf(t.x()));
+            case Literal.UuidCnst u -> ps.setObject(idx, u.x());
+            case Literal.BinaryStreamCnst b -> ps.setBinaryStream(idx, b.x());
+            case Literal.CharacterStreamCnst c -> ps.setCharacterStream(idx, c.x());
+            case Literal.NullCnst _ -> ps.setNull(idx, java.sql.Types.NULL);
+
+            default -> throw new IllegalArgumentException("Unsupported literal: " + lit.getClass());
+        }
+    }
 }
@@ -1,13 +1,16 @@
 package raf.thesis.query;
 
+import raf.thesis.metadata.ColumnMetadata;
 import raf.thesis.metadata.EntityMetadata;
 import raf.thesis.metadata.RelationMetadata;
 import raf.thesis.metadata.RelationType;
 import raf.thesis.metadata.storage.MetadataStorage;
 import raf.thesis.query.dialect.Dialect;
+import raf.thesis.query.exceptions.InvalidFieldPathException;
 import raf.thesis.query.exceptions.InvalidRelationPathException;
 import raf.thesis.query.tree.*;
 
+import java.lang.reflect.Field;
 import java.util.*;
 import java.util.stream.Stream;
 
@@ -24,12 +27,37 @@ import java.util.stream.Stream;
  * allowing the composition of complex queries.
  */
 public class QueryBuilder {
+    /**
+     * Column alias under which {@link QueryBuilder#buildWithTotalCount} returns the total number of matched rows.
+     */
+    public static final String TOTAL_COUNT_ALIAS = "%total";
+
+    /**
+     * Prefix of column aliases holding relations fetched with {@link FetchMode#JSON}, followed by the relation path.
+     */
+    public static final String JSON_RELATION_PREFIX = "%json:";
+
     protected final SelectNode rootSelectNode;
 
     private final Set<String> joinTables = new HashSet<>();
 
+    //relation metadata of every joined relation path in join order
+    private final Map<String, RelationMetadata> joinedRelations = new LinkedHashMap<>();
+
+    //relation paths fetched with additional queries after the main one, in fetch order
+    private final Map<String, FetchMode> deferredFetches = new LinkedHashMap<>();
+
+    //relation paths aggregated into JSON columns of the main query
+    private final Map<String, JsonArrayNode> jsonFetches = new LinkedHashMap<>();
+
+    //table alias -> selected column names, null if all columns are selected
+    private Map<String, Set<String>> projection;
+
     private boolean pdoQuery = false;
 
+    //count query whose select clause lists distinct root keys, counted by a wrapping query
+    private boolean countsDistinctRows = false;
+
     /**
      * Sets the root entity of the {@code QueryBuilder} to specify the type of object the query will return.
      *
@@ -56,6 +84,42 @@ public class QueryBuilder {
         return new QueryBuilder(sn, Stream.concat(Stream.of(a1), Stream.of(columns)).toList());
     }
 
+    /**
+     * Constructs a {@code QueryBuilder} that loads a relation of the given owner objects in one query.
+     * Owners are returned with only their primary keys set and the relation populated, ordered by the related
+     * objects' primary keys. Owners without related objects aren't returned.
+     *
+     * @param owner class of the owner entities
+     * @param relationName name of the relation to load
+     * @param owners owner objects with set primary keys, must not be empty
+     * @return a new {@code QueryBuilder} instance selecting the relation of the given owners
+     */
+    public static QueryBuilder selectRelation(Class<?> owner, String relationName, Collection<?> owners){
+        if(owners.isEmpty())
+            throw new IllegalArgumentException("Owners of the relation " + relationName + " must be given");
+        return relationQuery(owner, relationName, keyCondition(MetadataStorage.get(owner), "%root", owners));
+    }
+
+    /**
+     * Builds a query returning owners matched by the given condition, with only primary keys selected and the relation populated.
+     */
+    private static QueryBuilder relationQuery(Class<?> owner, String relationName, Expression ownerCondition){
+        QueryBuilder qb = select(owner).join(relationName);
+        RelationMetadata relation = qb.joinedRelations.get(relationName);
+        //owners are needed only to attach related objects to them
+        EntityMetadata related = MetadataStorage.get(relation.getForeignClass());
+        Set<String> relatedColumns = new HashSet<>();
+        related.getColumns().values().stream().filter(col -> !col.isLob()).forEach(col -> relatedColumns.add(col.getColumnName()));
+        qb.projection = new HashMap<>(Map.of(relationName, relatedColumns));
+        qb.rootSelectNode.setSelectFieldNodes(new ArrayList<>());
+        qb.handleRootColumns(owner);
+        qb.handleJoinedTableColumns(relationName);
+        qb.where(ownerCondition);
+        List<OrderByNode> ordering = qb.extractKeys(related).stream().map(key -> new OrderByNode(new FieldNode(key, relationName), Ordering.ASC)).toList();
+        qb.rootSelectNode.setOrderByNodes(ordering);
+        return qb;
+    }
+
     /**
      * Constructs a {@link SubQueryBuilder} for making subquery expressions.
      *
@@ -130,6 +194,101 @@ public class QueryBuilder {
         return this;
     }
 
+    /**
+     * Specifies which relations should be populated in the returned objects and how they are fetched.
+     * {@link FetchMode#JOIN} joins the relation with a {@link Join#LEFT} join, {@link FetchMode#JSON} aggregates
+     * a collection relation into a single column, while other modes load it with one additional query per
+     * relation path. Non-join modes avoid row multiplication of joined collections.
+     * Parent path of the relation must be fetched before, for {@link FetchMode#JSON} it must be joined.
+     *
+     * @param relationPath dot-separated relation path from the root entity
+     * @param fetchMode the fetch strategy to use {@link FetchMode}
+     * @return this query builder with the relation fetch applied
+     */
+    public QueryBuilder fetch(String relationPath, FetchMode fetchMode){
+        if(pdoQuery)
+            throw new IllegalStateException("Fetching relations is supported only for entity queries");
+        if(fetchMode == FetchMode.JOIN)
+            return join(relationPath, Join.LEFT);
+        int index = relationPath.lastIndexOf(".");
+        String parentPath = index == -1 ? rootSelectNode.getBaseAlias() : relationPath.substring(0, index);
+        if(fetchMode == FetchMode.JSON){
+            if(index != -1 && !joinedRelations.containsKey(parentPath))
+                throw new InvalidRelationPathException("Parent path of " + relationPath + " must be joined for JSON fetching");
+            JsonArrayNode node = generateJsonArrayNode(relationPath, parentPath);
+            jsonFetches.put(relationPath, node);
+            rootSelectNode.getSelectFieldNodes().add(node);
+            return this;
+        }
+        if(index != -1 && !joinedRelations.containsKey(parentPath) && !deferredFetches.containsKey(parentPath))
+            throw new InvalidRelationPathException("Parent path of " + relationPath + " isn't fetched");
+        findInstanceType(relationPath, rootSelectNode.getRoot());
+        deferredFetches.put(relationPath, fetchMode);
+        return this;
+    }
+
+    /**
+     * Limits the last joined {@code ONE_TO_MANY} relation to the first rows per parent object, in the given order.
+     * Related rows are numbered with {@code ROW_NUMBER() OVER (PARTITION BY ...)} in a derived table, so only
+     * the kept rows are returned. Ties are broken by related objects' primary keys.
+     * Use {@link ConditionBuilder#asc} and {@link ConditionBuilder#desc} static functions to create ordering nodes.
+     *
+     * @param limit maximum number of related objects per parent
+     * @param orderByNode required primary ordering node of related objects
+     * @param others optional additional ordering nodes
+     * @return this query builder with the per-parent limit applied
+     */
+    public QueryBuilder limitPerParent(int limit, OrderByNode orderByNode, OrderByNode... others){
+        if(joinedRelations.isEmpty())
+            throw new IllegalStateException("Limit per parent requires a joined relation");
+        String relationPath = new ArrayList<>(joinedRelations.keySet()).getLast();
+        RelationMetadata relation = joinedRelations.get(relationPath);
+        if(relation.getRelationType() != RelationType.ONE_TO_MANY)
+            throw new IllegalStateException("Limit per parent is supported only for one-to-many relations, not for " + relationPath);
+        JoinNode joinNode = rootSelectNode.getJoinNodes().stream()
+                .filter(join -> join.getJoiningTableAlias().equals(relationPath))
+                .findFirst()
+                .orElseThrow();
+        List<OrderByNode> ordering = new ArrayList<>(Stream.concat(Stream.of(orderByNode), Stream.of(others)).toList());
+        for(String key : extractKeys(MetadataStorage.get(relation.getForeignClass())))
+            ordering.add(new OrderByNode(new FieldNode(key, relationPath), Ordering.ASC));
+        joinNode.setRowLimit(limit);
+        joinNode.setRowOrder(ordering);
+        return this;
+    }
+
+    /**
+     * Restricts selected columns of the root and joined entities to the given fields.
+     * Primary key columns of every entity are always selected, as the mapper needs them to build the object graph,
+     * while the fields that are not listed stay unset in the returned objects.
+     * Entities on joined relation paths without listed fields are returned with their primary keys only.
+     *
+     * @param fieldPaths dot-separated relation paths to fields, using field or column names
+     * @return this query builder with the restricted {@code SELECT} clause
+     */
+    public QueryBuilder selectOnly(String... fieldPaths){
+        if(pdoQuery)
+            throw new IllegalStateException("Projections are supported only for entity queries");
+        projection = new HashMap<>();
+        for(String fieldPath : fieldPaths){
+            int index = fieldPath.lastIndexOf(".");
+            String alias = index == -1 ? rootSelectNode.getBaseAlias() : fieldPath.substring(0, index);
+            String fieldName = fieldPath.substring(index + 1);
+            EntityMetadata metadata = MetadataStorage.get(findInstanceType(alias, rootSelectNode.getRoot()));
+            ColumnMetadata column = metadata.getColumns().values().stream()
+                    .filter(col -> col.getField().getName().equalsIgnoreCase(fieldName) || col.getColumnName().equalsIgnoreCase(fieldName))
+                    .findFirst()
+                    .orElseThrow(() -> new InvalidFieldPathException("Invalid field path: " + fieldPath));
+            projection.computeIfAbsent(alias, _ -> new HashSet<>()).add(column.getColumnName());
+        }
+        //rebuild select clause for already joined tables
+        rootSelectNode.setSelectFieldNodes(new ArrayList<>());
+        handleRootColumns(rootSelectNode.getRoot());
+        joinedRelations.keySet().forEach(this::handleJoinedTableColumns);
+        rootSelectNode.getSelectFieldNodes().addAll(jsonFetches.values());
+        return this;
+    }
+
     /**
      * Specifies the {@code WHERE} clause for the query.
      *
@@ -209,7 +368,491 @@ public class QueryBuilder {
      * @return built SQL query
      */
     public String build(Dialect dialect){
-        return generateSelectClause(dialect) + "\n" + generateJoinClauses(dialect) + generateWhereClause(dialect) + generateGroupByClause(dialect) + generateHavingClause(dialect) + generateOrderByClause(dialect) + generateLimitClause(dialect) + ";";
+        String query = generateSelectClause(dialect) + "\n" + generateJoinClauses(dialect) + generateWhereClause(dialect) + generateGroupByClause(dialect) + generateHavingClause(dialect) + generateOrderByClause(dialect) + generateLimitClause(dialect);
+        return countsDistinctRows ? dialect.generateCountQuery(query) : query + ";";
+    }
+
+    /**
+     * Generates SQL query from builder like {@link #build(Dialect)}, together with the values of {@link Parameter}
+     * placeholders in its columns and conditions, in order of the placeholders.
+     *
+     * @param dialect dialect used for query generation
+     * @return built SQL query with arguments to bind
+     */
+    public PreparedStatementQuery buildPrepared(Dialect dialect){
+        List<Literal> arguments = new ArrayList<>();
+        rootSelectNode.getSelectFieldNodes().forEach(column -> collectParameters(column, arguments));
+        if(rootSelectNode.getWhereNode() != null)
+            collectParameters(rootSelectNode.getWhereNode().getExpression(), arguments);
+        if(rootSelectNode.getHavingNode() != null)
+            collectParameters(rootSelectNode.getHavingNode().getExpression(), arguments);
+        return new PreparedStatementQuery(build(dialect), arguments);
+    }
+
+    /**
+     * Generates SQL query from builder with an additional {@code COUNT(*) OVER ()} column aliased as
+     * {@link QueryBuilder#TOTAL_COUNT_ALIAS}, holding the number of matched rows before {@code LIMIT} and {@code OFFSET}.
+     *
+     * @param dialect dialect used for query generation, must support window functions
+     * @return built SQL query
+     */
+    public String buildWithTotalCount(Dialect.SupportsWindowFunctions dialect){
+        List<Expression> columns = rootSelectNode.getSelectFieldNodes();
+        List<Expression> withTotal = new ArrayList<>(columns);
+        withTotal.add(new TotalCountNode(TOTAL_COUNT_ALIAS));
+        rootSelectNode.setSelectFieldNodes(withTotal);
+        try {
+            return build(dialect);
+        } finally {
+            rootSelectNode.setSelectFieldNodes(columns);
+        }
+    }
+
+    /**
+     * Derives a query that counts the root entities matched by this query.
+     * Select columns, {@code ORDER BY}, {@code LIMIT} and {@code OFFSET} are dropped, together with
+     * {@link Join#LEFT} joins no condition refers to, as they can't change which root rows match.
+     * Root primary keys are counted with {@code DISTINCT} only if a remaining join can multiply root rows,
+     * composite keys are then selected with {@code SELECT DISTINCT} in a derived table counted with {@code COUNT(*)}.
+     *
+     * @return a new {@code QueryBuilder} returning the count in a single {@code total} column
+     */
+    public QueryBuilder toCountQuery(){
+        if(pdoQuery || rootSelectNode.getGroupByNode() != null || rootSelectNode.getHavingNode() != null)
+            throw new IllegalStateException("Count queries can only be derived from entity queries without GROUP BY and HAVING clauses");
+        SelectNode countNode = new SelectNode(rootSelectNode.getRoot(), rootSelectNode.getBaseTableName());
+        countNode.setWhereNode(rootSelectNode.getWhereNode());
+        List<JoinNode> keptJoins = requiredJoins();
+        countNode.addJoinNode(keptJoins);
+
+        boolean multipliesRows = multipliesRootRows(keptJoins);
+
+        List<String> keys = extractKeys(MetadataStorage.get(rootSelectNode.getRoot()));
+        if(multipliesRows && keys.size() > 1){
+            //COUNT(DISTINCT (a, b)) isn't portable, composite keys are made distinct in a derived table and counted there
+            countNode.setDistinct(true);
+            QueryBuilder countQuery = new QueryBuilder(countNode, keys.stream()
+                    .map(key -> new AliasedColumn(new FieldNode(key, rootSelectNode.getBaseAlias()), key))
+                    .toList());
+            countQuery.countsDistinctRows = true;
+            return countQuery;
+        }
+        return new QueryBuilder(countNode, List.of(new AliasedColumn(new FunctionNode(new FieldNode(keys.getFirst(), rootSelectNode.getBaseAlias()), FunctionCode.COUNT, multipliesRows), "total")));
+    }
+
+    /**
+     * Derives a query returning the smallest and the largest value of the given root column among the rows
+     * matched by this query, in {@code low} and {@code high} columns. Used for splitting the query into ranges.
+     *
+     * @param splitField root entity field or column with integral values
+     * @return a new {@code QueryBuilder} returning the value range in a single row
+     */
+    public QueryBuilder toRangeQuery(String splitField){
+        checkSplittable();
+        FieldNode split = new FieldNode(resolveSplitColumn(splitField).getColumnName(), rootSelectNode.getBaseAlias());
+        SelectNode rangeNode = new SelectNode(rootSelectNode.getRoot(), rootSelectNode.getBaseTableName());
+        rangeNode.setWhereNode(rootSelectNode.getWhereNode());
+        rangeNode.addJoinNode(requiredJoins());
+        return new QueryBuilder(rangeNode, List.of(
+                new AliasedColumn(new FunctionNode(split, FunctionCode.MIN, false), "low"),
+                new AliasedColumn(new FunctionNode(split, FunctionCode.MAX, false), "high")));
+    }
+
+    /**
+     * Generates SQL query from builder, restricted to the rows whose split column value is in the range
+     * {@code [from, to)}. Missing bounds leave the range open, rows with {@code NULL} values are kept
+     * only if the lower bound is missing. Entity queries with collection joins are additionally ordered by
+     * root primary keys, so rows of one root entity come one after another.
+     *
+     * @param dialect dialect used for query generation
+     * @param splitField root entity field or column with integral values
+     * @param from inclusive lower bound, {@code null} if unbounded
+     * @param to exclusive upper bound, {@code null} if unbounded
+     * @return built SQL query
+     */
+    public String buildRange(Dialect dialect, String splitField, Long from, Long to){
+        checkSplittable();
+        FieldNode split = new FieldNode(resolveSplitColumn(splitField).getColumnName(), rootSelectNode.getBaseAlias());
+        WhereNode original = rootSelectNode.getWhereNode();
+        Expression range = null;
+        if(from != null)
+            range = new UnaryOp(split.lt(new Literal.LongCnst(from)), UnaryOpCode.NOT);
+        if(to != null){
+            Expression upper = split.lt(new Literal.LongCnst(to));
+            if(from == null)
+                upper = new BinaryOp(upper, split.isNull(), BinaryOpCode.OR);
+            range = range == null ? upper : new BinaryOp(range, upper, BinaryOpCode.AND);
+        }
+        if(range != null)
+            rootSelectNode.setWhereNode(new WhereNode(original == null ? range : new BinaryOp(original.getExpression(), range, BinaryOpCode.AND)));
+        List<OrderByNode> originalOrder = rootSelectNode.getOrderByNodes();
+        if(!pdoQuery && multipliesRootRows(rootSelectNode.getJoinNodes())){
+            List<OrderByNode> grouped = originalOrder == null ? new ArrayList<>() : new ArrayList<>(originalOrder);
+            for(String key : extractKeys(MetadataStorage.get(rootSelectNode.getRoot())))
+                grouped.add(new OrderByNode(new FieldNode(key, rootSelectNode.getBaseAlias()), Ordering.ASC));
+            rootSelectNode.setOrderByNodes(grouped);
+        }
+        try {
+            return build(dialect);
+        } finally {
+            rootSelectNode.setWhereNode(original);
+            rootSelectNode.setOrderByNodes(originalOrder);
+        }
+    }
+
+    /**
+     * Returns the default split column for range queries, the primary key of the root entity.
+     *
+     * @return primary key column name
+     * @throws IllegalStateException if the primary key is composite or doesn't have integral values
+     */
+    public String defaultSplitField(){
+        EntityMetadata metadata = MetadataStorage.get(rootSelectNode.getRoot());
+        List<String> keys = extractKeys(metadata);
+        if(keys.size() != 1)
+            throw new IllegalStateException("Composite primary keys can't be used for splitting, specify a split column");
+        return resolveSplitColumn(keys.getFirst()).getColumnName();
+    }
+
+    /**
+     * Checks if the query returns {@link raf.thesis.metadata.annotations.PDO} objects instead of entities.
+     *
+     * @return {@code true} if the query is constructed with custom aliased columns
+     */
+    public boolean isPdoQuery(){
+        return pdoQuery;
+    }
+
+    private void checkSplittable(){
+        if(rootSelectNode.getLimitNode() != null || rootSelectNode.getGroupByNode() != null || rootSelectNode.getHavingNode() != null)
+            throw new IllegalStateException("Queries with LIMIT, OFFSET, GROUP BY or HAVING clauses can't be split into ranges");
+    }
+
+    private ColumnMetadata resolveSplitColumn(String splitField){
+        EntityMetadata metadata = MetadataStorage.get(rootSelectNode.getRoot());
+        ColumnMetadata column = metadata.getColumns().values().stream()
+                .filter(col -> col.getField().getName().equalsIgnoreCase(splitField) || col.getColumnName().equalsIgnoreCase(splitField))
+                .findFirst()
+                .orElseThrow(() -> new InvalidFieldPathException("Split column " + splitField + " doesn't exist in " + rootSelectNode.getRoot().getSimpleName()));
+        Class<?> type = column.getField().getType();
+        if(!List.of(int.class, long.class, short.class, Integer.class, Long.class, Short.class).contains(type))
+            throw new IllegalStateException("Split column " + splitField + " must have integral values");
+        return column;
+    }
+
+    /**
+     * Generates SQL query that checks if this query returns any rows, without fetching them.
+     * Select columns, {@code ORDER BY} and joins that can't filter rows are dropped, while {@code OFFSET}
+     * and {@code LIMIT} are kept and the limit is lowered to one row.
+     * The query returns a single row with value {@code 1} in the first column if any row matches.
+     *
+     * @param dialect dialect used for query generation
+     * @return built SQL query
+     */
+    public String buildExists(Dialect dialect){
+        SelectNode existsNode = new SelectNode(rootSelectNode.getRoot(), rootSelectNode.getBaseTableName());
+        existsNode.setWhereNode(rootSelectNode.getWhereNode());
+        existsNode.setGroupByNode(rootSelectNode.getGroupByNode());
+        existsNode.setHavingNode(rootSelectNode.getHavingNode());
+        existsNode.addJoinNode(requiredJoins());
+        QueryBuilder existsQuery = new QueryBuilder(existsNode, List.of(new AliasedColumn(new Literal.LongCnst(1), "found")));
+        LimitNode original = rootSelectNode.getLimitNode();
+        if(original != null){
+            //rows skipped by the offset don't count, so the limited query itself is cut to its first row
+            LimitNode firstRow = new LimitNode();
+            firstRow.setOffset(original.getOffset());
+            firstRow.setLimit(original.getLimit() != null ? Math.min(original.getLimit(), 1) : 1);
+            existsNode.setLimitNode(firstRow);
+            return existsQuery.build(dialect);
+        }
+        String query = existsQuery.build(dialect);
+        //remove ; at the end of build
+        return dialect.generateExistsQuery(query.substring(0, query.length() - 1));
+    }
+
+    /**
+     * Generates SQL query from builder that returns at most the first row of the result.
+     * The offset is kept, while the limit is lowered to one row.
+     *
+     * @param dialect dialect used for query generation
+     * @return built SQL query
+     */
+    public String buildFirstRow(Dialect dialect){
+        LimitNode original = rootSelectNode.getLimitNode();
+        LimitNode firstRow = new LimitNode();
+        firstRow.setOffset(original != null ? original.getOffset() : null);
+        firstRow.setLimit(original != null && original.getLimit() != null ? Math.min(original.getLimit(), 1) : 1);
+        rootSelectNode.setLimitNode(firstRow);
+        try {
+            return build(dialect);
+        } finally {
+            rootSelectNode.setLimitNode(original);
+        }
+    }
+
+    /**
+     * Generates SQL query from builder whose rows of the same entity come one after another.
+     * Primary keys of the root entity and of every joined relation, in join order, are appended to
+     * {@code ORDER BY} as tie-breakers, so rows stay grouped as long as the query's own ordering only
+     * refers to the root entity and to-one relations.
+     *
+     * @param dialect dialect used for query generation
+     * @return built SQL query
+     */
+    public String buildGroupedByEntity(Dialect dialect){
+        List<OrderByNode> original = rootSelectNode.getOrderByNodes();
+        List<OrderByNode> grouped = new ArrayList<>();
+        if(original != null)
+            grouped.addAll(original);
+        for(String key : extractKeys(MetadataStorage.get(rootSelectNode.getRoot())))
+            grouped.add(new OrderByNode(new FieldNode(key, rootSelectNode.getBaseAlias()), Ordering.ASC));
+        for(var relation : joinedRelations.entrySet()){
+            for(String key : extractKeys(MetadataStorage.get(relation.getValue().getForeignClass())))
+                grouped.add(new OrderByNode(new FieldNode(key, relation.getKey()), Ordering.ASC));
+        }
+        rootSelectNode.setOrderByNodes(grouped);
+        try {
+            return build(dialect);
+        } finally {
+            rootSelectNode.setOrderByNodes(original);
+        }
+    }
+
+    //joined tables without relation metadata are many-to-many joined tables
+    private boolean multipliesRootRows(List<JoinNode> joins){
+        return joins.stream()
+                .map(join -> joinedRelations.get(join.getJoiningTableAlias()))
+                .anyMatch(rel -> rel == null || rel.getRelationType() == RelationType.ONE_TO_MANY || rel.getRelationType() == RelationType.MANY_TO_MANY);
+    }
+
+    /**
+     * Finds joins that can change which root rows match the query: non-{@link Join#LEFT} joins,
+     * joins used in {@code WHERE}, {@code GROUP BY} and {@code HAVING} clauses and joins they depend on.
+     */
+    private List<JoinNode> requiredJoins(){
+        Set<String> required = new HashSet<>();
+        if(rootSelectNode.getWhereNode() != null)
+            collectTableAliases(rootSelectNode.getWhereNode().getExpression(), required);
+        if(rootSelectNode.getGroupByNode() != null)
+            rootSelectNode.getGroupByNode().getExpressions().forEach(exp -> collectTableAliases(exp, required));
+        if(rootSelectNode.getHavingNode() != null)
+            collectTableAliases(rootSelectNode.getHavingNode().getExpression(), required);
+        List<JoinNode> joins = rootSelectNode.getJoinNodes();
+        for(var join : joins){
+            if(join.getJoinType() != Join.LEFT)
+                required.add(join.getJoiningTableAlias());
+        }
+        //go in reverse so every kept join also keeps the table it joins on
+        for(int i = joins.size() - 1; i >= 0; i--){
+            if(required.contains(joins.get(i).getJoiningTableAlias()))
+                required.add(joins.get(i).getForeignTableAlias());
+        }
+        return joins.stream().filter(join -> required.contains(join.getJoiningTableAlias())).toList();
+    }
+
+    /**
+     * Checks if any joined relation is a {@code ONE_TO_MANY} or {@code MANY_TO_MANY} relation,
+     * meaning that the query may return multiple rows for a single root entity.
+     *
+     * @return {@code true} if a collection relation is joined
+     */
+    public boolean joinsCollections(){
+        return joinedRelations.values().stream()
+                .anyMatch(rel -> rel.getRelationType() == RelationType.ONE_TO_MANY || rel.getRelationType() == RelationType.MANY_TO_MANY);
+    }
+
+    /**
+     * Checks if the query skips rows with {@code OFFSET}.
+     *
+     * @return {@code true} if offset is specified
+     */
+    public boolean hasOffset(){
+        return rootSelectNode.getLimitNode() != null && rootSelectNode.getLimitNode().getOffset() != null;
+    }
+
+    /**
+     * Returns relation paths joined in this query, in join order.
+     *
+     * @return set of dot-separated relation paths
+     */
+    public Set<String> joinedRelationPaths(){
+        return Collections.unmodifiableSet(joinedRelations.keySet());
+    }
+
+    /**
+     * Returns relation paths fetched with additional queries, parent paths always come before their children.
+     *
+     * @return set of dot-separated relation paths
+     */
+    public Set<String> deferredFetchPaths(){
+        return Collections.unmodifiableSet(deferredFetches.keySet());
+    }
+
+    /**
+     * Checks if the additional query for the given deferred fetch path matches loaded parents by their primary keys.
+     * Otherwise, parents are matched by a subquery and the query doesn't depend on loaded parents.
+     *
+     * @param relationPath deferred fetch path
+     * @return {@code true} if parents are matched by keys
+     */
+    public boolean fetchesByKeys(String relationPath){
+        FetchMode mode = deferredFetches.get(relationPath);
+        if(mode == null)
+            throw new InvalidRelationPathException("Relation path " + relationPath + " isn't fetched with an additional query");
+        int index = relationPath.lastIndexOf(".");
+        String parentPath = index == -1 ? rootSelectNode.getBaseAlias() : relationPath.substring(0, index);
+        Class<?> parentClass = findInstanceType(parentPath, rootSelectNode.getRoot());
+        return mode == FetchMode.SELECT_IN || extractKeys(MetadataStorage.get(parentClass)).size() > 1 || rootSelectNode.getLimitNode() != null;
+    }
+
+    /**
+     * Constructs the additional query that loads the relation on the given deferred fetch path.
+     * {@link FetchMode#SUBSELECT} matches parents by repeating this query's conditions in a subquery,
+     * it falls back to matching loaded parent keys for limited queries and parents with composite keys.
+     *
+     * @param relationPath deferred fetch path
+     * @param parents loaded objects on the parent path, must not be empty
+     * @return a new {@code QueryBuilder} instance returning parents with the relation populated
+     */
+    public QueryBuilder fetchQuery(String relationPath, Collection<?> parents){
+        int index = relationPath.lastIndexOf(".");
+        String parentPath = index == -1 ? rootSelectNode.getBaseAlias() : relationPath.substring(0, index);
+        String relationName = relationPath.substring(index + 1);
+        Class<?> parentClass = findInstanceType(parentPath, rootSelectNode.getRoot());
+        List<String> parentKeys = extractKeys(MetadataStorage.get(parentClass));
+        if(fetchesByKeys(relationPath))
+            return selectRelation(parentClass, relationName, parents);
+
+        SubQueryBuilder parentQuery = new SubQueryBuilder(rootSelectNode.getRoot(), List.of(new FieldNode(parentKeys.getFirst(), parentPath)));
+        List<JoinNode> joins = requiredJoins();
+        parentQuery.rootSelectNode.addJoinNode(joins);
+        parentQuery.rootSelectNode.setWhereNode(rootSelectNode.getWhereNode());
+        Set<String> joined = new HashSet<>();
+        joins.forEach(join -> joined.add(join.getJoiningTableAlias()));
+        ((QueryBuilder) parentQuery).joinTables.addAll(joined);
+        //parent path may be fetched with additional queries, so it has to be joined for the subquery
+        if(index != -1){
+            String[] segments = parentPath.split("\\.");
+            for(int i = 1; i <= segments.length; i++){
+                String prefix = String.join(".", Arrays.copyOfRange(segments, 0, i));
+                if(!joined.contains(prefix))
+                    parentQuery.join(prefix);
+            }
+        }
+        return relationQuery(parentClass, relationName, new FieldNode(parentKeys.getFirst(), rootSelectNode.getBaseAlias()).in(parentQuery));
+    }
+
+    /**
+     * Returns relation paths aggregated into JSON columns of the main query.
+     *
+     * @return set of dot-separated relation paths
+     */
+    public Set<String> jsonFetchPaths(){
+        return Collections.unmodifiableSet(jsonFetches.keySet());
+    }
+
+    /**
+     * Creates the select AST's {@link JsonArrayNode} aggregating the collection relation on the given path.
+     */
+    private JsonArrayNode generateJsonArrayNode(String relationPath, String parentPath){
+        Class<?> parentClass = findInstanceType(parentPath, rootSelectNode.getRoot());
+        EntityMetadata parentMetadata = MetadataStorage.get(parentClass);
+        String relationName = relationPath.substring(relationPath.lastIndexOf(".") + 1);
+        RelationMetadata relation = parentMetadata.getRelations().stream()
+                .filter(rel -> rel.getRelationName().equals(relationName))
+                .findFirst()
+                .orElseThrow(() -> new InvalidRelationPathException(relationPath));
+        if(relation.getRelationType() != RelationType.ONE_TO_MANY && relation.getRelationType() != RelationType.MANY_TO_MANY)
+            throw new InvalidRelationPathException("Only collection relations can be fetched as JSON: " + relationPath);
+        EntityMetadata related = MetadataStorage.get(relation.getForeignClass());
+        List<String> columns = related.getColumns().values().stream().filter(col -> !col.isLob()).map(ColumnMetadata::getColumnName).toList();
+        List<String> relatedKeys = extractKeys(related);
+        String alias = JSON_RELATION_PREFIX + rootSelectNode.getBaseAlias() + "." + relationPath;
+        if(relation.getRelationType() == RelationType.ONE_TO_MANY)
+            return new JsonArrayNode(alias, related.getTableName(), columns, relatedKeys, null,
+                    JsonArrayNode.JSON_TABLE_ALIAS, relation.getForeignKeyNames(), parentPath, extractKeys(parentMetadata));
+        JoinNode joinTable = new JoinNode(Join.INNER, relation.getJoinedTableName(), relation.getJoinedTableName(), relation.getForeignKeyNames(), JsonArrayNode.JSON_TABLE_ALIAS, relatedKeys);
+        return new JsonArrayNode(alias, related.getTableName(), columns, relatedKeys, joinTable,
+                relation.getJoinedTableName(), relation.getMyJoinedTableFks(), parentPath, extractKeys(parentMetadata));
+    }
+
+    /**
+     * Makes a condition matching any of the given entities by primary key. Single column keys use {@code IN},
+     * composite keys are matched with a disjunction of key equalities. Keys are statement parameters.
+     */
+    private static Expression keyCondition(EntityMetadata metadata, String tableAlias, Collection<?> entities){
+        List<ColumnMetadata> keys = metadata.getColumns().values().stream()
+                .filter(col -> metadata.getIdFields().contains(col.getField()))
+                .toList();
+        if(keys.size() == 1){
+            Field field = keys.getFirst().getField();
+            List<Expression> values = entities.stream()
+                    .map(entity -> DBUpdateSolver.makeLiteral(DBUpdateSolver.extractFieldValue(field, entity)))
+                    .distinct()
+                    .map(key -> (Expression) new Parameter(key))
+                    .toList();
+            return new FieldNode(keys.getFirst().getColumnName(), tableAlias).in(new TupleNode(values));
+        }
+        Expression condition = null;
+        for(Object entity : entities){
+            Expression match = null;
+            for(ColumnMetadata key : keys){
+                Expression eq = new FieldNode(key.getColumnName(), tableAlias).eq(new Parameter(DBUpdateSolver.makeLiteral(DBUpdateSolver.extractFieldValue(key.getField(), entity))));
+                match = match == null ? eq : new BinaryOp(match, eq, BinaryOpCode.AND);
+            }
+            condition = condition == null ? match : new BinaryOp(condition, match, BinaryOpCode.OR);
+        }
+        return condition;
+    }
+
+    /**
+     * Collects values of parameters in the given expression in the order they are written to the query.
+     */
+    private static void collectParameters(Expression expression, List<Literal> arguments){
+        switch (expression){
+            case Parameter p -> arguments.add(p.value());
+            case BinaryOp b -> {
+                collectParameters(b.getLeft(), arguments);
+                collectParameters(b.getRight(), arguments);
+            }
+            case UnaryOp u -> collectParameters(u.getExp(), arguments);
+            case FunctionNode f -> collectParameters(f.getExp(), arguments);
+            case AliasedColumn a -> collectParameters(a.getExpression(), arguments);
+            case TupleNode t -> t.getOperands().forEach(op -> collectParameters(op, arguments));
+            case SubQueryBuilder s -> {
+                s.columns.forEach(col -> collectParameters(col, arguments));
+                if(s.rootSelectNode.getWhereNode() != null)
+                    collectParameters(s.rootSelectNode.getWhereNode().getExpression(), arguments);
+                if(s.rootSelectNode.getHavingNode() != null)
+                    collectParameters(s.rootSelectNode.getHavingNode().getExpression(), arguments);
+            }
+            default -> {}
+        }
+    }
+
+    /**
+     * Collects the table aliases of all fields used in the given expression, including ones inside subqueries.
+     */
+    private void collectTableAliases(Expression expression, Set<String> aliases){
+        switch (expression){
+            case FieldNode f -> aliases.add(f.getTableAlias());
+            case BinaryOp b -> {
+                collectTableAliases(b.getLeft(), aliases);
+                collectTableAliases(b.getRight(), aliases);
+            }
+            case UnaryOp u -> collectTableAliases(u.getExp(), aliases);
+            case FunctionNode f -> collectTableAliases(f.getExp(), aliases);
+            case AliasedColumn a -> collectTableAliases(a.getExpression(), aliases);
+            case TupleNode t -> t.getOperands().forEach(op -> collectTableAliases(op, aliases));
+            case SubQueryBuilder s -> {
+                s.columns.forEach(col -> collectTableAliases(col, aliases));
+                if(s.rootSelectNode.getWhereNode() != null)
+                    collectTableAliases(s.rootSelectNode.getWhereNode().getExpression(), aliases);
+                if(s.rootSelectNode.getHavingNode() != null)
+                    collectTableAliases(s.rootSelectNode.getHavingNode().getExpression(), aliases);
+            }
+            default -> {}
+        }
     }
 
     /**
@@ -236,6 +879,7 @@ public class QueryBuilder {
         //check if relation exists
         if(relationMetadata.isEmpty())
             throw new InvalidRelationPathException(joiningRelationPath);
+        joinedRelations.put(joiningRelationPath, relationMetadata.get());
         //2 join nodes for many_to_many relations
         if(relationMetadata.get().getRelationType() == RelationType.MANY_TO_MANY){
             List<JoinNode> result = new ArrayList<>();
@@ -339,7 +983,14 @@ public class QueryBuilder {
      * Makes list of FieldNodes and adds them to select clause in AST
      */
     private void extractColumns(EntityMetadata metadata, String tableAlias){
+        Set<String> selected = projection != null ? projection.getOrDefault(tableAlias, Set.of()) : null;
         for(var column : metadata.getColumns().values()){
+            boolean requested = selected != null && selected.contains(column.getColumnName());
+            //large objects are fetched only on explicit request
+            if(column.isLob() && !requested)
+                continue;
+            if(selected != null && !requested && !metadata.getIdFields().contains(column.getField()))
+                continue;
             FieldNode node = new FieldNode(column.getColumnName(), tableAlias);
             rootSelectNode.addSelectClauseColumn(node);
         }
@@ -367,7 +1018,12 @@ public class QueryBuilder {
         return rootSelectNode.getHavingNode() != null ? dialect.generateHavingClause(rootSelectNode.getHavingNode()) + "\n" : "";
     }
     public String generateOrderByClause(Dialect dialect){
-        return rootSelectNode.getOrderByNodes() != null ? dialect.generateOrderByClause(rootSelectNode.getOrderByNodes()) + "\n" : "";
+        if(rootSelectNode.getOrderByNodes() != null)
+            return dialect.generateOrderByClause(rootSelectNode.getOrderByNodes()) + "\n";
+        //some databases can't limit rows without ordering them
+        if(rootSelectNode.getLimitNode() != null && !dialect.generateImplicitOrderByClause().isEmpty())
+            return dialect.generateImplicitOrderByClause() + "\n";
+        return "";
     }
     public String generateLimitClause(Dialect dialect){
         return rootSelectNode.getLimitNode() != null ? dialect.generateLimitClause(rootSelectNode.getLimitNode()) : "";
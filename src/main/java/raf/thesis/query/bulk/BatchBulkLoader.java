@@ -0,0 +1,61 @@
+package raf.thesis.query.bulk;
+
+import raf.thesis.query.PreparedStatementQuery;
+import raf.thesis.query.dialect.Dialect;
+import raf.thesis.query.tree.Literal;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.Iterator;
+import java.util.List;
+
+/**
+ * Fallback loader that works with every driver, rows are sent as batches of the dialect's insert statement.
+ */
+public class BatchBulkLoader implements BulkLoader {
+    private static final int DEFAULT_BATCH_SIZE = 1000;
+
+    private final Dialect dialect;
+    private final int batchSize;
+
+    public BatchBulkLoader(Dialect dialect) {
+        this(dialect, DEFAULT_BATCH_SIZE);
+    }
+
+    public BatchBulkLoader(Dialect dialect, int batchSize) {
+        if (batchSize < 1)
+            throw new IllegalArgumentException("Batch size must be positive");
+        this.dialect = dialect;
+        this.batchSize = batchSize;
+    }
+
+    @Override
+    public long load(Connection conn, String tableName, List<String> columns, Iterator<List<Literal>> rows) throws SQLException {
+        long loaded = 0;
+        int batched = 0;
+        try (PreparedStatement ps = conn.prepareStatement(dialect.generateInsertQuery(columns, tableName))) {
+            while (rows.hasNext()) {
+                List<Literal> row = rows.next();
+                for (int i = 0; i < row.size(); i++)
+                    PreparedStatementQuery.bindLiteral(ps, i + 1, row.get(i));
+                ps.addBatch();
+                if (++batched == batchSize) {
+                    loaded += executeBatch(ps);
+                    batched = 0;
+                }
+            }
+            if (batched > 0)
+                loaded += executeBatch(ps);
+        }
+        return loaded;
+    }
+
+    //some drivers don't report per row counts, every row of a successful batch is counted then
+    private static long executeBatch(PreparedStatement ps) throws SQLException {
+        long loaded = 0;
+        for (int count : ps.executeBatch())
+            loaded += count < 0 ? 1 : count;
+        return loaded;
+    }
+}
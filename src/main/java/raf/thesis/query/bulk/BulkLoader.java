@@ -0,0 +1,19 @@
+package raf.thesis.query.bulk;
+
+import raf.thesis.query.tree.Literal;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.Iterator;
+import java.util.List;
+
+/**
+ * Loads many rows into a single table, ideally through the native bulk path of the database.
+ * <p>
+ * Every row holds one value per column, in the order of the given columns. Rows are pulled from the iterator
+ * while loading, so they don't have to be materialized up front.
+ */
+public interface BulkLoader {
+    //returns number of loaded rows
+    long load(Connection conn, String tableName, List<String> columns, Iterator<List<Literal>> rows) throws SQLException;
+}
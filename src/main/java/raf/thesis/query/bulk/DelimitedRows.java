@@ -0,0 +1,106 @@
+package raf.thesis.query.bulk;
+
+import raf.thesis.query.tree.Literal;
+
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Iterator;
+import java.util.List;
+
+//UTF-8 text of rows, encoded one row at a time as the database reads the stream
+final class DelimitedRows extends InputStream {
+    enum Format {
+        //RFC 4180 as read by COPY and CSVREAD, NULL is an empty unquoted field
+        CSV,
+        //LOAD DATA with backslash escapes, NULL is \N
+        MYSQL
+    }
+
+    private static final byte[] EMPTY = new byte[0];
+
+    private final Iterator<List<Literal>> rows;
+    private final Format format;
+    private final StringBuilder line = new StringBuilder();
+    private byte[] current = EMPTY;
+    private int position;
+
+    DelimitedRows(Iterator<List<Literal>> rows, Format format) {
+        this.rows = rows;
+        this.format = format;
+    }
+
+    @Override
+    public int read() {
+        if (!fill())
+            return -1;
+        return current[position++] & 0xFF;
+    }
+
+    @Override
+    public int read(byte[] buffer, int offset, int length) {
+        if (length == 0)
+            return 0;
+        int read = 0;
+        while (read < length && fill()) {
+            int count = Math.min(length - read, current.length - position);
+            System.arraycopy(current, position, buffer, offset + read, count);
+            position += count;
+            read += count;
+        }
+        return read == 0 ? -1 : read;
+    }
+
+    private boolean fill() {
+        while (position == current.length) {
+            if (!rows.hasNext())
+                return false;
+            current = encode(rows.next());
+            position = 0;
+        }
+        return true;
+    }
+
+    private byte[] encode(List<Literal> row) {
+        line.setLength(0);
+        for (int i = 0; i < row.size(); i++) {
+            if (i > 0)
+                line.append(',');
+            appendValue(row.get(i));
+        }
+        line.append('\n');
+        return line.toString().getBytes(StandardCharsets.UTF_8);
+    }
+
+    private void appendValue(Literal literal) {
+        switch (literal) {
+            case Literal.NullCnst _ -> {
+                if (format == Format.MYSQL)
+                    line.append("\\N");
+            }
+            case Literal.LongCnst l -> line.append(l.x());
+            case Literal.DoubleCnst d -> line.append(d.x());
+            case Literal.DecimalCnst d -> line.append(d.x().toPlainString());
+            case Literal.BoolCnst b -> line.append(format == Format.MYSQL ? (b.x() ? "1" : "0") : b.x());
+            case Literal.DateCnst d -> line.append(d.x());
+            case Literal.DateTimeCnst dt -> line.append(dt.x().toString().replace('T', ' '));
+            case Literal.TimeCnst t -> line.append(t.x());
+            case Literal.UuidCnst u -> line.append(u.x());
+            //strings are always quoted, so empty strings are told apart from NULL
+            case Literal.StringCnst s -> appendQuoted(s.x());
+            default -> throw new IllegalArgumentException("Unsupported literal for text bulk load: " + literal.getClass());
+        }
+    }
+
+    private void appendQuoted(String value) {
+        line.append('"');
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c == '"')
+                line.append(format == Format.MYSQL ? '\\' : '"');
+            else if (c == '\\' && format == Format.MYSQL)
+                line.append('\\');
+            line.append(c);
+        }
+        line.append('"');
+    }
+}
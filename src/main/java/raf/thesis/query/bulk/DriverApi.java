@@ -0,0 +1,35 @@
+package raf.thesis.query.bulk;
+
+import java.lang.reflect.InvocationTargetException;
+import java.sql.SQLException;
+import java.sql.Wrapper;
+
+//drivers are only runtime dependencies, their extension APIs are called reflectively
+final class DriverApi {
+    private DriverApi() {
+    }
+
+    static Object unwrap(Wrapper wrapper, String interfaceName) throws SQLException {
+        try {
+            Class<?> type = Class.forName(interfaceName, true, wrapper.getClass().getClassLoader());
+            return wrapper.unwrap(type);
+        } catch (ClassNotFoundException e) {
+            throw new SQLException("Driver class " + interfaceName + " is not available", e);
+        }
+    }
+
+    static Object call(Object target, String interfaceName, String method, Class<?>[] parameterTypes, Object... args) throws SQLException {
+        try {
+            Class<?> type = Class.forName(interfaceName, true, target.getClass().getClassLoader());
+            return type.getMethod(method, parameterTypes).invoke(target, args);
+        } catch (InvocationTargetException e) {
+            if (e.getCause() instanceof SQLException sqlException)
+                throw sqlException;
+            if (e.getCause() instanceof RuntimeException runtimeException)
+                throw runtimeException;
+            throw new SQLException(e.getCause());
+        } catch (ReflectiveOperationException e) {
+            throw new SQLException("Driver method " + interfaceName + "." + method + " is not available", e);
+        }
+    }
+}
@@ -0,0 +1,48 @@
+package raf.thesis.query.bulk;
+
+import raf.thesis.query.tree.Literal;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Iterator;
+import java.util.List;
+
+/**
+ * Writes rows to a temporary CSV file and inserts them with a single {@code INSERT ... SELECT FROM CSVREAD},
+ * values are read as text and converted to column types by the insert.
+ */
+public class H2CsvReadLoader implements BulkLoader {
+    @Override
+    public long load(Connection conn, String tableName, List<String> columns, Iterator<List<Literal>> rows) throws SQLException {
+        Path file = null;
+        try {
+            file = Files.createTempFile("bulk", ".csv");
+            Files.copy(new DelimitedRows(rows, DelimitedRows.Format.CSV), file, StandardCopyOption.REPLACE_EXISTING);
+            //table function arguments have to be constants, file has no header so column names are given instead
+            String sql = "INSERT INTO %s (%s) SELECT * FROM CSVREAD(%s, %s, 'charset=UTF-8')".formatted(tableName,
+                    String.join(", ", columns), stringConstant(file.toAbsolutePath().toString()), stringConstant(String.join(",", columns)));
+            try (Statement stmt = conn.createStatement()) {
+                return stmt.executeUpdate(sql);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        } finally {
+            if (file != null) {
+                try {
+                    Files.deleteIfExists(file);
+                } catch (IOException ignored) {
+                }
+            }
+        }
+    }
+
+    private static String stringConstant(String value) {
+        return "'" + value.replace("'", "''") + "'";
+    }
+}
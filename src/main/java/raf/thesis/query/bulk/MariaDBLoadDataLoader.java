@@ -0,0 +1,31 @@
+package raf.thesis.query.bulk;
+
+import raf.thesis.query.tree.Literal;
+
+import java.io.InputStream;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Iterator;
+import java.util.List;
+
+/**
+ * Streams rows through {@code LOAD DATA LOCAL INFILE}, the driver reads them from memory instead of a file.
+ * Needs {@code allowLocalInfile} on the connection and {@code local_infile} enabled on the server.
+ */
+public class MariaDBLoadDataLoader implements BulkLoader {
+    private static final String MARIADB_STATEMENT = "org.mariadb.jdbc.Statement";
+
+    @Override
+    public long load(Connection conn, String tableName, List<String> columns, Iterator<List<Literal>> rows) throws SQLException {
+        String sql = ("LOAD DATA LOCAL INFILE 'rows' INTO TABLE %s CHARACTER SET utf8mb4 " +
+                "FIELDS TERMINATED BY ',' OPTIONALLY ENCLOSED BY '\"' ESCAPED BY '\\\\' LINES TERMINATED BY '\\n' (%s)")
+                .formatted(tableName, String.join(", ", columns));
+        try (Statement stmt = conn.createStatement()) {
+            Object driverStatement = DriverApi.unwrap(stmt, MARIADB_STATEMENT);
+            DriverApi.call(driverStatement, MARIADB_STATEMENT, "setLocalInfileInputStream", new Class<?>[]{InputStream.class},
+                    new DelimitedRows(rows, DelimitedRows.Format.MYSQL));
+            return stmt.executeUpdate(sql);
+        }
+    }
+}
@@ -0,0 +1,26 @@
+package raf.thesis.query.bulk;
+
+import raf.thesis.query.tree.Literal;
+
+import java.io.InputStream;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.Iterator;
+import java.util.List;
+
+/**
+ * Streams rows as CSV through {@code COPY ... FROM STDIN} of the PostgreSQL driver.
+ */
+public class PostgresCopyLoader implements BulkLoader {
+    private static final String PG_CONNECTION = "org.postgresql.PGConnection";
+    private static final String COPY_MANAGER = "org.postgresql.copy.CopyManager";
+
+    @Override
+    public long load(Connection conn, String tableName, List<String> columns, Iterator<List<Literal>> rows) throws SQLException {
+        String sql = "COPY %s (%s) FROM STDIN WITH (FORMAT csv)".formatted(tableName, String.join(", ", columns));
+        Object pgConnection = DriverApi.unwrap(conn, PG_CONNECTION);
+        Object copyManager = DriverApi.call(pgConnection, PG_CONNECTION, "getCopyAPI", new Class<?>[0]);
+        return (long) DriverApi.call(copyManager, COPY_MANAGER, "copyIn", new Class<?>[]{String.class, InputStream.class},
+                sql, new DelimitedRows(rows, DelimitedRows.Format.CSV));
+    }
+}
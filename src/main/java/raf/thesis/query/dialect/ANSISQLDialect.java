@@ -1,11 +1,17 @@
 package raf.thesis.query.dialect;
 
+import raf.thesis.query.bulk.BatchBulkLoader;
+import raf.thesis.query.bulk.BulkLoader;
+import raf.thesis.query.bulk.H2CsvReadLoader;
+import raf.thesis.query.bulk.PostgresCopyLoader;
 import raf.thesis.query.tree.*;
 
+import java.sql.Connection;
+import java.sql.SQLException;
 import java.util.List;
 import java.util.stream.Collectors;
 
-public class ANSISQLDialect implements Dialect {
+public class ANSISQLDialect implements Dialect, Dialect.SupportsWindowFunctions, Dialect.SupportsJsonAggregation, Dialect.SupportsBulkLoad, Dialect.SupportsUpsert, Dialect.SupportsSequences, Dialect.SupportsIdentityCopy {
     protected String quote(String value){
         return "\"" + value.replaceAll("\"", "\"\"") + "\"";
     }
@@ -34,10 +40,22 @@ public class ANSISQLDialect implements Dialect {
     public String generateJoinClause(JoinNode joinNode){
         String onClause = "%s = %s".formatted(generateKeyTuple(joinNode.getJoiningTableAlias(), joinNode.getJoiningTablePk()),
                 generateKeyTuple(joinNode.getForeignTableAlias(), joinNode.getForeignTableFk()));
+        if(joinNode.getRowLimit() != null){
+            onClause += " AND %s.%s <= %d".formatted(quote(joinNode.getJoiningTableAlias()), quote(JoinNode.ROW_NUMBER_ALIAS), joinNode.getRowLimit());
+            return "%s JOIN %s AS %s ON (%s)".formatted(joinNode.getJoinType().name(), generateRowLimitedTable(joinNode), quote(joinNode.getJoiningTableAlias()), onClause);
+        }
         return "%s JOIN %s AS %s ON (%s)".formatted(joinNode.getJoinType().name(), joinNode.getTableName(), quote(joinNode.getJoiningTableAlias()), onClause);
     }
 
-    private String generateKeyTuple(String tableAlias, List<String> tableColumns){
+    //joined table numbers its rows per foreign row, so the join condition can keep only the first ones
+    protected String generateRowLimitedTable(JoinNode joinNode){
+        String alias = quote(joinNode.getJoiningTableAlias());
+        String partition = joinNode.getJoiningTablePk().stream().map(col -> alias + "." + col).collect(Collectors.joining(", "));
+        return "(SELECT %s.*, ROW_NUMBER() OVER (PARTITION BY %s %s) AS %s FROM %s AS %s)".formatted(alias, partition,
+                generateOrderByClause(joinNode.getRowOrder()), quote(JoinNode.ROW_NUMBER_ALIAS), joinNode.getTableName(), alias);
+    }
+
+    protected String generateKeyTuple(String tableAlias, List<String> tableColumns){
         return "(%s)".formatted(tableColumns.stream().map("."::concat).map(quote(tableAlias)::concat).collect(Collectors.joining()));
     }
 
@@ -82,6 +100,21 @@ public class ANSISQLDialect implements Dialect {
         return "%s %s".formatted(generateOffset(limitNode.getOffset()), generateLimit(limitNode.getLimit()));
     }
 
+    @Override
+    public String generateImplicitOrderByClause() {
+        return "";
+    }
+
+    @Override
+    public String generateExistsQuery(String selectQuery) {
+        return "%s%s;".formatted(selectQuery, generateLimit(1));
+    }
+
+    @Override
+    public String generateCountQuery(String selectQuery) {
+        return "SELECT\nCOUNT(*) AS total\n FROM (%s) AS %s;".formatted(selectQuery, quote("%counted"));
+    }
+
     protected String generateOffset(Integer offset){
         return offset == null ? "" : "OFFSET %s ROWS".formatted(offset);
     }
@@ -132,15 +165,24 @@ public class ANSISQLDialect implements Dialect {
         return switch(literal){
             case Literal.DoubleCnst d -> String.valueOf(d.x());
             case Literal.LongCnst l -> String.valueOf(l.x());
-            case Literal.StringCnst s -> "'" + s.x() + "'";
+            case Literal.DecimalCnst d -> d.x().toPlainString();
+            case Literal.StringCnst s -> "'" + s.x().replace("'", "''") + "'";
             case Literal.BoolCnst b -> String.valueOf(b.x());
-            case Literal.DateCnst d -> "'%s-%s-%s'".formatted(d.x().getYear(), d.x().getMonthValue(), d.x().getDayOfMonth());
-            case Literal.DateTimeCnst d -> "'%s-%s-%s %s:%s:%s.%03d'".formatted(d.x().getYear(), d.x().getMonthValue(), d.x().getDayOfMonth(), d.x().getHour(), d.x().getMinute(), d.x().getSecond(), d.x().getNano() / 1_000_000);
-            case Literal.TimeCnst d -> "'%s:%s:%s.%03d'".formatted(d.x().getHour(), d.x().getMinute(), d.x().getSecond(), d.x().getNano() / 1_000_000);
+            case Literal.DateCnst d -> "'%04d-%02d-%02d'".formatted(d.x().getYear(), d.x().getMonthValue(), d.x().getDayOfMonth());
+            case Literal.DateTimeCnst d -> "'%04d-%02d-%02d %02d:%02d:%02d.%03d'".formatted(d.x().getYear(), d.x().getMonthValue(), d.x().getDayOfMonth(), d.x().getHour(), d.x().getMinute(), d.x().getSecond(), d.x().getNano() / 1_000_000);
+            case Literal.TimeCnst d -> "'%02d:%02d:%02d.%03d'".formatted(d.x().getHour(), d.x().getMinute(), d.x().getSecond(), d.x().getNano() / 1_000_000);
+            case Literal.UuidCnst u -> "'" + u.x() + "'";
             case Literal.NullCnst n -> "NULL";
+            case Literal.BinaryStreamCnst b -> throw new UnsupportedOperationException("Binary streams can only be bound as statement parameters");
+            case Literal.CharacterStreamCnst c -> throw new UnsupportedOperationException("Character streams can only be bound as statement parameters");
         };
     }
 
+    @Override
+    public String generateParameterExp(Parameter parameter) {
+        return "?";
+    }
+
     @Override
     public String generateFunctionExp(FunctionNode functionNode) {
         StringBuilder result = new StringBuilder();
@@ -182,6 +224,42 @@ public class ANSISQLDialect implements Dialect {
         return "%s AS %s".formatted(column.getExpression().toSql(this), column.getColAlias());
     }
 
+    @Override
+    public String generateTotalCountExp(TotalCountNode totalCountNode) {
+        return "COUNT(*) OVER () AS %s".formatted(quote(totalCountNode.getAlias()));
+    }
+
+    @Override
+    public String generateJsonArrayExp(JsonArrayNode jsonArrayNode) {
+        String order = jsonArrayNode.getKeyColumns().stream().map(key -> "%s.%s".formatted(quote(JsonArrayNode.JSON_TABLE_ALIAS), key)).collect(Collectors.joining(", "));
+        return "(SELECT JSON_ARRAYAGG(%s ORDER BY %s)%s) AS %s".formatted(generateJsonObject(jsonArrayNode.getColumns()), order, generateJsonSource(jsonArrayNode), quote(jsonArrayNode.getAlias()));
+    }
+
+    protected String generateJsonObject(List<String> columns) {
+        return columns.stream()
+                .map(col -> "KEY '%s' VALUE %s.%s".formatted(col, quote(JsonArrayNode.JSON_TABLE_ALIAS), col))
+                .collect(Collectors.joining(", ", "JSON_OBJECT(", ")"));
+    }
+
+    //FROM and WHERE clauses of the aggregating subquery, correlated with the parent row
+    protected String generateJsonSource(JsonArrayNode jsonArrayNode) {
+        String join = jsonArrayNode.getJoinNode() != null ? "\n" + generateJoinClause(jsonArrayNode.getJoinNode()) : "";
+        return "\n FROM %s AS %s%s\n WHERE %s = %s".formatted(jsonArrayNode.getTableName(), quote(JsonArrayNode.JSON_TABLE_ALIAS), join,
+                generateKeyTuple(jsonArrayNode.getLinkTableAlias(), jsonArrayNode.getLinkColumns()),
+                generateKeyTuple(jsonArrayNode.getParentAlias(), jsonArrayNode.getParentKeys()));
+    }
+
+    //this dialect is shared by several databases, native loader is picked by the connected one
+    @Override
+    public BulkLoader bulkLoader(Connection connection) throws SQLException {
+        String product = connection.getMetaData().getDatabaseProductName().toLowerCase();
+        if (product.contains("postgresql"))
+            return new PostgresCopyLoader();
+        if (product.contains("h2"))
+            return new H2CsvReadLoader();
+        return new BatchBulkLoader(this);
+    }
+
     @Override
     public String generateInsertQuery(List<String> columns, String tableName) {
         return "INSERT INTO %s (%s) VALUES (%s);".formatted(tableName, generateInsertColumnParenthesis(columns), generateQuestionMarks(columns.size()));
@@ -189,6 +267,45 @@ public class ANSISQLDialect implements Dialect {
 
 
 
+    //standard MERGE with a single row source, rows matching by key are updated
+    @Override
+    public String generateUpsertQuery(List<String> columns, String tableName, List<String> keyColumnNames) {
+        String on = keyColumnNames.stream().map(key -> "%s.%s = s.%s".formatted(tableName, key, key)).collect(Collectors.joining(" AND "));
+        String set = columns.stream().filter(column -> !keyColumnNames.contains(column))
+                .map(column -> "%s = s.%s".formatted(column, column)).collect(Collectors.joining(", "));
+        String insertColumns = generateInsertColumnParenthesis(columns);
+        String sourceColumns = columns.stream().map("s."::concat).collect(Collectors.joining(","));
+        return "MERGE INTO %s\nUSING (VALUES (%s)) AS s (%s)\nON %s%s\nWHEN NOT MATCHED THEN INSERT (%s) VALUES (%s);".formatted(tableName,
+                generateQuestionMarks(columns.size()), insertColumns, on, set.isEmpty() ? "" : "\nWHEN MATCHED THEN UPDATE SET " + set,
+                insertColumns, sourceColumns);
+    }
+
+    @Override
+    public String generateNextSequenceValueQuery(String sequenceName) {
+        return "SELECT nextval('%s');".formatted(sequenceName);
+    }
+
+    @Override
+    public String generateIdentityInsertStart(String tableName) {
+        return null;
+    }
+
+    @Override
+    public String generateIdentityInsertEnd(String tableName) {
+        return null;
+    }
+
+    //identity columns don't move past keys that were inserted with given values
+    @Override
+    public String generateIdentityRestartQuery(String tableName, String keyColumn, long nextValue) {
+        return "ALTER TABLE %s ALTER COLUMN %s RESTART WITH %s;".formatted(tableName, keyColumn, nextValue);
+    }
+
+    @Override
+    public String generateSelectByKeyQuery(List<String> columns, String tableName, List<String> keyColumnNames) {
+        return "SELECT %s\nFROM %s\nWHERE %s;".formatted(String.join(", ", columns), tableName, generateUpdateWhereClause(keyColumnNames));
+    }
+
     @Override
     public String generateUpdateQuery(List<String> columns, String tableName, List<String> keyColumnNames) {
         return "UPDATE %s\nSET %sWHERE %s;".formatted(tableName, generateSetClause(columns), generateUpdateWhereClause(keyColumnNames));
@@ -199,6 +316,29 @@ public class ANSISQLDialect implements Dialect {
         return "DELETE FROM %s\nWHERE %s;".formatted(tableName, generateUpdateWhereClause(keyColumnNames));
     }
 
+    @Override
+    public String generateKeyCondition(List<String> keyColumnNames) {
+        return generateUpdateWhereClause(keyColumnNames);
+    }
+
+    //no terminating semicolon, result is nested in other queries
+    @Override
+    public String generateKeySubquery(List<String> columns, String tableName, String condition) {
+        return "SELECT %s FROM %s WHERE %s".formatted(String.join(", ", columns), tableName, condition);
+    }
+
+    //several columns are compared as a row value
+    @Override
+    public String generateInSubqueryCondition(String tableName, List<String> columns, String subquery) {
+        String left = columns.size() == 1 ? columns.getFirst() : "(" + String.join(", ", columns) + ")";
+        return "%s IN (%s)".formatted(left, subquery);
+    }
+
+    @Override
+    public String generateDeleteWhereQuery(String tableName, String condition) {
+        return "DELETE FROM %s\nWHERE %s;".formatted(tableName, condition);
+    }
+
     protected String generateSetClause(List<String> columns){
         StringBuilder result = new StringBuilder();
         for(String column : columns){
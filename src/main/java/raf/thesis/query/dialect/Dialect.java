@@ -1,7 +1,10 @@
 package raf.thesis.query.dialect;
 
+import raf.thesis.query.bulk.BulkLoader;
 import raf.thesis.query.tree.*;
 
+import java.sql.Connection;
+import java.sql.SQLException;
 import java.util.List;
 
 public interface Dialect {
@@ -19,12 +22,20 @@ public interface Dialect {
 
     String generateLimitClause(LimitNode limitNode);
 
+    String generateImplicitOrderByClause();
+
+    String generateExistsQuery(String selectQuery);
+
+    String generateCountQuery(String selectQuery);
+
     String generateBinaryOperationExp(BinaryOp operation);
 
     String generateUnaryOperationExp(UnaryOp operation);
 
     String generateLiteralExp(Literal literal);
 
+    String generateParameterExp(Parameter parameter);
+
     String generateFunctionExp(FunctionNode functionNode);
 
     String generateTupleExp(TupleNode tupleNode);
@@ -35,11 +46,51 @@ public interface Dialect {
 
     String generateInsertQuery(List<String> columns, String tableName);
 
+    String generateSelectByKeyQuery(List<String> columns, String tableName, List<String> keyColumnNames);
+
     String generateUpdateQuery(List<String> columns, String tableName, List<String> keyColumnNames);
 
     String generateDeleteQuery(List<String> keyColumnNames, String tableName);
 
+    String generateKeyCondition(List<String> keyColumnNames);
+
+    String generateKeySubquery(List<String> columns, String tableName, String condition);
+
+    String generateInSubqueryCondition(String tableName, List<String> columns, String subquery);
+
+    String generateDeleteWhereQuery(String tableName, String condition);
+
     public interface UsesInsertReturning extends Dialect{
         String generateInsertQuery(List<String> columns, String tableName, List<String> returningKeys);
     }
+
+    public interface SupportsWindowFunctions extends Dialect{
+        String generateTotalCountExp(TotalCountNode totalCountNode);
+    }
+
+    public interface SupportsJsonAggregation extends Dialect{
+        String generateJsonArrayExp(JsonArrayNode jsonArrayNode);
+    }
+
+    public interface SupportsBulkLoad extends Dialect{
+        BulkLoader bulkLoader(Connection connection) throws SQLException;
+    }
+
+    public interface SupportsUpsert extends Dialect{
+        String generateUpsertQuery(List<String> columns, String tableName, List<String> keyColumnNames);
+    }
+
+    public interface SupportsSequences extends Dialect{
+        String generateNextSequenceValueQuery(String sequenceName);
+    }
+
+    public interface SupportsIdentityCopy extends Dialect{
+        //statements around inserts of given values into a database generated key column, null when none are needed
+        String generateIdentityInsertStart(String tableName);
+
+        String generateIdentityInsertEnd(String tableName);
+
+        //moves the key generator so it hands out the given value next, null when inserts move it already
+        String generateIdentityRestartQuery(String tableName, String keyColumn, long nextValue);
+    }
 }
@@ -1,5 +1,7 @@
 package raf.thesis.query.dialect;
 
+import raf.thesis.query.tree.JsonArrayNode;
+
 import java.util.List;
 import java.util.stream.Collectors;
 
@@ -14,8 +16,61 @@ public class MSSQLServerDialect extends ANSISQLDialect implements Dialect.UsesIn
         return offset == null ? "OFFSET 0 ROWS" : "OFFSET %s ROWS".formatted(offset);
     }
 
+    @Override
+    public String generateImplicitOrderByClause() {
+        return "ORDER BY (SELECT NULL)";
+    }
+
+    //OFFSET-FETCH requires ORDER BY, so check with EXISTS instead of fetching the first row
+    @Override
+    public String generateExistsQuery(String selectQuery) {
+        return "SELECT CASE WHEN EXISTS (%s) THEN 1 ELSE 0 END;".formatted(selectQuery);
+    }
+
+    //no JSON aggregate function, rows are serialized with FOR JSON instead
+    @Override
+    public String generateJsonArrayExp(JsonArrayNode jsonArrayNode) {
+        String columns = jsonArrayNode.getColumns().stream()
+                .map(col -> "%s.%s AS %s".formatted(quote(JsonArrayNode.JSON_TABLE_ALIAS), col, quote(col)))
+                .collect(Collectors.joining(", "));
+        String order = jsonArrayNode.getKeyColumns().stream().map(key -> "%s.%s".formatted(quote(JsonArrayNode.JSON_TABLE_ALIAS), key)).collect(Collectors.joining(", "));
+        return "(SELECT %s%s\n ORDER BY %s\n FOR JSON PATH) AS %s".formatted(columns, generateJsonSource(jsonArrayNode), order, quote(jsonArrayNode.getAlias()));
+    }
+
     @Override
     public String generateInsertQuery(List<String> columns, String tableName, List<String> returningKeys) {
         return "INSERT INTO %s (%s)%sVALUES (%s);".formatted(tableName, generateInsertColumnParenthesis(columns), generateOutputClause(returningKeys), generateQuestionMarks(columns.size()));
     }
+
+    //no row values, several columns are matched with a correlated EXISTS over the subquery
+    @Override
+    public String generateInSubqueryCondition(String tableName, List<String> columns, String subquery) {
+        if (columns.size() == 1)
+            return super.generateInSubqueryCondition(tableName, columns, subquery);
+        String keys = quote("%keys");
+        String match = columns.stream().map(column -> "%s.%s = %s.%s".formatted(keys, column, tableName, column)).collect(Collectors.joining(" AND "));
+        return "EXISTS (SELECT 1 FROM (%s) AS %s (%s) WHERE %s)".formatted(subquery, keys, String.join(", ", columns), match);
+    }
+
+    @Override
+    public String generateNextSequenceValueQuery(String sequenceName) {
+        return "SELECT NEXT VALUE FOR %s;".formatted(sequenceName);
+    }
+
+    //identity columns refuse given values unless enabled, for one table of the session at a time
+    @Override
+    public String generateIdentityInsertStart(String tableName) {
+        return "SET IDENTITY_INSERT %s ON;".formatted(tableName);
+    }
+
+    @Override
+    public String generateIdentityInsertEnd(String tableName) {
+        return "SET IDENTITY_INSERT %s OFF;".formatted(tableName);
+    }
+
+    //the identity seed moves past inserted keys by itself
+    @Override
+    public String generateIdentityRestartQuery(String tableName, String keyColumn, long nextValue) {
+        return null;
+    }
 }
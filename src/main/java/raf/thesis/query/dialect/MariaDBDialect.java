@@ -1,7 +1,11 @@
 package raf.thesis.query.dialect;
 
+import raf.thesis.query.bulk.BulkLoader;
+import raf.thesis.query.bulk.MariaDBLoadDataLoader;
+import raf.thesis.query.tree.JsonArrayNode;
 import raf.thesis.query.tree.LimitNode;
 
+import java.sql.Connection;
 import java.util.Arrays;
 import java.util.List;
 import java.util.stream.Collectors;
@@ -12,6 +16,13 @@ public class MariaDBDialect extends ANSISQLDialect implements Dialect.UsesInsert
         return "`" + value.replaceAll("`", "``") + "`";
     }
 
+    @Override
+    protected String generateJsonObject(List<String> columns){
+        return columns.stream()
+                .map(col -> "'%s', %s.%s".formatted(col, quote(JsonArrayNode.JSON_TABLE_ALIAS), col))
+                .collect(Collectors.joining(", ", "JSON_OBJECT(", ")"));
+    }
+
     @Override
     public String generateLimitClause(LimitNode limitNode){
         return "%s %s".formatted(generateLimit(limitNode.getLimit()), generateOffset(limitNode.getOffset()));
@@ -40,4 +51,30 @@ public class MariaDBDialect extends ANSISQLDialect implements Dialect.UsesInsert
     public String generateInsertQuery(List<String> columns, String tableName, List<String> returningKeys) {
         return insertHelper(columns, tableName) + generateReturningClause(returningKeys);
     }
+
+    @Override
+    public String generateUpsertQuery(List<String> columns, String tableName, List<String> keyColumnNames) {
+        //key columns assigned to themselves keep duplicates as they are when there is nothing else to update
+        String set = columns.stream().filter(column -> !keyColumnNames.contains(column))
+                .map(column -> "%s = VALUES(%s)".formatted(column, column)).collect(Collectors.joining(", "));
+        if (set.isEmpty())
+            set = keyColumnNames.stream().map(key -> "%s = %s".formatted(key, key)).collect(Collectors.joining(", "));
+        return insertHelper(columns, tableName) + "\nON DUPLICATE KEY UPDATE " + set;
+    }
+
+    @Override
+    public BulkLoader bulkLoader(Connection connection) {
+        return new MariaDBLoadDataLoader();
+    }
+
+    @Override
+    public String generateNextSequenceValueQuery(String sequenceName) {
+        return "SELECT NEXT VALUE FOR %s;".formatted(sequenceName);
+    }
+
+    //AUTO_INCREMENT moves past inserted keys by itself
+    @Override
+    public String generateIdentityRestartQuery(String tableName, String keyColumn, long nextValue) {
+        return null;
+    }
 }
@@ -0,0 +1,22 @@
+package raf.thesis.query.dialect;
+
+import raf.thesis.query.tree.JsonArrayNode;
+
+import java.util.stream.Collectors;
+
+public class PostgreSQLDialect extends ANSISQLDialect {
+    //JSON_ARRAYAGG and KEY .. VALUE objects need version 16, json_agg works on every supported version
+    @Override
+    public String generateJsonArrayExp(JsonArrayNode jsonArrayNode) {
+        String object = jsonArrayNode.getColumns().stream()
+                .map(col -> "'%s', %s.%s".formatted(col, quote(JsonArrayNode.JSON_TABLE_ALIAS), col))
+                .collect(Collectors.joining(", ", "json_build_object(", ")"));
+        String order = jsonArrayNode.getKeyColumns().stream().map(key -> "%s.%s".formatted(quote(JsonArrayNode.JSON_TABLE_ALIAS), key)).collect(Collectors.joining(", "));
+        return "(SELECT json_agg(%s ORDER BY %s)%s) AS %s".formatted(object, order, generateJsonSource(jsonArrayNode), quote(jsonArrayNode.getAlias()));
+    }
+
+    @Override
+    public String generateIdentityRestartQuery(String tableName, String keyColumn, long nextValue) {
+        return "SELECT setval(pg_get_serial_sequence('%s', '%s'), %s, false);".formatted(tableName, keyColumn, nextValue);
+    }
+}
@@ -0,0 +1,7 @@
+package raf.thesis.query.exceptions;
+
+import lombok.experimental.StandardException;
+
+@StandardException
+public class LazyInitializationException extends RuntimeException {
+}
@@ -0,0 +1,10 @@
+package raf.thesis.query.transaction;
+
+import raf.thesis.UnitOfWork;
+
+import java.sql.SQLException;
+
+@FunctionalInterface
+public interface UnitOfWorkBody {
+    void execute(UnitOfWork unitOfWork) throws SQLException;
+}
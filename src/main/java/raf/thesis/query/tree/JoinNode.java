@@ -1,13 +1,15 @@
 package raf.thesis.query.tree;
 
-import lombok.AllArgsConstructor;
 import lombok.Getter;
+import lombok.Setter;
 import raf.thesis.query.Join;
 import java.util.List;
 
 @Getter
-@AllArgsConstructor
 public class JoinNode {
+    //alias of the row number column in row limited joined tables
+    public static final String ROW_NUMBER_ALIAS = "%row";
+
     private Join joinType;
     //joining table is new table inside join clause
     private String tableName;
@@ -16,4 +18,18 @@ public class JoinNode {
     //foreign table is table on which new one is joining
     private String foreignTableAlias;
     private List<String> foreignTableFk;
+    //keeps only first rows of joining table per foreign table row, partitioned by joining table keys
+    @Setter
+    private Integer rowLimit;
+    @Setter
+    private List<OrderByNode> rowOrder;
+
+    public JoinNode(Join joinType, String tableName, String joiningTableAlias, List<String> joiningTablePk, String foreignTableAlias, List<String> foreignTableFk) {
+        this.joinType = joinType;
+        this.tableName = tableName;
+        this.joiningTableAlias = joiningTableAlias;
+        this.joiningTablePk = joiningTablePk;
+        this.foreignTableAlias = foreignTableAlias;
+        this.foreignTableFk = foreignTableFk;
+    }
 }
@@ -0,0 +1,37 @@
+package raf.thesis.query.tree;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import raf.thesis.query.dialect.Dialect;
+
+import java.util.List;
+
+/**
+ * Correlated subquery aggregating related rows of a parent row into a single JSON array column.
+ */
+@AllArgsConstructor
+@Getter
+public class JsonArrayNode implements Expression {
+    //alias of the aggregated rows table inside the subquery
+    public static final String JSON_TABLE_ALIAS = "%json";
+
+    private String alias;
+    //related table with its aggregated columns, ordered by keys
+    private String tableName;
+    private List<String> columns;
+    private List<String> keyColumns;
+    //join table for many-to-many relations, null otherwise
+    private JoinNode joinNode;
+    //columns inside the subquery that refer to the parent row
+    private String linkTableAlias;
+    private List<String> linkColumns;
+    private String parentAlias;
+    private List<String> parentKeys;
+
+    @Override
+    public String toSql(Dialect dialect) {
+        if(!(dialect instanceof Dialect.SupportsJsonAggregation jsonDialect))
+            throw new UnsupportedOperationException("Dialect " + dialect.getClass().getSimpleName() + " doesn't support JSON aggregation");
+        return jsonDialect.generateJsonArrayExp(this);
+    }
+}
@@ -2,9 +2,13 @@ package raf.thesis.query.tree;
 
 import raf.thesis.query.dialect.Dialect;
 
+import java.io.InputStream;
+import java.io.Reader;
+import java.math.BigDecimal;
 import java.time.LocalDate;
 import java.time.LocalDateTime;
 import java.time.LocalTime;
+import java.util.UUID;
 
 public sealed interface Literal extends Expression{
     public record DoubleCnst(double x) implements Literal {
@@ -19,6 +23,12 @@ public sealed interface Literal extends Expression{
             return dialect.generateLiteralExp(this);
         }
     }
+    public record DecimalCnst(BigDecimal x) implements Literal {
+        @Override
+        public String toSql(Dialect dialect) {
+            return dialect.generateLiteralExp(this);
+        }
+    }
     public record StringCnst(String x) implements Literal {
         @Override
         public String toSql(Dialect dialect) {
@@ -49,6 +59,24 @@ public sealed interface Literal extends Expression{
             return dialect.generateLiteralExp(this);
         }
     }
+    public record UuidCnst(UUID x) implements Literal {
+        @Override
+        public String toSql(Dialect dialect) {
+            return dialect.generateLiteralExp(this);
+        }
+    }
+    public record BinaryStreamCnst(InputStream x) implements Literal {
+        @Override
+        public String toSql(Dialect dialect) {
+            return dialect.generateLiteralExp(this);
+        }
+    }
+    public record CharacterStreamCnst(Reader x) implements Literal {
+        @Override
+        public String toSql(Dialect dialect) {
+            return dialect.generateLiteralExp(this);
+        }
+    }
     public record NullCnst() implements Literal {
         @Override
         public String toSql(Dialect dialect) {
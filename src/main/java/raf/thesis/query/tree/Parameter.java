@@ -0,0 +1,14 @@
+package raf.thesis.query.tree;
+
+import raf.thesis.query.dialect.Dialect;
+
+/**
+ * Placeholder of a statement parameter, the value is bound when the statement is executed instead of being
+ * written into the query.
+ */
+public record Parameter(Literal value) implements Expression {
+    @Override
+    public String toSql(Dialect dialect) {
+        return dialect.generateParameterExp(this);
+    }
+}
@@ -23,6 +23,7 @@ public class SelectNode {
     private GroupByNode groupByNode;
     @Setter
     private List<OrderByNode> orderByNodes;
+    @Setter
     private LimitNode limitNode;
     @Setter
     private boolean distinct;
@@ -0,0 +1,18 @@
+package raf.thesis.query.tree;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import raf.thesis.query.dialect.Dialect;
+
+@AllArgsConstructor
+@Getter
+public class TotalCountNode implements Expression{
+    private String alias;
+
+    @Override
+    public String toSql(Dialect dialect) {
+        if(!(dialect instanceof Dialect.SupportsWindowFunctions windowDialect))
+            throw new UnsupportedOperationException("Dialect " + dialect.getClass().getSimpleName() + " doesn't support window functions");
+        return windowDialect.generateTotalCountExp(this);
+    }
+}
@@ -4,8 +4,16 @@ import discovery.test2.Flight;
 import org.junit.jupiter.api.BeforeAll;
 import org.junit.jupiter.api.Test;
 import raf.thesis.metadata.scan.MetadataScanner;
+import raf.thesis.query.FetchMode;
+import raf.thesis.query.Join;
+import raf.thesis.query.PreparedStatementQuery;
 import raf.thesis.query.QueryBuilder;
 import raf.thesis.query.dialect.ANSISQLDialect;
+import raf.thesis.query.dialect.MSSQLServerDialect;
+import raf.thesis.query.dialect.PostgreSQLDialect;
+import raf.thesis.query.tree.Literal;
+
+import java.util.List;
 
 import static org.junit.jupiter.api.Assertions.*;
 import static raf.thesis.query.ConditionBuilder.*;
@@ -78,6 +86,14 @@ public class QueryBuilderTest {
         assertEquals("WHERE (\"%root\".flightType) LIKE ('L%')\n", check);
     }
 
+    @Test
+    void testStringLiteralQuoting(){
+        String check = QueryBuilder.select(Flight.class).where(
+                field("flightType").eq(lit("O'Hare"))
+        ).generateWhereClause(new ANSISQLDialect());
+        assertEquals("WHERE (\"%root\".flightType) = ('O''Hare')\n", check);
+    }
+
     @Test
     void testSubQueryGeneration(){
         String check = QueryBuilder.select(Flight.class).join("crew").where(
@@ -100,4 +116,206 @@ public class QueryBuilderTest {
                 "))\n" +
                 ";", check);
     }
+
+    @Test
+    void testCountQueryDropsUnusedLeftJoins(){
+        String check = QueryBuilder.select(Flight.class).join("crew", Join.LEFT)
+                .orderBy(asc(field("flightNumber")))
+                .limit(10)
+                .toCountQuery()
+                .build(new ANSISQLDialect());
+        assertEquals("SELECT\n" +
+                "COUNT(\"%root\".flightnumber) AS total\n" +
+                " FROM flights AS \"%root\"\n" +
+                ";", check);
+    }
+
+    @Test
+    void testCountQueryKeepsFilteringJoins(){
+        String check = QueryBuilder.select(Airplane.class).join("flights").join("flights.crew", Join.LEFT)
+                .where(field("flights.crew.crewSize").gt(lit(5)))
+                .toCountQuery()
+                .build(new ANSISQLDialect());
+        assertEquals("SELECT\n" +
+                "COUNT(DISTINCT \"%root\".id) AS total\n" +
+                " FROM airplanes AS \"%root\"\n" +
+                "INNER JOIN airplanes_flights AS \"airplanes_flights\" ON ((\"airplanes_flights\".id) = (\"%root\".id))\n" +
+                "INNER JOIN flights AS \"flights\" ON ((\"flights\".flightnumber) = (\"airplanes_flights\".flightnumber))\n" +
+                "LEFT JOIN crews AS \"flights.crew\" ON ((\"flights.crew\".crewid) = (\"flights\".crewid))\n" +
+                "WHERE (\"flights.crew\".crewSize) > (5)\n" +
+                ";", check);
+    }
+
+    @Test
+    void testExistsQueryGeneration(){
+        String check = QueryBuilder.select(Flight.class).join("crew", Join.LEFT)
+                .where(field("flightType").like("L%"))
+                .orderBy(asc(field("flightNumber")))
+                .buildExists(new ANSISQLDialect());
+        assertEquals("SELECT\n" +
+                "1 AS found\n" +
+                " FROM flights AS \"%root\"\n" +
+                "WHERE (\"%root\".flightType) LIKE ('L%')\n" +
+                "FETCH NEXT 1 ROWS ONLY;", check);
+    }
+
+    @Test
+    void testExistsQueryKeepsOffset(){
+        String check = QueryBuilder.select(Flight.class)
+                .orderBy(asc(field("flightNumber")))
+                .offset(20)
+                .limit(10)
+                .buildExists(new ANSISQLDialect());
+        assertEquals("SELECT\n" +
+                "1 AS found\n" +
+                " FROM flights AS \"%root\"\n" +
+                "OFFSET 20 ROWS FETCH NEXT 1 ROWS ONLY;", check);
+    }
+
+    @Test
+    void testSelectOnlyClauseGeneration(){
+        String check = QueryBuilder.select(Airplane.class).join("flights").join("flights.crew")
+                .selectOnly("name", "flights.crew.crewSize")
+                .generateSelectClause(new ANSISQLDialect());
+        assertEquals("SELECT\n" +
+                "\"%root\".id AS \"%root.id\",\n" +
+                "\"%root\".name AS \"%root.name\",\n" +
+                "\"flights\".flightnumber AS \"%root.flights.flightnumber\",\n" +
+                "\"flights.crew\".crewid AS \"%root.flights.crew.crewid\",\n" +
+                "\"flights.crew\".crewnumber AS \"%root.flights.crew.crewnumber\"\n" +
+                " FROM airplanes AS \"%root\"", check);
+    }
+
+    @Test
+    void testSelectRelationGeneration(){
+        Airplane a1 = new Airplane();
+        a1.setId(1);
+        Airplane a2 = new Airplane();
+        a2.setId(2);
+        PreparedStatementQuery query = QueryBuilder.selectRelation(Airplane.class, "flights", List.of(a1, a2)).buildPrepared(new ANSISQLDialect());
+        assertEquals("SELECT\n" +
+                "\"%root\".id AS \"%root.id\",\n" +
+                "\"flights\".flightnumber AS \"%root.flights.flightnumber\",\n" +
+                "\"flights\".flighttype AS \"%root.flights.flighttype\"\n" +
+                " FROM airplanes AS \"%root\"\n" +
+                "INNER JOIN airplanes_flights AS \"airplanes_flights\" ON ((\"airplanes_flights\".id) = (\"%root\".id))\n" +
+                "INNER JOIN flights AS \"flights\" ON ((\"flights\".flightnumber) = (\"airplanes_flights\".flightnumber))\n" +
+                "WHERE (\"%root\".id) IN (?,?)\n" +
+                "ORDER BY \"flights\".flightnumber ASC\n" +
+                ";", query.getQuery());
+        assertEquals(List.of(new Literal.LongCnst(1), new Literal.LongCnst(2)), query.getArguments());
+    }
+
+    @Test
+    void testSubselectFetchQueryGeneration(){
+        QueryBuilder qb = QueryBuilder.select(Crew.class)
+                .fetch("finished_flights", FetchMode.SELECT_IN)
+                .fetch("finished_flights.airplanes", FetchMode.SUBSELECT)
+                .where(field("crewSize").gt(lit(5)));
+        Flight flight = new Flight();
+        flight.setFlightNumber("F1");
+        String check = qb.fetchQuery("finished_flights.airplanes", List.of(flight)).build(new ANSISQLDialect());
+        assertEquals("SELECT\n" +
+                "\"%root\".flightnumber AS \"%root.flightnumber\",\n" +
+                "\"airplanes\".id AS \"%root.airplanes.id\",\n" +
+                "\"airplanes\".name AS \"%root.airplanes.name\"\n" +
+                " FROM flights AS \"%root\"\n" +
+                "INNER JOIN airplanes_flights AS \"airplanes_flights\" ON ((\"airplanes_flights\".flightnumber) = (\"%root\".flightnumber))\n" +
+                "INNER JOIN airplanes AS \"airplanes\" ON ((\"airplanes\".id) = (\"airplanes_flights\".id))\n" +
+                "WHERE (\"%root\".flightnumber) IN \n" +
+                "(SELECT\n" +
+                "\"finished_flights\".flightnumber AS \"%root.finished_flights.flightnumber\"\n" +
+                " FROM crews AS \"%root\"\n" +
+                "INNER JOIN flights AS \"finished_flights\" ON ((\"finished_flights\".fk_flights) = (\"%root\".crewid))\n" +
+                "WHERE (\"%root\".crewSize) > (5)\n" +
+                ")\n" +
+                "ORDER BY \"airplanes\".id ASC\n" +
+                ";", check);
+    }
+
+    @Test
+    void testJsonFetchGeneration(){
+        String check = QueryBuilder.select(Crew.class)
+                .fetch("finished_flights", FetchMode.JSON)
+                .generateSelectClause(new ANSISQLDialect());
+        assertEquals("SELECT\n" +
+                "\"%root\".crewid AS \"%root.crewid\",\n" +
+                "\"%root\".crewnumber AS \"%root.crewnumber\",\n" +
+                "(SELECT JSON_ARRAYAGG(JSON_OBJECT(KEY 'flightnumber' VALUE \"%json\".flightnumber, KEY 'flighttype' VALUE \"%json\".flighttype) ORDER BY \"%json\".flightnumber)\n" +
+                " FROM flights AS \"%json\"\n" +
+                " WHERE (\"%json\".fk_flights) = (\"%root\".crewid)) AS \"%json:%root.finished_flights\"\n" +
+                " FROM crews AS \"%root\"", check);
+    }
+
+    @Test
+    void testPostgresJsonFetchGeneration(){
+        String check = QueryBuilder.select(Crew.class)
+                .fetch("finished_flights", FetchMode.JSON)
+                .generateSelectClause(new PostgreSQLDialect());
+        assertEquals("SELECT\n" +
+                "\"%root\".crewid AS \"%root.crewid\",\n" +
+                "\"%root\".crewnumber AS \"%root.crewnumber\",\n" +
+                "(SELECT json_agg(json_build_object('flightnumber', \"%json\".flightnumber, 'flighttype', \"%json\".flighttype) ORDER BY \"%json\".flightnumber)\n" +
+                " FROM flights AS \"%json\"\n" +
+                " WHERE (\"%json\".fk_flights) = (\"%root\".crewid)) AS \"%json:%root.finished_flights\"\n" +
+                " FROM crews AS \"%root\"", check);
+    }
+
+    @Test
+    void testLimitPerParentJoinGeneration(){
+        String check = QueryBuilder.select(Crew.class)
+                .join("finished_flights", Join.LEFT)
+                .limitPerParent(3, desc(field("finished_flights.flightType")))
+                .generateJoinClauses(new ANSISQLDialect());
+        assertEquals("LEFT JOIN (SELECT \"finished_flights\".*, ROW_NUMBER() OVER (PARTITION BY \"finished_flights\".fk_flights ORDER BY \"finished_flights\".flightType DESC,\"finished_flights\".flightnumber ASC) AS \"%row\" FROM flights AS \"finished_flights\") AS \"finished_flights\" ON ((\"finished_flights\".fk_flights) = (\"%root\".crewid) AND \"finished_flights\".\"%row\" <= 3)\n", check);
+    }
+
+    @Test
+    void testRangeQueryGeneration(){
+        QueryBuilder qb = QueryBuilder.select(Crew.class).where(field("crewSize").gt(lit(5)));
+        assertEquals("SELECT\n" +
+                "MIN(\"%root\".crewid) AS low,\n" +
+                "MAX(\"%root\".crewid) AS high\n" +
+                " FROM crews AS \"%root\"\n" +
+                "WHERE (\"%root\".crewSize) > (5)\n" +
+                ";", qb.toRangeQuery("crewID").build(new ANSISQLDialect()));
+        assertEquals("SELECT\n" +
+                "\"%root\".crewid AS \"%root.crewid\",\n" +
+                "\"%root\".crewnumber AS \"%root.crewnumber\"\n" +
+                " FROM crews AS \"%root\"\n" +
+                "WHERE ((\"%root\".crewSize) > (5)) AND (((\"%root\".crewid) < (10)) OR (\"%root\".crewid IS NULL))\n" +
+                ";", qb.buildRange(new ANSISQLDialect(), "crewID", null, 10L));
+        assertEquals("SELECT\n" +
+                "\"%root\".crewid AS \"%root.crewid\",\n" +
+                "\"%root\".crewnumber AS \"%root.crewnumber\"\n" +
+                " FROM crews AS \"%root\"\n" +
+                "WHERE ((\"%root\".crewSize) > (5)) AND ((NOT ((\"%root\".crewid) < (10))) AND ((\"%root\".crewid) < (20)))\n" +
+                ";", qb.buildRange(new ANSISQLDialect(), "crewID", 10L, 20L));
+    }
+
+    @Test
+    void testGroupedByEntityOrdering(){
+        QueryBuilder qb = QueryBuilder.select(Airplane.class).join("flights").orderBy(desc(field("id")));
+        assertEquals("SELECT\n" +
+                "\"%root\".id AS \"%root.id\",\n" +
+                "\"%root\".name AS \"%root.name\",\n" +
+                "\"flights\".flightnumber AS \"%root.flights.flightnumber\",\n" +
+                "\"flights\".flighttype AS \"%root.flights.flighttype\"\n" +
+                " FROM airplanes AS \"%root\"\n" +
+                "INNER JOIN airplanes_flights AS \"airplanes_flights\" ON ((\"airplanes_flights\".id) = (\"%root\".id))\n" +
+                "INNER JOIN flights AS \"flights\" ON ((\"flights\".flightnumber) = (\"airplanes_flights\".flightnumber))\n" +
+                "ORDER BY \"%root\".id DESC,\"%root\".id ASC,\"flights\".flightnumber ASC\n" +
+                ";", qb.buildGroupedByEntity(new ANSISQLDialect()));
+    }
+
+    @Test
+    void testCompositeInSubqueryCondition(){
+        String subquery = "SELECT a, b FROM parents WHERE id = ?";
+        assertEquals("(x, y) IN (SELECT a, b FROM parents WHERE id = ?)",
+                new ANSISQLDialect().generateInSubqueryCondition("children", List.of("x", "y"), subquery));
+        assertEquals("x IN (SELECT a, b FROM parents WHERE id = ?)",
+                new MSSQLServerDialect().generateInSubqueryCondition("children", List.of("x"), subquery));
+        assertEquals("EXISTS (SELECT 1 FROM (SELECT a, b FROM parents WHERE id = ?) AS \"%keys\" (x, y) WHERE \"%keys\".x = children.x AND \"%keys\".y = children.y)",
+                new MSSQLServerDialect().generateInSubqueryCondition("children", List.of("x", "y"), subquery));
+    }
 }
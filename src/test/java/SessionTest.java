@@ -1,14 +1,58 @@
 import layering.*;
 import org.junit.jupiter.api.Test;
+import raf.thesis.ConnectionSupplier;
+import raf.thesis.DataCopier;
+import raf.thesis.DataCopyOptions;
+import raf.thesis.DataCopyResult;
+import raf.thesis.LazyList;
 import raf.thesis.Session;
+import raf.thesis.mapper.ColumnarResult;
+import raf.thesis.mapper.CsvExportOptions;
+import raf.thesis.mapper.CsvExportResult;
+import raf.thesis.mapper.CsvImportOptions;
+import raf.thesis.mapper.CsvImportResult;
+import raf.thesis.query.FetchMode;
+import raf.thesis.query.Join;
+import raf.thesis.query.Page;
 import raf.thesis.query.QueryBuilder;
+import raf.thesis.query.bulk.BatchBulkLoader;
+import raf.thesis.query.bulk.H2CsvReadLoader;
+import raf.thesis.query.bulk.MariaDBLoadDataLoader;
+import raf.thesis.query.bulk.PostgresCopyLoader;
+import raf.thesis.query.dialect.ANSISQLDialect;
+import raf.thesis.query.dialect.MariaDBDialect;
+import raf.thesis.query.exceptions.InvalidRelationPathException;
 import util.multidb.MultiDBTest;
 
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.Reader;
+import java.io.StringWriter;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.ResultSet;
 import java.sql.SQLException;
+import java.sql.Statement;
 import java.time.LocalDate;
 import java.time.LocalDateTime;
 import java.time.LocalTime;
+import java.util.Comparator;
+import java.util.IdentityHashMap;
+import java.util.Collections;
+import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import java.util.zip.GZIPInputStream;
 
 import static org.assertj.core.api.AssertionsForClassTypes.assertThat;
 import static org.junit.jupiter.api.Assertions.*;
@@ -280,4 +324,966 @@ public class SessionTest {
         Employee Bruce = new Employee(104, "Bruce", "Ernst", LocalDate.of(2007, 5, 21));
         assertThat(employees).usingRecursiveComparison().isEqualTo(List.of(Steven, Neena, Lex, Alexander, Bruce));
     }
+
+    //paging tests
+    @Test
+    void testExecutePage(Session session) throws SQLException {
+        QueryBuilder qb = QueryBuilder.select(Employee.class)
+                .join("department", Join.LEFT)
+                .orderBy(asc(field("employee_id")))
+                .limit(2)
+                .offset(2);
+        Page<Employee> page = session.executePage(qb, Employee.class);
+        Employee Lex = new Employee(102, "Lex", "De Haan", LocalDate.of(2001, 1, 13));
+        Employee Alexander = new Employee(103, "Alexander", "Hunold", LocalDate.of(2006, 1, 3));
+        Lex.setDepartment(new Department(30, "Purchasing"));
+        Alexander.setDepartment(new Department(30, "Purchasing"));
+        assertEquals(5, page.getTotal());
+        assertThat(page.getContent()).usingRecursiveComparison().isEqualTo(List.of(Lex, Alexander));
+    }
+
+    @Test
+    void testExecutePageBeyondLastRow(Session session) throws SQLException {
+        QueryBuilder qb = QueryBuilder.select(Employee.class)
+                .orderBy(asc(field("employee_id")))
+                .limit(2)
+                .offset(10);
+        Page<Employee> page = session.executePage(qb, Employee.class);
+        assertTrue(page.getContent().isEmpty());
+        assertEquals(5, page.getTotal());
+    }
+
+    @Test
+    void testCountWithCollectionJoin(Session session) throws SQLException {
+        QueryBuilder qb = QueryBuilder.select(Department.class)
+                .join("employees")
+                .orderBy(asc(field("department_id")));
+        assertEquals(3, session.count(qb));
+    }
+
+    //existence and single row tests
+    @Test
+    void testExists(Session session) throws SQLException {
+        QueryBuilder found = QueryBuilder.select(Employee.class)
+                .join("department")
+                .where(field("department.department_name").eq(lit("Marketing")));
+        QueryBuilder missing = QueryBuilder.select(Employee.class)
+                .where(field("first_name").like("Z%"));
+        assertTrue(session.exists(found));
+        assertFalse(session.exists(missing));
+        //five employees, the offset leaves none
+        assertTrue(session.exists(QueryBuilder.select(Employee.class).offset(4)));
+        assertFalse(session.exists(QueryBuilder.select(Employee.class).offset(5)));
+    }
+
+    @Test
+    void testSingleRowPDOSelect(Session session) throws SQLException {
+        QueryBuilder qb = QueryBuilder.select(
+                        Department.class,
+                        aliasedColumn(field("department_id"), "department_id"),
+                        aliasedColumn(max(field("employees.employee_id")), "maxEmployeeId"))
+                .join("employees")
+                .groupBy(field("department_id"))
+                .orderBy(desc(field("department_id")));
+        Optional<DepartmentsWithMaxEmployeeIdPDO> result = session.executeSingleRowPDOSelect(qb, DepartmentsWithMaxEmployeeIdPDO.class);
+        assertTrue(result.isPresent());
+        assertThat(result.get()).usingRecursiveComparison().isEqualTo(new DepartmentsWithMaxEmployeeIdPDO(30, 103));
+
+        QueryBuilder empty = QueryBuilder.select(
+                        Department.class,
+                        aliasedColumn(field("department_id"), "department_id"))
+                .where(field("department_id").gt(lit(100)));
+        assertTrue(session.executeSingleRowPDOSelect(empty, DepartmentsWithMaxEmployeeIdPDO.class).isEmpty());
+    }
+
+    @Test
+    void testSelectOnlyProjection(Session session) throws SQLException {
+        QueryBuilder qb = QueryBuilder.select(Employee.class)
+                .join("department")
+                .selectOnly("firstName", "department.departmentName")
+                .where(field("employee_id").eq(lit(101)));
+        Employee expected = new Employee();
+        expected.setEmployeeId(101);
+        expected.setFirstName("Neena");
+        expected.setDepartment(new Department(20, "Marketing"));
+        List<Employee> employees = session.executeSelect(qb, Employee.class);
+        assertThat(employees.getFirst()).usingRecursiveComparison().isEqualTo(expected);
+    }
+
+    @Test
+    void testLobColumnsAreSkippedByDefault(Session session) throws SQLException {
+        byte[] payload = {1, 2, 3, 4, 5};
+        session.insert(new Document(1, "Report", "Quarterly report body", payload));
+
+        Document loaded = session.executeSelect(QueryBuilder.select(Document.class), Document.class).getFirst();
+        assertEquals("Report", loaded.getTitle());
+        assertNull(loaded.getContent());
+        assertNull(loaded.getPayload());
+
+        Document full = session.executeSelect(QueryBuilder.select(Document.class).selectOnly("title", "content", "payload"), Document.class).getFirst();
+        assertEquals("Quarterly report body", full.getContent());
+        assertArrayEquals(payload, full.getPayload());
+    }
+
+    @Test
+    void testUpdateKeepsUnloadedLobs(Session session) throws SQLException {
+        byte[] payload = {1, 2, 3};
+        session.insert(new Document(1, "Report", "Quarterly report body", payload));
+        session.insert(new Document(2, "Memo", "Memo body", payload));
+
+        Document loaded = session.executeSelect(QueryBuilder.select(Document.class).where(field("document_id").eq(lit(1))), Document.class).getFirst();
+        loaded.setTitle("Final report");
+        session.update(loaded);
+        Document memo = session.executeSelect(QueryBuilder.select(Document.class).where(field("document_id").eq(lit(2))), Document.class).getFirst();
+        memo.setTitle("Final memo");
+        session.unitOfWork(uow -> uow.registerDirty(memo));
+
+        List<Document> documents = session.executeSelect(QueryBuilder.select(Document.class).selectOnly("title", "content", "payload")
+                .orderBy(asc(field("document_id"))), Document.class);
+        assertEquals("Final report", documents.getFirst().getTitle());
+        assertEquals("Quarterly report body", documents.getFirst().getContent());
+        assertArrayEquals(payload, documents.getFirst().getPayload());
+        assertEquals("Final memo", documents.getLast().getTitle());
+        assertEquals("Memo body", documents.getLast().getContent());
+        assertArrayEquals(payload, documents.getLast().getPayload());
+    }
+
+    @Test
+    void testLobStreaming(Session session) throws SQLException, IOException {
+        byte[] payload = new byte[64 * 1024];
+        for (int i = 0; i < payload.length; i++)
+            payload[i] = (byte) i;
+        Document document = new Document(1, "Archive", "x".repeat(10_000), payload);
+        session.insert(document);
+
+        try (InputStream in = session.openStream(document, "payload")) {
+            assertArrayEquals(payload, in.readAllBytes());
+        }
+        try (Reader reader = session.openReader(document, "content")) {
+            StringWriter out = new StringWriter();
+            reader.transferTo(out);
+            assertEquals(document.getContent(), out.toString());
+        }
+        assertNull(session.openStream(new Document(2, null, null, null), "payload"));
+    }
+
+    @Test
+    void testLazyCollectionsLoadTogether(Session session) throws SQLException {
+        List<LazyDepartment> departments = session.executeSelect(QueryBuilder.select(LazyDepartment.class).orderBy(asc(field("department_id"))), LazyDepartment.class);
+        assertEquals(4, departments.size());
+        assertTrue(departments.stream().allMatch(d -> d.getEmployees() instanceof LazyList<?> list && !list.isInitialized()));
+
+        List<LazyEmployee> marketing = departments.get(1).getEmployees();
+        assertEquals(List.of(101, 104), marketing.stream().map(LazyEmployee::getEmployeeId).toList());
+        //siblings are initialized by the same query
+        assertTrue(departments.stream().allMatch(d -> ((LazyList<?>) d.getEmployees()).isInitialized()));
+        assertTrue(departments.get(3).getEmployees().isEmpty());
+
+        //related objects get lazy collections as well
+        LazyEmployee neena = marketing.getFirst();
+        assertFalse(((LazyList<?>) neena.getProjects()).isInitialized());
+        assertEquals(List.of(1), neena.getProjects().stream().map(Project::getProjectId).toList());
+        assertTrue(((LazyList<?>) marketing.get(1).getProjects()).isInitialized());
+    }
+
+    @Test
+    void testJoinedLazyCollectionIsLoadedEagerly(Session session) throws SQLException {
+        List<LazyDepartment> departments = session.executeSelect(QueryBuilder.select(LazyDepartment.class).join("employees")
+                .where(field("department_id").eq(lit(30))), LazyDepartment.class);
+        List<LazyEmployee> employees = departments.getFirst().getEmployees();
+        assertFalse(employees instanceof LazyList<?>);
+        assertEquals(2, employees.size());
+        LazyEmployee lex = employees.stream().filter(e -> e.getEmployeeId() == 102).findFirst().orElseThrow();
+        assertEquals(List.of(3, 5), lex.getProjects().stream().map(Project::getProjectId).toList());
+    }
+
+    @Test
+    void testFetchWithAdditionalQueries(Session session) throws SQLException {
+        for (FetchMode mode : List.of(FetchMode.SELECT_IN, FetchMode.SUBSELECT)) {
+            QueryBuilder qb = QueryBuilder.select(Department.class)
+                    .fetch("employees", mode)
+                    .fetch("employees.projects", mode)
+                    .where(field("department_id").gt(lit(10)))
+                    .orderBy(asc(field("department_id")));
+            List<Department> departments = session.executeSelect(qb, Department.class);
+            assertEquals(List.of(20, 30, 40), departments.stream().map(Department::getDepartmentId).toList());
+            assertEquals(List.of(101, 104), departments.getFirst().getEmployees().stream().map(Employee::getEmployeeId).toList());
+            assertTrue(departments.getLast().getEmployees().isEmpty());
+            Employee lex = departments.get(1).getEmployees().getFirst();
+            assertEquals(102, lex.getEmployeeId());
+            assertEquals(List.of(3, 5), lex.getProjects().stream().map(Project::getProjectId).toList());
+        }
+    }
+
+    @Test
+    void testFetchAfterJoin(Session session) throws SQLException {
+        QueryBuilder qb = QueryBuilder.select(Employee.class)
+                .fetch("department", FetchMode.JOIN)
+                .fetch("department.employees", FetchMode.SUBSELECT)
+                .where(field("employee_id").eq(lit(102)));
+        Employee lex = session.executeSelect(qb, Employee.class).getFirst();
+        assertEquals("Purchasing", lex.getDepartment().getDepartmentName());
+        assertEquals(List.of(102, 103), lex.getDepartment().getEmployees().stream().map(Employee::getEmployeeId).toList());
+    }
+
+    @Test
+    void testLoadRelationOfLoadedEntities(Session session) throws SQLException {
+        List<Department> departments = session.executeSelect(QueryBuilder.select(Department.class).orderBy(asc(field("department_id"))), Department.class);
+        session.loadRelation(departments, "employees.projects");
+        assertEquals(List.of(100), departments.getFirst().getEmployees().stream().map(Employee::getEmployeeId).toList());
+        assertEquals(List.of(1, 2, 5), departments.getFirst().getEmployees().getFirst().getProjects().stream().map(Project::getProjectId).toList());
+        assertEquals(List.of(102, 103), departments.get(2).getEmployees().stream().map(Employee::getEmployeeId).toList());
+        assertTrue(departments.getLast().getEmployees().isEmpty());
+
+        List<Employee> employees = session.executeSelect(QueryBuilder.select(Employee.class).where(field("employee_id").lt(lit(102))), Employee.class);
+        session.loadRelation(employees, "department");
+        assertEquals(List.of("Administration", "Marketing"), employees.stream().map(e -> e.getDepartment().getDepartmentName()).sorted().toList());
+    }
+
+    @Test
+    void testLoadRelationKeepsLoadedIntermediateObjects(Session session) throws SQLException {
+        List<Department> departments = session.executeSelect(QueryBuilder.select(Department.class).join("employees")
+                .where(field("department_id").eq(lit(30))), Department.class);
+        Employee lex = departments.getFirst().getEmployees().stream().filter(e -> e.getEmployeeId() == 102).findFirst().orElseThrow();
+        session.loadRelation(departments, "employees.projects");
+        assertSame(lex, departments.getFirst().getEmployees().stream().filter(e -> e.getEmployeeId() == 102).findFirst().orElseThrow());
+        assertEquals(List.of(3, 5), lex.getProjects().stream().map(Project::getProjectId).toList());
+    }
+
+    @Test
+    void testLoadRelationWithQuotedStringKey(Session session) throws SQLException {
+        Country quoted = new Country("Q'", "Quoted");
+        session.insert(quoted);
+        Location harbour = new Location(1400, "Port O'Call");
+        harbour.setCountry(quoted);
+        session.insert(harbour);
+
+        //keys are bound as parameters, a quote in a key can't end the query's string literal
+        Country usa = new Country("US", "United States of America");
+        session.loadRelation(List.of(quoted, usa), "locations");
+        assertEquals(List.of("Port O'Call"), quoted.getLocations().stream().map(Location::getCity).toList());
+        assertEquals(List.of(1000), usa.getLocations().stream().map(Location::getLocationId).toList());
+    }
+
+    @Test
+    void testJsonFetch(Session session) throws SQLException {
+        QueryBuilder qb = QueryBuilder.select(Department.class)
+                .fetch("employees", FetchMode.JSON)
+                .orderBy(asc(field("department_id")));
+        List<Department> departments = session.executeSelect(qb, Department.class);
+        assertEquals(4, departments.size());
+        List<Employee> marketing = departments.get(1).getEmployees();
+        assertEquals(List.of(101, 104), marketing.stream().map(Employee::getEmployeeId).toList());
+        Employee expected = new Employee(101, "Neena", "Kochhar", LocalDate.of(2005, 9, 21));
+        assertThat(marketing.getFirst()).usingRecursiveComparison().isEqualTo(expected);
+        assertTrue(departments.getLast().getEmployees().isEmpty());
+
+        QueryBuilder manyToMany = QueryBuilder.select(Employee.class)
+                .join("department")
+                .fetch("projects", FetchMode.JSON)
+                .fetch("department.employees", FetchMode.JSON)
+                .where(field("employee_id").eq(lit(100)));
+        Employee steven = session.executeSelect(manyToMany, Employee.class).getFirst();
+        assertEquals(List.of("HR Onboarding System", "Internal Payroll Platform", "Cloud Migration Initiative"),
+                steven.getProjects().stream().map(Project::getProjectName).toList());
+        assertEquals("Administration", steven.getDepartment().getDepartmentName());
+        assertEquals(List.of(100), steven.getDepartment().getEmployees().stream().map(Employee::getEmployeeId).toList());
+    }
+
+    @Test
+    void testLimitPerParent(Session session) throws SQLException {
+        QueryBuilder qb = QueryBuilder.select(Department.class)
+                .join("employees", Join.LEFT)
+                .limitPerParent(1, desc(field("employees.salary")))
+                .orderBy(asc(field("department_id")));
+        List<Department> departments = session.executeSelect(qb, Department.class);
+        assertEquals(4, departments.size());
+        assertEquals(List.of(100), departments.get(0).getEmployees().stream().map(Employee::getEmployeeId).toList());
+        assertEquals(List.of(101), departments.get(1).getEmployees().stream().map(Employee::getEmployeeId).toList());
+        assertEquals(List.of(102), departments.get(2).getEmployees().stream().map(Employee::getEmployeeId).toList());
+        assertNull(departments.get(3).getEmployees());
+    }
+
+    @Test
+    void testParallelScan(Session session) throws SQLException {
+        try (Stream<Employee> employees = session.parallelScan(QueryBuilder.select(Employee.class), Employee.class, 3)) {
+            assertEquals(Set.of(100, 101, 102, 103, 104), employees.map(Employee::getEmployeeId).collect(Collectors.toSet()));
+        }
+        QueryBuilder filtered = QueryBuilder.select(Employee.class).where(field("employee_id").gt(lit(100)));
+        try (Stream<Employee> employees = session.parallelScan(filtered, Employee.class, "employeeId", 8, Comparator.comparing(Employee::getHireDate))) {
+            assertEquals(List.of(102, 101, 103, 104), employees.map(Employee::getEmployeeId).toList());
+        }
+        //closing a partly consumed scan stops the partitions
+        try (Stream<Employee> employees = session.parallelScan(QueryBuilder.select(Employee.class), Employee.class, "employeeId", 5, Comparator.comparing(Employee::getEmployeeId))) {
+            assertEquals(100, employees.findFirst().orElseThrow().getEmployeeId());
+        }
+    }
+
+    @Test
+    void testParallelScanWithJoinedCollections(Session session) throws SQLException {
+        QueryBuilder qb = QueryBuilder.select(Department.class).join("employees", Join.LEFT).orderBy(asc(field("department_id")));
+        try (Stream<Department> departments = session.parallelScan(qb, Department.class, "department_id", 2, Comparator.comparing(Department::getDepartmentId))) {
+            List<Department> result = departments.toList();
+            assertEquals(List.of(10, 20, 30, 40), result.stream().map(Department::getDepartmentId).toList());
+            assertEquals(2, result.get(2).getEmployees().size());
+        }
+    }
+
+    @Test
+    void testPipelinedMappingKeepsOrder(Session session) throws SQLException {
+        assertMappingMatchesSequential(session, () -> session.usePipelinedMapping(2, 1));
+    }
+
+    //maps a graph and a flat query sequentially and with the mapper set up by useMapper, returns the graph of the latter
+    private static List<Department> assertMappingMatchesSequential(Session session, Runnable useMapper) throws SQLException {
+        QueryBuilder graph = QueryBuilder.select(Department.class).join("employees", Join.LEFT).join("employees.projects", Join.LEFT)
+                .orderBy(asc(field("department_id")), asc(field("employees.employee_id")), asc(field("employees.projects.project_id")));
+        QueryBuilder flat = QueryBuilder.select(Employee.class, aliasedColumn(field("employee_id"), "employee_id"), aliasedColumn(field("first_name"), "first_name"))
+                .orderBy(desc(field("salary")));
+        List<Department> expectedGraph = session.executeSelect(graph, Department.class);
+        List<Employee> expectedFlat = session.executePDOSelect(flat, Employee.class);
+        assertEquals(List.of(100, 101, 102, 103, 104), expectedFlat.stream().map(Employee::getEmployeeId).toList());
+
+        useMapper.run();
+        List<Department> departments = session.executeSelect(graph, Department.class);
+        assertEquals(expectedGraph.stream().map(Department::getDepartmentId).toList(), departments.stream().map(Department::getDepartmentId).toList());
+        for (int i = 0; i < departments.size(); i++) {
+            assertEquals(expectedGraph.get(i).getEmployees().stream().map(Employee::getEmployeeId).toList(),
+                    departments.get(i).getEmployees().stream().map(Employee::getEmployeeId).toList());
+        }
+        assertEquals(List.of(1, 2, 5), departments.getFirst().getEmployees().getFirst().getProjects().stream().map(Project::getProjectId).toList());
+        assertEquals(expectedFlat.stream().map(Employee::getEmployeeId).toList(),
+                session.executePDOSelect(flat, Employee.class).stream().map(Employee::getEmployeeId).toList());
+        return departments;
+    }
+
+    @Test
+    void testParallelMappingKeepsOrderAndIdentity(Session session) throws SQLException {
+        List<Department> departments = assertMappingMatchesSequential(session, () -> session.useParallelMapping(4, 2));
+        //same project reached through different partitions is a single instance
+        Project payroll = departments.getFirst().getEmployees().getFirst().getProjects().get(1);
+        assertSame(payroll, departments.get(1).getEmployees().get(1).getProjects().getFirst());
+    }
+
+    @Test
+    void testExecuteColumnar(Session session) throws SQLException {
+        QueryBuilder qb = QueryBuilder.select(Department.class,
+                        aliasedColumn(field("department_id"), "department_id"),
+                        aliasedColumn(field("department_name"), "departmentName"),
+                        aliasedColumn(count(field("employees.employee_id")), "employeeCount"),
+                        aliasedColumn(max(field("employees.employee_id")), "maxEmployeeId"))
+                .join("employees", Join.LEFT)
+                .groupBy(field("department_id"), field("department_name"))
+                .orderBy(asc(field("department_id")));
+        ColumnarResult result = session.executeColumnar(qb, DepartmentStatsPDO.class);
+        assertEquals(4, result.size());
+        assertArrayEquals(new int[]{10, 20, 30, 40}, result.ints("departmentId"));
+        assertArrayEquals(new long[]{1, 2, 2, 0}, result.longs("employeeCount"));
+        assertArrayEquals(new int[]{100, 104, 103, 0}, result.ints("maxEmployeeId"));
+        assertFalse(result.isNull("maxEmployeeId", 2));
+        assertTrue(result.isNull("maxEmployeeId", 3));
+        assertNull(result.get("maxEmployeeId", 3));
+        assertEquals("Marketing", result.string("departmentName", 1));
+        assertEquals(List.of("Administration", "Marketing", "Purchasing", "Human Resources"), result.dictionary("departmentName"));
+        assertArrayEquals(new int[]{0, 1, 2, 3}, result.codes("departmentName"));
+    }
+
+    @Test
+    void testForEachRowReusesInstance(Session session) throws SQLException {
+        List<Integer> ids = new ArrayList<>();
+        Set<Employee> instances = Collections.newSetFromMap(new IdentityHashMap<>());
+        QueryBuilder qb = QueryBuilder.select(Employee.class, aliasedColumn(field("employee_id"), "employee_id"), aliasedColumn(field("first_name"), "first_name"))
+                .orderBy(asc(field("employee_id")));
+        List<String> names = new ArrayList<>();
+        session.forEachRow(qb, Employee.class, employee -> {
+            ids.add(employee.getEmployeeId());
+            names.add(employee.getFirstName());
+            instances.add(employee);
+        });
+        assertEquals(List.of(100, 101, 102, 103, 104), ids);
+        assertEquals(List.of("Steven", "Neena", "Lex", "Alexander", "Bruce"), names);
+        assertEquals(1, instances.size());
+    }
+
+    @Test
+    void testWriteJson(Session session) throws SQLException {
+        QueryBuilder qb = QueryBuilder.select(Department.class)
+                .join("employees", Join.LEFT)
+                .where(field("department_id").gt(lit(20)));
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        assertEquals(2, session.writeJson(qb, Department.class, out));
+        assertEquals("[{\"departmentId\":30,\"departmentName\":\"Purchasing\",\"employees\":[" +
+                "{\"employeeId\":102,\"firstName\":\"Lex\",\"lastName\":\"De Haan\",\"hireDate\":\"2001-01-13\"}," +
+                "{\"employeeId\":103,\"firstName\":\"Alexander\",\"lastName\":\"Hunold\",\"hireDate\":\"2006-01-03\"}]}," +
+                "{\"departmentId\":40,\"departmentName\":\"Human Resources\",\"employees\":[]}]", out.toString(StandardCharsets.UTF_8));
+
+        qb = QueryBuilder.select(Employee.class)
+                .join("department")
+                .join("projects")
+                .where(field("employee_id").lt(lit(102)));
+        out = new ByteArrayOutputStream();
+        assertEquals(2, session.writeJson(qb, Employee.class, out));
+        assertEquals("[{\"employeeId\":100,\"firstName\":\"Steven\",\"lastName\":\"King\",\"hireDate\":\"2003-06-17\"," +
+                "\"department\":{\"departmentId\":10,\"departmentName\":\"Administration\"}," +
+                "\"projects\":[{\"projectId\":1,\"projectName\":\"HR Onboarding System\"},{\"projectId\":2,\"projectName\":\"Internal Payroll Platform\"}," +
+                "{\"projectId\":5,\"projectName\":\"Cloud Migration Initiative\"}]}," +
+                "{\"employeeId\":101,\"firstName\":\"Neena\",\"lastName\":\"Kochhar\",\"hireDate\":\"2005-09-21\"," +
+                "\"department\":{\"departmentId\":20,\"departmentName\":\"Marketing\"}," +
+                "\"projects\":[{\"projectId\":1,\"projectName\":\"HR Onboarding System\"}]}]", out.toString(StandardCharsets.UTF_8));
+
+        qb = QueryBuilder.select(Department.class, aliasedColumn(field("department_name"), "departmentName"),
+                        aliasedColumn(count(field("employees.employee_id")), "employeeCount"))
+                .join("employees")
+                .groupBy(field("department_name"))
+                .orderBy(asc(field("department_name")));
+        out = new ByteArrayOutputStream();
+        assertEquals(3, session.writeJson(qb, DepartmentStatsPDO.class, out));
+        assertEquals("[{\"departmentName\":\"Administration\",\"employeeCount\":1}," +
+                "{\"departmentName\":\"Marketing\",\"employeeCount\":2}," +
+                "{\"departmentName\":\"Purchasing\",\"employeeCount\":2}]", out.toString(StandardCharsets.UTF_8));
+    }
+
+    @Test
+    void testExportCsv(Session session) throws SQLException, IOException {
+        QueryBuilder qb = QueryBuilder.select(Department.class).orderBy(asc(field("department_id")));
+        Path target = Files.createTempFile("departments", ".csv");
+        try {
+            CsvExportResult result = session.exportCsv(qb, target);
+            assertEquals(4, result.rows());
+            assertEquals(Files.size(target), result.bytes());
+            assertEquals("department_id,department_name\r\n" +
+                    "10,Administration\r\n" +
+                    "20,Marketing\r\n" +
+                    "30,Purchasing\r\n" +
+                    "40,Human Resources\r\n", Files.readString(target));
+
+            qb = QueryBuilder.select(Employee.class).where(field("employee_id").eq(lit(102)));
+            session.exportCsv(qb, target, CsvExportOptions.defaults().delimiter(' ').header(false).gzip(true).fetchSize(2));
+            try (InputStream in = new GZIPInputStream(Files.newInputStream(target))) {
+                assertEquals("102 Lex \"De Haan\" 2001-01-13\r\n", new String(in.readAllBytes(), StandardCharsets.UTF_8));
+            }
+        } finally {
+            Files.delete(target);
+        }
+    }
+
+    @Test
+    void testImportCsv(Session session) throws SQLException, IOException {
+        Path source = Files.createTempFile("employees", ".csv");
+        try {
+            Files.writeString(source, "employee_id,first_name,last_name,hire_date,department\r\n" +
+                    "200,Ana,\"Smith, Jr\",2020-01-02,10\r\n" +
+                    "201,Bob,Jones,not-a-date,20\r\n" +
+                    "100,Dup,King,2003-06-17,10\r\n" +
+                    "202,Cleo,\"Multi\nLine\",2021-05-05,30\r\n" +
+                    "\r\n" +
+                    "203,Dan,Brown,2022-03-04,\r\n");
+            AtomicLong progress = new AtomicLong();
+            CsvImportResult result = session.importCsv(source, Employee.class, CsvImportOptions.defaults()
+                    .batchSize(2).parallelism(2).progress(imported -> progress.accumulateAndGet(imported, Math::max)));
+            assertEquals(3, result.imported());
+            assertEquals(3, progress.get());
+            assertEquals(List.of(3L, 4L), result.rejected().stream().map(CsvImportResult.RejectedRow::line).toList());
+            assertEquals("201,Bob,Jones,not-a-date,20", result.rejected().getFirst().content());
+
+            List<Employee> imported = session.executeSelect(QueryBuilder.select(Employee.class)
+                    .join("department", Join.LEFT)
+                    .where(field("employee_id").gt(lit(199)))
+                    .orderBy(asc(field("employee_id"))), Employee.class);
+            assertEquals(List.of(200, 202, 203), imported.stream().map(Employee::getEmployeeId).toList());
+            assertEquals("Smith, Jr", imported.getFirst().getLastName());
+            assertEquals(10, imported.getFirst().getDepartment().getDepartmentId());
+            assertEquals("Multi\nLine", imported.get(1).getLastName());
+            assertEquals(LocalDate.of(2022, 3, 4), imported.get(2).getHireDate());
+            assertNull(imported.get(2).getDepartment());
+        } finally {
+            Files.delete(source);
+        }
+    }
+
+    @Test
+    void testImportCsvQuoteInsideField(Session session) throws SQLException, IOException {
+        Path source = Files.createTempFile("employees", ".csv");
+        try {
+            //quote inside an unquoted field is a plain character, chunks still end between records
+            Files.writeString(source, "employee_id,first_name,last_name,hire_date\n" +
+                    "220,Ana,12\" pipe,2020-01-02\n" +
+                    "221,Bob,Jones,2021-05-05\n" +
+                    "222,Cleo,\"Multi\nLine\",2022-03-04\n" +
+                    "223,Dan,\"Say \"\"hi\"\"\",2022-03-04\n" +
+                    "224,Eve,Brown,2022-03-04\n");
+            CsvImportResult result = session.importCsv(source, Employee.class, CsvImportOptions.defaults()
+                    .batchSize(2).parallelism(8));
+            assertEquals(5, result.imported());
+            assertTrue(result.rejected().isEmpty());
+
+            List<Employee> imported = session.executeSelect(QueryBuilder.select(Employee.class)
+                    .where(field("employee_id").gt(lit(199)))
+                    .orderBy(asc(field("employee_id"))), Employee.class);
+            assertEquals(List.of("12\" pipe", "Jones", "Multi\nLine", "Say \"hi\"", "Brown"),
+                    imported.stream().map(Employee::getLastName).toList());
+        } finally {
+            Files.delete(source);
+        }
+    }
+
+    @Test
+    void testImportCsvInTransaction(Session session) throws SQLException, IOException {
+        Path source = Files.createTempFile("employees", ".csv");
+        try {
+            Files.writeString(source, "employee_id,first_name,last_name,hire_date\n" +
+                    "210,Ana,Smith,2020-01-02\n" +
+                    "100,Dup,King,2003-06-17\n" +
+                    "211,Bob,Jones,2021-05-05\n" +
+                    "212,Cleo,\"Open,2022-03-04\n" +
+                    "213,Dan,Brown,2022-03-04\n");
+            CsvImportResult result = session.transaction(conn -> {
+                try {
+                    return session.importCsv(source, Employee.class, CsvImportOptions.defaults().batchSize(10));
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+            assertEquals(2, result.imported());
+            assertEquals(List.of(3L, 5L), result.rejected().stream().map(CsvImportResult.RejectedRow::line).toList());
+            assertTrue(result.rejected().getLast().reason().contains("Unterminated"));
+
+            List<Employee> imported = session.executeSelect(QueryBuilder.select(Employee.class)
+                    .where(field("employee_id").gt(lit(199)))
+                    .orderBy(asc(field("employee_id"))), Employee.class);
+            assertEquals(List.of(210, 211), imported.stream().map(Employee::getEmployeeId).toList());
+        } finally {
+            Files.delete(source);
+        }
+    }
+
+    @Test
+    void testBulkLoad(Session session) throws SQLException {
+        session.withConnection(conn -> {
+            String product = conn.getMetaData().getDatabaseProductName().toLowerCase();
+            Class<?> expected = product.contains("h2") ? H2CsvReadLoader.class
+                    : product.contains("postgresql") ? PostgresCopyLoader.class
+                    : BatchBulkLoader.class;
+            assertInstanceOf(expected, new ANSISQLDialect().bulkLoader(conn));
+            if (product.contains("mariadb") || product.contains("mysql"))
+                assertInstanceOf(MariaDBLoadDataLoader.class, new MariaDBDialect().bulkLoader(conn));
+        });
+
+        Employee quoted = new Employee(300, "Shaquille", "O\"Neal, Jr", LocalDate.of(2020, 1, 2));
+        quoted.setDepartment(new Department(10, "Administration"));
+        Employee plain = new Employee(301, "", "Doe", LocalDate.of(2021, 3, 4));
+        assertEquals(2, session.bulkLoad(Employee.class, List.of(quoted, plain)));
+
+        List<Employee> loaded = session.executeSelect(QueryBuilder.select(Employee.class)
+                .join("department", Join.LEFT)
+                .where(field("employee_id").gt(lit(299)))
+                .orderBy(asc(field("employee_id"))), Employee.class);
+        assertEquals(2, loaded.size());
+        assertEquals("O\"Neal, Jr", loaded.getFirst().getLastName());
+        assertEquals(LocalDate.of(2020, 1, 2), loaded.getFirst().getHireDate());
+        assertEquals(10, loaded.getFirst().getDepartment().getDepartmentId());
+        assertEquals("", loaded.get(1).getFirstName());
+        assertNull(loaded.get(1).getDepartment());
+    }
+
+    @Test
+    void testBulkLoadBatchFallback(Session session) throws SQLException {
+        List<Department> departments = List.of(new Department(50, "Shipping"), new Department(60, "IT"), new Department(70, "Public Relations"));
+        assertEquals(3, session.bulkLoad(Department.class, departments, new BatchBulkLoader(new ANSISQLDialect(), 2)));
+
+        List<Department> loaded = session.executeSelect(QueryBuilder.select(Department.class)
+                .where(field("department_id").gt(lit(40)))
+                .orderBy(asc(field("department_id"))), Department.class);
+        assertEquals(List.of("Shipping", "IT", "Public Relations"), loaded.stream().map(Department::getDepartmentName).toList());
+    }
+
+    @Test
+    void testInsertAllSequenceIds(Session session) throws SQLException {
+        Employee king = new Employee(100, "Steven", "King", LocalDate.of(2003, 6, 17));
+        Employee kochhar = new Employee(101, "Neena", "Kochhar", LocalDate.of(2005, 9, 21));
+        Employee ernst = new Employee(104, "Bruce", "Ernst", LocalDate.of(2007, 5, 21));
+        List<Ticket> tickets = List.of(new Ticket("Login fails", List.of(king, kochhar)),
+                new Ticket("Slow reports", List.of(ernst)), new Ticket("Typo in footer", null));
+        assertSame(tickets, session.insertAll(tickets));
+        assertEquals(List.of(1L, 2L, 3L), tickets.stream().map(Ticket::getTicketId).toList());
+
+        //single insert takes the next key of the same block
+        Ticket single = session.insert(new Ticket("Broken link", List.of(king)));
+        assertEquals(4L, single.getTicketId());
+        //preset keys are kept
+        Ticket preset = new Ticket(1000L, "Imported", List.of());
+        session.insertAll(List.of(preset));
+        assertEquals(1000L, preset.getTicketId());
+        //boxed zero is as empty as null, insertGraph agrees with the assigned key
+        Ticket zero = new Ticket(0L, "Zero key", List.of());
+        session.insertGraph(zero);
+        assertEquals(5L, zero.getTicketId());
+        session.insertGraph(zero);
+        assertEquals(6, session.count(QueryBuilder.select(Ticket.class)));
+
+        session.withConnection(conn -> {
+            try (Statement stmt = conn.createStatement();
+                 ResultSet rs = stmt.executeQuery("SELECT ticket_id, employee_id FROM ticket_assignees ORDER BY ticket_id, employee_id")) {
+                List<String> rows = new ArrayList<>();
+                while (rs.next())
+                    rows.add(rs.getLong(1) + "-" + rs.getInt(2));
+                assertEquals(List.of("1-100", "1-101", "2-104", "4-100"), rows);
+            }
+        });
+        List<Ticket> loaded = session.executeSelect(QueryBuilder.select(Ticket.class).orderBy(asc(field("ticket_id"))), Ticket.class);
+        assertEquals(List.of("Login fails", "Slow reports", "Typo in footer", "Broken link", "Zero key", "Imported"),
+                loaded.stream().map(Ticket::getTitle).toList());
+    }
+
+    @Test
+    void testInsertAllTableIds(Session session) throws SQLException {
+        List<Badge> badges = new ArrayList<>();
+        for (int i = 0; i < 12; i++)
+            badges.add(new Badge(0, "badge " + i));
+        badges.add(new Badge(500, "preset"));
+        session.transaction(conn -> {
+            session.insertAll(badges);
+        });
+        List<Integer> expected = new ArrayList<>(Stream.iterate(1, i -> i + 1).limit(12).toList());
+        expected.add(500);
+        assertEquals(expected, badges.stream().map(Badge::getBadgeId).toList());
+
+        //two blocks of ten were reserved
+        session.withConnection(conn -> {
+            try (Statement stmt = conn.createStatement();
+                 ResultSet rs = stmt.executeQuery("SELECT next_value FROM id_generators WHERE generator_name = 'badges'")) {
+                assertTrue(rs.next());
+                assertEquals(21, rs.getLong(1));
+            }
+        });
+        assertEquals(13, session.count(QueryBuilder.select(Badge.class)));
+    }
+
+    @Test
+    void testUuidV7Ids(Session session) throws SQLException {
+        List<AuditEvent> events = new ArrayList<>();
+        for (int i = 0; i < 5; i++)
+            events.add(new AuditEvent(null, "event " + i));
+        session.insertAll(events);
+        AuditEvent last = session.insert(new AuditEvent(null, "event 5"));
+        events.add(last);
+
+        for (AuditEvent event : events) {
+            assertEquals(36, event.getEventId().length());
+            assertEquals('7', event.getEventId().charAt(14));
+        }
+        //keys are time ordered, so ordering by key keeps the insertion order
+        List<AuditEvent> loaded = session.executeSelect(QueryBuilder.select(AuditEvent.class).orderBy(asc(field("event_id"))), AuditEvent.class);
+        assertEquals(events.stream().map(AuditEvent::getMessage).toList(), loaded.stream().map(AuditEvent::getMessage).toList());
+        assertEquals(events.stream().map(AuditEvent::getEventId).toList(), loaded.stream().map(AuditEvent::getEventId).toList());
+    }
+
+    @Test
+    void testUnitOfWork(Session session) throws SQLException {
+        Employee king = new Employee(100, "Steven", "King", LocalDate.of(2003, 6, 17));
+        Ticket closed = session.insert(new Ticket("Closed ticket", List.of(king)));
+
+        Department research = new Department(50, "Research");
+        Employee lead = new Employee(300, "Ada", "Lovelace", LocalDate.of(2020, 1, 1));
+        lead.setDepartment(research);
+        Employee engineer = new Employee(301, "Charles", "Babbage", LocalDate.of(2020, 2, 1));
+        engineer.setDepartment(research);
+        engineer.setManager(lead);
+        //foreign key comes only from the department's collection
+        Employee intern = new Employee(302, "Mary", "Somerville", LocalDate.of(2020, 3, 1));
+        research.setEmployees(List.of(lead, engineer, intern));
+        Project engine = new Project(0, "Analytical Engine");
+        engine.setEmployees(List.of(lead, engineer));
+        //same joined row from the other side
+        lead.setProjects(List.of(engine));
+        Department administration = new Department(10, "Administration and Finance");
+
+        session.unitOfWork(uow -> {
+            uow.registerNew(engineer).registerNew(engine).registerNew(intern).registerNew(lead).registerNew(research);
+            uow.registerDirty(administration);
+            uow.registerRemoved(closed);
+        });
+        assertNotEquals(0, engine.getProjectId());
+
+        session.withConnection(conn -> {
+            try (Statement stmt = conn.createStatement()) {
+                try (ResultSet rs = stmt.executeQuery("SELECT employee_id, department_id, manager_id FROM employees WHERE employee_id >= 300 ORDER BY employee_id")) {
+                    List<String> rows = new ArrayList<>();
+                    while (rs.next())
+                        rows.add(rs.getInt(1) + "-" + rs.getInt(2) + "-" + rs.getObject(3));
+                    assertEquals(List.of("300-50-null", "301-50-300", "302-50-null"), rows);
+                }
+                try (ResultSet rs = stmt.executeQuery("SELECT employee_id FROM employee_projects WHERE project_id = " + engine.getProjectId() + " ORDER BY employee_id")) {
+                    List<Integer> members = new ArrayList<>();
+                    while (rs.next())
+                        members.add(rs.getInt(1));
+                    assertEquals(List.of(300, 301), members);
+                }
+                try (ResultSet rs = stmt.executeQuery("SELECT COUNT(*) FROM ticket_assignees")) {
+                    rs.next();
+                    assertEquals(0, rs.getInt(1));
+                }
+            }
+        });
+        assertEquals(0, session.count(QueryBuilder.select(Ticket.class)));
+        assertEquals("Administration and Finance", session.executeSelect(QueryBuilder.select(Department.class)
+                .where(field("department_id").eq(lit(10))), Department.class).getFirst().getDepartmentName());
+    }
+
+    @Test
+    void testUnitOfWorkRollback(Session session) throws SQLException {
+        assertThrows(SQLException.class, () -> session.unitOfWork(uow -> {
+            uow.registerNew(new Department(60, "IT"));
+            uow.registerNew(new Department(10, "Duplicate"));
+        }));
+        assertEquals(0, session.count(QueryBuilder.select(Department.class).where(field("department_id").eq(lit(60)))));
+
+        Employee first = new Employee(310, "A", "A", LocalDate.of(2020, 1, 1));
+        Employee second = new Employee(311, "B", "B", LocalDate.of(2020, 1, 1));
+        first.setManager(second);
+        second.setManager(first);
+        assertThrows(IllegalStateException.class, () -> session.unitOfWork(uow -> uow.registerNew(first).registerNew(second)));
+    }
+
+    @Test
+    void testUnitOfWorkDirtyChecking(Session session) throws SQLException {
+        session.unitOfWork(uow -> {
+            List<Employee> loaded = uow.executeSelect(QueryBuilder.select(Employee.class)
+                    .join("department")
+                    .where(field("employee_id").eq(lit(104))), Employee.class);
+            Employee ernst = loaded.getFirst();
+            //rows changed behind the loaded objects keep the columns that weren't modified
+            Employee concurrent = new Employee(104, "Bruce", "Ernst-Smith", ernst.getHireDate());
+            session.update(concurrent);
+            session.update(new Department(20, "Marketing and Sales"));
+
+            ernst.setFirstName("Bruno");
+        });
+
+        Employee ernst = session.executeSelect(QueryBuilder.select(Employee.class)
+                .where(field("employee_id").eq(lit(104))), Employee.class).getFirst();
+        assertEquals("Bruno", ernst.getFirstName());
+        assertEquals("Ernst-Smith", ernst.getLastName());
+        //department was tracked through the join but not changed, so it wasn't written
+        assertEquals("Marketing and Sales", session.executeSelect(QueryBuilder.select(Department.class)
+                .where(field("department_id").eq(lit(20))), Department.class).getFirst().getDepartmentName());
+    }
+
+    @Test
+    void testSyncRelation(Session session) throws SQLException {
+        Project onboarding = new Project(1, "HR Onboarding System");
+        //null list isn't synchronized
+        session.syncRelation(onboarding, "employees");
+        assertEquals(List.of(100, 101), projectMembers(session, 1));
+
+        onboarding.setEmployees(List.of(new Employee(101, "Neena", "Kochhar", LocalDate.of(2005, 9, 21)),
+                new Employee(103, "Alexander", "Hunold", LocalDate.of(2006, 1, 3)),
+                new Employee(104, "Bruce", "Ernst", LocalDate.of(2007, 5, 21))));
+        session.syncRelation(onboarding, "employees");
+        assertEquals(List.of(101, 103, 104), projectMembers(session, 1));
+        //other owners keep their rows
+        assertEquals(List.of(100, 102), projectMembers(session, 5));
+
+        onboarding.setEmployees(List.of());
+        session.syncRelation(onboarding, "employees");
+        assertEquals(List.of(), projectMembers(session, 1));
+
+        assertThrows(InvalidRelationPathException.class, () -> session.syncRelation(new Employee(), "department"));
+    }
+
+    private static List<Integer> projectMembers(Session session, int projectId) throws SQLException {
+        List<Integer> members = new ArrayList<>();
+        session.withConnection(conn -> {
+            try (Statement stmt = conn.createStatement();
+                 ResultSet rs = stmt.executeQuery("SELECT employee_id FROM employee_projects WHERE project_id = " + projectId + " ORDER BY employee_id")) {
+                while (rs.next())
+                    members.add(rs.getInt(1));
+            }
+        });
+        return members;
+    }
+
+    @Test
+    void testInsertGraph(Session session) throws SQLException {
+        Department research = new Department(50, "Research");
+        Employee lead = new Employee(300, "Ada", "Lovelace", LocalDate.of(2020, 1, 1));
+        Employee engineer = new Employee(301, "Charles", "Babbage", LocalDate.of(2020, 2, 1));
+        //parent reached only through the child's many-to-one relation
+        Employee director = new Employee(302, "Mary", "Somerville", LocalDate.of(2019, 1, 1));
+        lead.setManager(director);
+        engineer.setManager(lead);
+        Performance review = new Performance(10, 9.9);
+        lead.setPerformance(review);
+        //saved project, only the joined row is written
+        lead.setProjects(List.of(new Project(1, "HR Onboarding System")));
+        research.setEmployees(List.of(engineer, lead));
+
+        assertSame(research, session.insertGraph(research));
+
+        session.withConnection(conn -> {
+            try (Statement stmt = conn.createStatement()) {
+                try (ResultSet rs = stmt.executeQuery("SELECT employee_id, department_id, manager_id FROM employees WHERE employee_id >= 300 ORDER BY employee_id")) {
+                    List<String> rows = new ArrayList<>();
+                    while (rs.next())
+                        rows.add(rs.getInt(1) + "-" + rs.getObject(2) + "-" + rs.getObject(3));
+                    assertEquals(List.of("300-50-302", "301-50-300", "302-null-null"), rows);
+                }
+                try (ResultSet rs = stmt.executeQuery("SELECT employee_id FROM performances WHERE performance_id = 10")) {
+                    assertTrue(rs.next());
+                    assertEquals(300, rs.getInt(1));
+                }
+            }
+        });
+        assertEquals(List.of(100, 101, 300), projectMembers(session, 1));
+        assertEquals("Research", session.executeSelect(QueryBuilder.select(Department.class)
+                .where(field("department_id").eq(lit(50))), Department.class).getFirst().getDepartmentName());
+    }
+
+    @Test
+    void testInsertGraphExistingReferences(Session session) throws SQLException {
+        Department administration = new Department(10, "Administration");
+        Employee hire = new Employee(303, "Emmy", "Noether", LocalDate.of(2021, 1, 1));
+        hire.setDepartment(administration);
+        //assigned keys look the same before and after insert
+        assertThrows(SQLException.class, () -> session.insertGraph(hire));
+        session.insertGraph(hire, administration);
+        assertEquals(4, session.count(QueryBuilder.select(Department.class)));
+        assertEquals(10, session.executeSelect(QueryBuilder.select(Employee.class).join("department")
+                .where(field("employee_id").eq(lit(303))), Employee.class).getFirst().getDepartment().getDepartmentId());
+
+        //key assigned by its strategy marks the object as saved
+        Badge badge = new Badge(0, "graph");
+        session.insertGraph(badge);
+        assertNotEquals(0, badge.getBadgeId());
+        session.insertGraph(badge);
+        assertEquals(1, session.count(QueryBuilder.select(Badge.class)));
+    }
+
+    @Test
+    void testInsertGraphGeneratedKeyChildren(Session session) throws SQLException {
+        Board board = new Board("Sprint");
+        Card first = new Card("Design");
+        Card second = new Card("Review");
+        //foreign key column is NOT NULL, it has to be part of each child's insert
+        board.setCards(List.of(first, second));
+
+        session.insertGraph(board);
+
+        assertNotEquals(0, board.getBoardId());
+        assertNotEquals(0, first.getCardId());
+        assertNotEquals(first.getCardId(), second.getCardId());
+        session.withConnection(conn -> {
+            try (Statement stmt = conn.createStatement();
+                 ResultSet rs = stmt.executeQuery("SELECT title, board_id FROM cards ORDER BY title")) {
+                List<String> rows = new ArrayList<>();
+                while (rs.next())
+                    rows.add(rs.getString(1) + "-" + rs.getInt(2));
+                assertEquals(List.of("Design-" + board.getBoardId(), "Review-" + board.getBoardId()), rows);
+            }
+        });
+    }
+
+    @Test
+    void testDeleteCascade(Session session) throws SQLException {
+        Department research = new Department(50, "Research");
+        Employee lead = new Employee(300, "Ada", "Lovelace", LocalDate.of(2020, 1, 1));
+        lead.setPerformance(new Performance(10, 9.9));
+        lead.setProjects(List.of(new Project(1, "HR Onboarding System"), new Project(2, "Internal Payroll Platform")));
+        Employee engineer = new Employee(301, "Charles", "Babbage", LocalDate.of(2020, 2, 1));
+        engineer.setProjects(List.of(new Project(1, "HR Onboarding System")));
+        research.setEmployees(List.of(lead, engineer));
+        session.insertGraph(research);
+
+        Map<String, Integer> counts = session.deleteCascade(new Department(50, "Research"), "employees.performance", "employees.projects");
+        assertEquals(List.of("performances", "employee_projects", "employees", "departments"), List.copyOf(counts.keySet()));
+        assertEquals(List.of(1, 3, 2, 1), List.copyOf(counts.values()));
+
+        assertEquals(0, session.count(QueryBuilder.select(Employee.class).where(field("employee_id").gt(lit(299)))));
+        assertEquals(List.of(100, 101), projectMembers(session, 1));
+        assertEquals(5, session.count(QueryBuilder.select(Performance.class)));
+        //owning relations point to parent rows, which aren't deleted through them
+        assertThrows(InvalidRelationPathException.class, () -> session.deleteCascade(new Employee(), "department"));
+        assertThrows(InvalidRelationPathException.class, () -> session.deleteCascade(new Department(), "employees.projects.employees"));
+    }
+
+    @Test
+    void testDataCopier(Session session, ConnectionSupplier source) throws SQLException, IOException {
+        ConnectionSupplier target = () -> DriverManager.getConnection("jdbc:h2:mem:copy_target;DB_CLOSE_DELAY=-1", "sa", "");
+        try (Connection conn = target.getConnection(); Statement stmt = conn.createStatement()) {
+            stmt.execute("DROP TABLE IF EXISTS employees");
+            stmt.execute("CREATE TABLE employees (employee_id INT PRIMARY KEY, first_name VARCHAR(20), last_name VARCHAR(25) NOT NULL, " +
+                    "hire_date DATE NOT NULL, manager_id INT, department_id INT)");
+        }
+        Path checkpoint = Files.createTempFile("copy", ".properties");
+        Files.delete(checkpoint);
+        try {
+            //first run stops after its first committed batch, restart continues from the checkpoint
+            DataCopyOptions failing = DataCopyOptions.defaults().batchSize(2).bufferSize(1).parallelism(2).checkpoint(checkpoint)
+                    .progress(_ -> {
+                        throw new IllegalStateException("Stopped");
+                    });
+            assertThrows(IllegalStateException.class, () -> DataCopier.copy(Employee.class, source, target, failing));
+            long copiedBefore = targetEmployees(target).size();
+            assertTrue(copiedBefore > 0);
+
+            DataCopyResult result = DataCopier.copy(Employee.class, source, target, DataCopyOptions.defaults()
+                    .batchSize(2).bufferSize(1).parallelism(2).checkpoint(checkpoint));
+            assertEquals(5, copiedBefore + result.rows());
+            assertEquals(List.of("100 King 10", "101 Kochhar 20", "102 De Haan 30", "103 Hunold 30", "104 Ernst 20"), targetEmployees(target));
+
+            session.update(new Employee(100, "Steven", "Kingsley", LocalDate.of(2003, 6, 17)));
+            result = DataCopier.copy(Employee.class, source, target, DataCopyOptions.defaults().upsert(true));
+            assertEquals(5, result.rows());
+            assertEquals("100 Kingsley 10", targetEmployees(target).getFirst());
+        } finally {
+            Files.deleteIfExists(checkpoint);
+        }
+    }
+
+    @Test
+    void testDataCopierGeneratedKeys(Session session, ConnectionSupplier source) throws SQLException, IOException {
+        ConnectionSupplier target = () -> DriverManager.getConnection("jdbc:h2:mem:copy_target;DB_CLOSE_DELAY=-1", "sa", "");
+        try (Connection conn = target.getConnection(); Statement stmt = conn.createStatement()) {
+            stmt.execute("DROP TABLE IF EXISTS projects");
+            stmt.execute("CREATE TABLE projects (project_id INT PRIMARY KEY AUTO_INCREMENT, project_name VARCHAR(100) NOT NULL)");
+        }
+        Path checkpoint = Files.createTempFile("copy", ".properties");
+        Files.delete(checkpoint);
+        try {
+            DataCopyOptions failing = DataCopyOptions.defaults().batchSize(2).bufferSize(1).checkpoint(checkpoint)
+                    .progress(_ -> {
+                        throw new IllegalStateException("Stopped");
+                    });
+            assertThrows(IllegalStateException.class, () -> DataCopier.copy(Project.class, source, target, failing));
+            //next batch committed, but the copy stopped before its checkpoint was saved
+            try (Connection conn = target.getConnection(); Statement stmt = conn.createStatement()) {
+                stmt.execute("INSERT INTO projects (project_id, project_name) VALUES (3, 'Copied'), (4, 'Copied')");
+            }
+
+            DataCopyResult result = DataCopier.copy(Project.class, source, target, DataCopyOptions.defaults()
+                    .batchSize(2).checkpoint(checkpoint));
+            assertEquals(1, result.rows());
+            try (Connection conn = target.getConnection(); Statement stmt = conn.createStatement()) {
+                stmt.execute("INSERT INTO projects (project_name) VALUES ('Next')");
+                try (ResultSet rs = stmt.executeQuery("SELECT COUNT(*), MAX(project_id) FROM projects")) {
+                    assertTrue(rs.next());
+                    assertEquals(6, rs.getInt(1));
+                    assertEquals(6, rs.getInt(2));
+                }
+            }
+        } finally {
+            Files.deleteIfExists(checkpoint);
+        }
+    }
+
+    private static List<String> targetEmployees(ConnectionSupplier target) throws SQLException {
+        List<String> employees = new ArrayList<>();
+        try (Connection conn = target.getConnection();
+             Statement stmt = conn.createStatement();
+             ResultSet rs = stmt.executeQuery("SELECT employee_id, last_name, department_id FROM employees ORDER BY employee_id")) {
+            while (rs.next())
+                employees.add(rs.getInt(1) + " " + rs.getString(2) + " " + rs.getObject(3));
+        }
+        return employees;
+    }
 }
@@ -0,0 +1,22 @@
+package layering;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+import raf.thesis.metadata.annotations.Column;
+import raf.thesis.metadata.annotations.Entity;
+import raf.thesis.metadata.annotations.Id;
+import raf.thesis.metadata.annotations.IdStrategy;
+
+@Entity(tableName = "audit_events")
+@AllArgsConstructor
+@Setter
+@Getter
+@NoArgsConstructor
+public class AuditEvent {
+    @Id(strategy = IdStrategy.UUID_V7)
+    @Column(columnName = "event_id")
+    private String eventId;
+    private String message;
+}
@@ -0,0 +1,22 @@
+package layering;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+import raf.thesis.metadata.annotations.Column;
+import raf.thesis.metadata.annotations.Entity;
+import raf.thesis.metadata.annotations.Id;
+import raf.thesis.metadata.annotations.IdStrategy;
+
+@Entity(tableName = "badges")
+@AllArgsConstructor
+@Setter
+@Getter
+@NoArgsConstructor
+public class Badge {
+    @Id(strategy = IdStrategy.TABLE, allocationSize = 10)
+    @Column(columnName = "badge_id")
+    private int badgeId;
+    private String label;
+}
@@ -0,0 +1,26 @@
+package layering;
+
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+import raf.thesis.metadata.annotations.Column;
+import raf.thesis.metadata.annotations.Entity;
+import raf.thesis.metadata.annotations.Id;
+import raf.thesis.metadata.annotations.OneToMany;
+
+import java.util.List;
+
+@Entity(tableName = "boards")
+@NoArgsConstructor@Getter@Setter
+public class Board {
+    @Id(generated = true)
+    @Column(columnName = "board_id")
+    private int boardId;
+    private String title;
+    @OneToMany
+    private List<Card> cards;
+
+    public Board(String title) {
+        this.title = title;
+    }
+}
@@ -0,0 +1,24 @@
+package layering;
+
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+import raf.thesis.metadata.annotations.Column;
+import raf.thesis.metadata.annotations.Entity;
+import raf.thesis.metadata.annotations.Id;
+import raf.thesis.metadata.annotations.ManyToOne;
+
+@Entity(tableName = "cards")
+@NoArgsConstructor@Getter@Setter
+public class Card {
+    @Id(generated = true)
+    @Column(columnName = "card_id")
+    private int cardId;
+    private String title;
+    @ManyToOne
+    private Board board;
+
+    public Card(String title) {
+        this.title = title;
+    }
+}
@@ -0,0 +1,28 @@
+package layering;
+
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+import raf.thesis.metadata.annotations.Column;
+import raf.thesis.metadata.annotations.Entity;
+import raf.thesis.metadata.annotations.Id;
+import raf.thesis.metadata.annotations.OneToMany;
+
+import java.util.List;
+
+@Entity(tableName = "countries")
+@NoArgsConstructor@Getter@Setter
+public class Country {
+    @Id
+    @Column(columnName = "country_id")
+    private String countryId;
+    @Column(columnName = "country_name")
+    private String countryName;
+    @OneToMany
+    private List<Location> locations;
+
+    public Country(String countryId, String countryName) {
+        this.countryId = countryId;
+        this.countryName = countryName;
+    }
+}
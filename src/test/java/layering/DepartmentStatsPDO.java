@@ -0,0 +1,18 @@
+package layering;
+
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+import raf.thesis.metadata.annotations.Column;
+import raf.thesis.metadata.annotations.PDO;
+
+@NoArgsConstructor
+@Getter@Setter
+@PDO
+public class DepartmentStatsPDO {
+    @Column(columnName = "department_id")
+    int departmentId;
+    String departmentName;
+    long employeeCount;
+    Integer maxEmployeeId;
+}
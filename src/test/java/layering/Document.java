@@ -0,0 +1,26 @@
+package layering;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+import raf.thesis.metadata.annotations.Column;
+import raf.thesis.metadata.annotations.Entity;
+import raf.thesis.metadata.annotations.Id;
+import raf.thesis.metadata.annotations.Lob;
+
+@NoArgsConstructor
+@AllArgsConstructor
+@Getter
+@Setter
+@Entity(tableName = "documents")
+public class Document {
+    @Id
+    @Column(columnName = "document_id")
+    private int documentId;
+    private String title;
+    @Lob
+    private String content;
+    @Lob
+    private byte[] payload;
+}
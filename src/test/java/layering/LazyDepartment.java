@@ -0,0 +1,25 @@
+package layering;
+
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+import raf.thesis.metadata.annotations.Column;
+import raf.thesis.metadata.annotations.Entity;
+import raf.thesis.metadata.annotations.Id;
+import raf.thesis.metadata.annotations.OneToMany;
+
+import java.util.List;
+
+@Entity(tableName = "departments")
+@NoArgsConstructor
+@Getter
+@Setter
+public class LazyDepartment {
+    @Id
+    @Column(columnName = "department_id")
+    private int departmentId;
+    @Column(columnName = "department_name")
+    private String departmentName;
+    @OneToMany(foreignKey = "department_id", lazy = true)
+    private List<LazyEmployee> employees;
+}
@@ -0,0 +1,25 @@
+package layering;
+
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+import raf.thesis.metadata.annotations.Column;
+import raf.thesis.metadata.annotations.Entity;
+import raf.thesis.metadata.annotations.Id;
+import raf.thesis.metadata.annotations.ManyToMany;
+
+import java.util.List;
+
+@Entity(tableName = "employees")
+@NoArgsConstructor
+@Getter
+@Setter
+public class LazyEmployee {
+    @Id
+    @Column(columnName = "employee_id")
+    private int employeeId;
+    @Column(columnName = "first_name")
+    private String firstName;
+    @ManyToMany(joinedTableName = "employee_projects", lazy = true)
+    private List<Project> projects;
+}
@@ -0,0 +1,25 @@
+package layering;
+
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+import raf.thesis.metadata.annotations.Column;
+import raf.thesis.metadata.annotations.Entity;
+import raf.thesis.metadata.annotations.Id;
+import raf.thesis.metadata.annotations.ManyToOne;
+
+@Entity(tableName = "locations")
+@NoArgsConstructor@Getter@Setter
+public class Location {
+    @Id
+    @Column(columnName = "location_id")
+    private int locationId;
+    private String city;
+    @ManyToOne
+    private Country country;
+
+    public Location(int locationId, String city) {
+        this.locationId = locationId;
+        this.city = city;
+    }
+}
@@ -0,0 +1,32 @@
+package layering;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+import raf.thesis.metadata.annotations.Column;
+import raf.thesis.metadata.annotations.Entity;
+import raf.thesis.metadata.annotations.Id;
+import raf.thesis.metadata.annotations.IdStrategy;
+import raf.thesis.metadata.annotations.ManyToMany;
+
+import java.util.List;
+
+@Entity(tableName = "tickets")
+@AllArgsConstructor
+@Setter
+@Getter
+@NoArgsConstructor
+public class Ticket {
+    @Id(strategy = IdStrategy.SEQUENCE, generator = "ticket_seq")
+    @Column(columnName = "ticket_id")
+    private Long ticketId;
+    private String title;
+    @ManyToMany(joinedTableName = "ticket_assignees")
+    List<Employee> assignees;
+
+    public Ticket(String title, List<Employee> assignees) {
+        this.title = title;
+        this.assignees = assignees;
+    }
+}
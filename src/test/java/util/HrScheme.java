@@ -92,6 +92,9 @@ public class HrScheme {
             ------------------------------------------------------------
             -- DROP TABLES (to allow re-running)
             ------------------------------------------------------------
+            DROP TABLE IF EXISTS cards;
+            DROP TABLE IF EXISTS boards;
+            DROP TABLE IF EXISTS ticket_assignees;
             DROP TABLE IF EXISTS performances;
             DROP TABLE IF EXISTS employee_projects;
             DROP TABLE IF EXISTS projects;
@@ -103,6 +106,12 @@ public class HrScheme {
             DROP TABLE IF EXISTS countries;
             DROP TABLE IF EXISTS regions;
             DROP TABLE IF EXISTS enum_time_test;
+            DROP TABLE IF EXISTS documents;
+            DROP TABLE IF EXISTS tickets;
+            DROP TABLE IF EXISTS badges;
+            DROP TABLE IF EXISTS audit_events;
+            DROP TABLE IF EXISTS id_generators;
+            DROP SEQUENCE IF EXISTS ticket_seq;
             
             ------------------------------------------------------------
             -- REGIONS
@@ -299,9 +308,61 @@ public class HrScheme {
             INSERT INTO enum_time_test VALUES
             (1, 'NEW', TIMESTAMP '2024-01-10 12:34:56.123', TIME '12:34:56'),
             (2, 'DONE', TIMESTAMP '2024-06-01 08:00:00', TIME '08:00:00');
+            
+            CREATE TABLE documents (
+                document_id INT PRIMARY KEY,
+                title VARCHAR(100),
+                content CLOB,
+                payload BLOB
+            );
+            
+            CREATE SEQUENCE ticket_seq START WITH 1 INCREMENT BY 50;
+            
+            CREATE TABLE tickets (
+                ticket_id BIGINT PRIMARY KEY,
+                title VARCHAR(100)
+            );
+            
+            CREATE TABLE ticket_assignees (
+                ticket_id BIGINT NOT NULL,
+                employee_id INT NOT NULL,
+                PRIMARY KEY (ticket_id, employee_id),
+                FOREIGN KEY (ticket_id) REFERENCES tickets(ticket_id),
+                FOREIGN KEY (employee_id) REFERENCES employees(employee_id)
+            );
+            
+            CREATE TABLE badges (
+                badge_id INT PRIMARY KEY,
+                label VARCHAR(100)
+            );
+            
+            CREATE TABLE audit_events (
+                event_id VARCHAR(36) PRIMARY KEY,
+                message VARCHAR(200)
+            );
+            
+            CREATE TABLE id_generators (
+                generator_name VARCHAR(100) PRIMARY KEY,
+                next_value BIGINT NOT NULL
+            );
+            
+            CREATE TABLE boards (
+                board_id INT PRIMARY KEY AUTO_INCREMENT,
+                title VARCHAR(100)
+            );
+            
+            CREATE TABLE cards (
+                card_id INT PRIMARY KEY AUTO_INCREMENT,
+                title VARCHAR(100),
+                board_id INT NOT NULL,
+                FOREIGN KEY (board_id) REFERENCES boards(board_id)
+            );
             """;
     //@Language("SQL")
     public static final String PSQLScript = """
+            DROP TABLE IF EXISTS cards CASCADE;
+            DROP TABLE IF EXISTS boards CASCADE;
+            DROP TABLE IF EXISTS ticket_assignees CASCADE;
             DROP TABLE IF EXISTS performances CASCADE;
             DROP TABLE IF EXISTS employee_projects CASCADE;
             DROP TABLE IF EXISTS projects CASCADE;
@@ -313,6 +374,12 @@ public class HrScheme {
             DROP TABLE IF EXISTS countries CASCADE;
             DROP TABLE IF EXISTS regions CASCADE;
             DROP TABLE IF EXISTS enum_time_test;
+            DROP TABLE IF EXISTS documents;
+            DROP TABLE IF EXISTS tickets;
+            DROP TABLE IF EXISTS badges;
+            DROP TABLE IF EXISTS audit_events;
+            DROP TABLE IF EXISTS id_generators;
+            DROP SEQUENCE IF EXISTS ticket_seq;
             DROP TYPE IF EXISTS status_enum;
             
             CREATE TABLE regions (
@@ -470,9 +537,61 @@ public class HrScheme {
             INSERT INTO enum_time_test VALUES
             (1, 'NEW', TIMESTAMP '2024-01-10 12:34:56.123', TIME '12:34:56'),
             (2, 'DONE', TIMESTAMP '2024-06-01 08:00:00', TIME '08:00:00');
+            
+            CREATE TABLE documents (
+                document_id INT PRIMARY KEY,
+                title VARCHAR(100),
+                content TEXT,
+                payload BYTEA
+            );
+            
+            CREATE SEQUENCE ticket_seq START WITH 1 INCREMENT BY 50;
+            
+            CREATE TABLE tickets (
+                ticket_id BIGINT PRIMARY KEY,
+                title VARCHAR(100)
+            );
+            
+            CREATE TABLE ticket_assignees (
+                ticket_id BIGINT NOT NULL,
+                employee_id INT NOT NULL,
+                PRIMARY KEY (ticket_id, employee_id),
+                FOREIGN KEY (ticket_id) REFERENCES tickets(ticket_id),
+                FOREIGN KEY (employee_id) REFERENCES employees(employee_id)
+            );
+            
+            CREATE TABLE badges (
+                badge_id INT PRIMARY KEY,
+                label VARCHAR(100)
+            );
+            
+            CREATE TABLE audit_events (
+                event_id VARCHAR(36) PRIMARY KEY,
+                message VARCHAR(200)
+            );
+            
+            CREATE TABLE id_generators (
+                generator_name VARCHAR(100) PRIMARY KEY,
+                next_value BIGINT NOT NULL
+            );
+            
+            CREATE TABLE boards (
+                board_id INTEGER PRIMARY KEY GENERATED BY DEFAULT AS IDENTITY,
+                title VARCHAR(100)
+            );
+            
+            CREATE TABLE cards (
+                card_id INTEGER PRIMARY KEY GENERATED BY DEFAULT AS IDENTITY,
+                title VARCHAR(100),
+                board_id INT NOT NULL,
+                FOREIGN KEY (board_id) REFERENCES boards(board_id)
+            );
             """;
     //@Language("SQL")
     public static final String MARIADBSCRIPT = """
+            DROP TABLE IF EXISTS cards;
+            DROP TABLE IF EXISTS boards;
+            DROP TABLE IF EXISTS ticket_assignees;
             DROP TABLE IF EXISTS performances;
             DROP TABLE IF EXISTS employee_projects;
             DROP TABLE IF EXISTS projects;
@@ -484,6 +603,12 @@ public class HrScheme {
             DROP TABLE IF EXISTS countries;
             DROP TABLE IF EXISTS regions;
             DROP TABLE IF EXISTS enum_time_test;
+            DROP TABLE IF EXISTS documents;
+            DROP TABLE IF EXISTS tickets;
+            DROP TABLE IF EXISTS badges;
+            DROP TABLE IF EXISTS audit_events;
+            DROP TABLE IF EXISTS id_generators;
+            DROP SEQUENCE IF EXISTS ticket_seq;
             
             CREATE TABLE regions (
                 region_id INT PRIMARY KEY,
@@ -650,12 +775,64 @@ public class HrScheme {
             INSERT INTO enum_time_test VALUES
             (1, 'NEW', '2024-01-10 12:34:56.123', '12:34:56'),
             (2, 'DONE', '2024-06-01 08:00:00', '08:00:00');
+            
+            CREATE TABLE documents (
+                document_id INT PRIMARY KEY,
+                title VARCHAR(100),
+                content LONGTEXT,
+                payload LONGBLOB
+            );
+            
+            CREATE SEQUENCE ticket_seq START WITH 1 INCREMENT BY 50;
+            
+            CREATE TABLE tickets (
+                ticket_id BIGINT PRIMARY KEY,
+                title VARCHAR(100)
+            ) ENGINE=InnoDB;
+            
+            CREATE TABLE ticket_assignees (
+                ticket_id BIGINT NOT NULL,
+                employee_id INT NOT NULL,
+                PRIMARY KEY (ticket_id, employee_id),
+                FOREIGN KEY (ticket_id) REFERENCES tickets(ticket_id),
+                FOREIGN KEY (employee_id) REFERENCES employees(employee_id)
+            ) ENGINE=InnoDB;
+            
+            CREATE TABLE badges (
+                badge_id INT PRIMARY KEY,
+                label VARCHAR(100)
+            ) ENGINE=InnoDB;
+            
+            CREATE TABLE audit_events (
+                event_id VARCHAR(36) PRIMARY KEY,
+                message VARCHAR(200)
+            ) ENGINE=InnoDB;
+            
+            CREATE TABLE id_generators (
+                generator_name VARCHAR(100) PRIMARY KEY,
+                next_value BIGINT NOT NULL
+            ) ENGINE=InnoDB;
+            
+            CREATE TABLE boards (
+                board_id INT PRIMARY KEY AUTO_INCREMENT,
+                title VARCHAR(100)
+            ) ENGINE=InnoDB;
+            
+            CREATE TABLE cards (
+                card_id INT PRIMARY KEY AUTO_INCREMENT,
+                title VARCHAR(100),
+                board_id INT NOT NULL,
+                FOREIGN KEY (board_id) REFERENCES boards(board_id)
+            ) ENGINE=InnoDB;
             """;
     //@Language("SQL")
     public static final String MSSQLSCRIPT = """
             ------------------------------------------------------------
             -- DROP TABLES (order matters)
             ------------------------------------------------------------
+            IF OBJECT_ID('cards', 'U') IS NOT NULL DROP TABLE cards;
+            IF OBJECT_ID('boards', 'U') IS NOT NULL DROP TABLE boards;
+            IF OBJECT_ID('ticket_assignees', 'U') IS NOT NULL DROP TABLE ticket_assignees;
             IF OBJECT_ID('performances', 'U') IS NOT NULL DROP TABLE performances;
             IF OBJECT_ID('employee_projects', 'U') IS NOT NULL DROP TABLE employee_projects;
             IF OBJECT_ID('projects', 'U') IS NOT NULL DROP TABLE projects;
@@ -667,6 +844,12 @@ public class HrScheme {
             IF OBJECT_ID('countries', 'U') IS NOT NULL DROP TABLE countries;
             IF OBJECT_ID('regions', 'U') IS NOT NULL DROP TABLE regions;
             IF OBJECT_ID('enum_time_test', 'U') IS NOT NULL DROP TABLE enum_time_test;
+            IF OBJECT_ID('documents', 'U') IS NOT NULL DROP TABLE documents;
+            IF OBJECT_ID('tickets', 'U') IS NOT NULL DROP TABLE tickets;
+            IF OBJECT_ID('badges', 'U') IS NOT NULL DROP TABLE badges;
+            IF OBJECT_ID('audit_events', 'U') IS NOT NULL DROP TABLE audit_events;
+            IF OBJECT_ID('id_generators', 'U') IS NOT NULL DROP TABLE id_generators;
+            IF OBJECT_ID('ticket_seq', 'SO') IS NOT NULL DROP SEQUENCE ticket_seq;
             
             ------------------------------------------------------------
             -- REGIONS
@@ -879,6 +1062,55 @@ public class HrScheme {
             INSERT INTO enum_time_test VALUES
             (1, 'NEW', '2024-01-10T12:34:56.123', '12:34:56'),
             (2, 'DONE', '2024-06-01T08:00:00', '08:00:00');
+            
+            CREATE TABLE documents (
+                document_id INT PRIMARY KEY,
+                title VARCHAR(100),
+                content VARCHAR(MAX),
+                payload VARBINARY(MAX)
+            );
+            
+            CREATE SEQUENCE ticket_seq START WITH 1 INCREMENT BY 50;
+            
+            CREATE TABLE tickets (
+                ticket_id BIGINT PRIMARY KEY,
+                title VARCHAR(100)
+            );
+            
+            CREATE TABLE ticket_assignees (
+                ticket_id BIGINT NOT NULL,
+                employee_id INT NOT NULL,
+                PRIMARY KEY (ticket_id, employee_id),
+                FOREIGN KEY (ticket_id) REFERENCES tickets(ticket_id),
+                FOREIGN KEY (employee_id) REFERENCES employees(employee_id)
+            );
+            
+            CREATE TABLE badges (
+                badge_id INT PRIMARY KEY,
+                label VARCHAR(100)
+            );
+            
+            CREATE TABLE audit_events (
+                event_id VARCHAR(36) PRIMARY KEY,
+                message VARCHAR(200)
+            );
+            
+            CREATE TABLE id_generators (
+                generator_name VARCHAR(100) PRIMARY KEY,
+                next_value BIGINT NOT NULL
+            );
+            
+            CREATE TABLE boards (
+                board_id INT IDENTITY(1,1) PRIMARY KEY,
+                title VARCHAR(100)
+            );
+            
+            CREATE TABLE cards (
+                card_id INT IDENTITY(1,1) PRIMARY KEY,
+                title VARCHAR(100),
+                board_id INT NOT NULL,
+                FOREIGN KEY (board_id) REFERENCES boards(board_id)
+            );
             """;
     public static void fillMetadataManually() throws NoSuchFieldException {
         //Departments
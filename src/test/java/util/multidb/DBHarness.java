@@ -19,7 +19,8 @@ import java.util.stream.Stream;
 @Slf4j
 public class DBHarness implements AutoCloseable {
     private final PostgreSQLContainer psqlContainer = new PostgreSQLContainer("postgres:18");
-    private final MariaDBContainer mariaDBContainer = new MariaDBContainer("mariadb:12");
+    //LOAD DATA LOCAL INFILE of bulk loads needs local_infile on the server and allowLocalInfile on the connection
+    private final MariaDBContainer mariaDBContainer = new MariaDBContainer("mariadb:12").withCommand("--local-infile=1");
     private final MSSQLServerContainer mssqlServerContainer = new MSSQLServerContainer("mcr.microsoft.com/mssql/server:2022-latest").acceptLicense();
     @Getter
     private final List<DbUnderTest> dbs;
@@ -34,7 +35,7 @@ public class DBHarness implements AutoCloseable {
                         "",
                         HrScheme.H2SCRIPT),
                 new TestContainerDb(psqlContainer, "Postgres", HrScheme.PSQLScript),
-                new TestContainerDb(mariaDBContainer, "MariaDB", HrScheme.MARIADBSCRIPT, "?allowMultiQueries=true"),
+                new TestContainerDb(mariaDBContainer, "MariaDB", HrScheme.MARIADBSCRIPT, "?allowMultiQueries=true&allowLocalInfile=true"),
                 new TestContainerDb(mssqlServerContainer, "MSSQL Server", HrScheme.MSSQLSCRIPT)
         );
         //start all dbs